@@ -0,0 +1,83 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs `cat` on files from 1 KB to 1 GB, on its own and feeding a pipeline.
+ * The files are read from the page cache after the first iteration, so this measures the copy, not the disk.
+ * The readString benchmark is the baseline: the whole file read into a String and collected in a
+ * StringBuilder before printing, as `cat` did before it streamed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CatBenchmark {
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    private final Terminal terminal = new Terminal();
+    private final OutputSink out = Fixtures.discard();
+    private final String[] args = {"data.txt"};
+    private Path dir;
+    private Session session;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("cat");
+        Fixtures.text(dir.resolve("data.txt"), size);
+        session = new Session(dir, Map.of(), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public void cat() throws IOException {
+        terminal.cat(session, args, null, out);
+        out.flush();
+    }
+
+    /**
+     * Holds the file in memory about three times over, so the 1 GB file needs a heap of several GB,
+     * for example with {@code -jvmArgsAppend -Xmx8g}, or it fails with an OutOfMemoryError.
+     */
+    @Benchmark
+    public void readString() throws IOException {
+        StringBuilder output = new StringBuilder();
+        output.append(Files.readString(dir.resolve("data.txt")));
+        output.append("\n");
+        out.print(output.toString());
+        out.flush();
+    }
+
+    @Benchmark
+    public void catIntoPipe() throws IOException {
+        terminal.execute(session, "cat data.txt | wc -c", out);
+        out.flush();
+    }
+}
@@ -0,0 +1,73 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Terminal#execute(Session, String, OutputSink)} on commands that do almost no work,
+ * so the time is the cost of parsing, looking up the command and running it through a pipeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DispatchBenchmark {
+    private final Terminal terminal = new Terminal();
+    private final OutputSink out = Fixtures.discard();
+    private Path dir;
+    private Session session;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("dispatch");
+        session = new Session(dir, Map.of(), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public void builtin() throws IOException {
+        terminal.execute(session, "pwd", out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void unknownCommand() throws IOException {
+        terminal.execute(session, "nope", out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void statements() throws IOException {
+        terminal.execute(session, "pwd; pwd; pwd", out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void pipeline() throws IOException {
+        terminal.execute(session, "pwd | wc -c", out);
+        out.flush();
+    }
+}
@@ -0,0 +1,97 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates and removes many entries with one command: `mkdir` of N directories, `rm` of N files and
+ * `rm -r` of a tree of N files. Every invocation starts from a fresh work directory, built outside the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class FileOpsBenchmark {
+    @Param({"100", "10000"})
+    public int count;
+
+    private final Terminal terminal = new Terminal();
+    private final OutputSink out = Fixtures.discard();
+    private Path dir;
+    private Path work;
+    private Session session;
+    private String[] names;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("fileops");
+        work = dir.resolve("work");
+        session = new Session(dir, Map.of(), null);
+        names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "work/f" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    /**
+     * Empties the work directory and, for the benchmarks removing entries, fills it again.
+     */
+    @Setup(Level.Invocation)
+    public void fresh(org.openjdk.jmh.infra.BenchmarkParams params) throws IOException {
+        Fixtures.delete(work);
+        Files.createDirectory(work);
+        if (params.getBenchmark().endsWith("rmFiles")) {
+            Fixtures.emptyFiles(work, count);
+        }
+        else if (params.getBenchmark().endsWith("rmTree")) {
+            for (int d = 0; d < 10; d++) { // Ten subdirectories, so the parallel walk has branches to split on
+                Path sub = Files.createDirectory(work.resolve("d" + d));
+                Fixtures.emptyFiles(sub, count / 10);
+            }
+        }
+    }
+
+    @Benchmark
+    public String mkdir() {
+        return terminal.mkdir(session, names);
+    }
+
+    @Benchmark
+    public void rmFiles() throws IOException {
+        terminal.rm(session, names, out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void rmTree() throws IOException {
+        terminal.rm(session, new String[]{"-r", "work"}, out);
+        out.flush();
+    }
+}
@@ -0,0 +1,150 @@
+package cli.bench;
+
+import cli.OutputSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the files the benchmarks run on and removes them afterwards, so the benchmarks need
+ * nothing but a writable temporary directory. Contents come from a fixed seed, so every run reads the same bytes.
+ */
+final class Fixtures {
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates an empty directory for one benchmark, under {@code cli.bench.dir} if set, else java.io.tmpdir.
+     *
+     * @param prefix the start of the directory name.
+     * @return the new directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    static Path directory(String prefix) throws IOException {
+        String base = System.getProperty("cli.bench.dir");
+        return base == null ? Files.createTempDirectory(prefix) : Files.createTempDirectory(Path.of(base), prefix);
+    }
+
+    /**
+     * Creates empty files named f0, f1, ... in a directory.
+     *
+     * @param dir   the directory.
+     * @param count the number of files.
+     * @throws IOException if a file cannot be created.
+     */
+    static void emptyFiles(Path dir, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Files.createFile(dir.resolve("f" + i));
+        }
+    }
+
+    /**
+     * Writes a text file of lines of random words, cut to the exact size.
+     *
+     * @param file the file to write.
+     * @param size the size in bytes.
+     * @throws IOException if the file cannot be written.
+     */
+    static void text(Path file, long size) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            StringBuilder line = new StringBuilder();
+            while (written < size) {
+                line.setLength(0);
+                line.append(random.nextInt(1_000_000));
+                for (int w = random.nextInt(2, 10); w > 0; w--) {
+                    line.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+                int length = (int) Math.min(bytes.length, size - written);
+                if (buffer.remaining() < length) {
+                    drain(buffer, out);
+                }
+                buffer.put(bytes, 0, length);
+                written += length;
+            }
+            drain(buffer, out);
+        }
+    }
+
+    /**
+     * Writes what the buffer holds to the channel and empties it.
+     */
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Deletes a directory and everything in it, if it exists.
+     *
+     * @param dir the directory.
+     * @throws IOException if something cannot be deleted.
+     */
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException ex) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns a sink throwing its output away, so benchmarks measure the commands rather than a terminal.
+     *
+     * @return the sink.
+     */
+    static OutputSink discard() {
+        return OutputSink.toChannel(new Discard());
+    }
+
+    /**
+     * A channel that accepts and drops every byte.
+     */
+    private static final class Discard implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists directories of 10, 10k and 1M empty files, plain, long and top-N sorted by size.
+ * Creating the 1M entry directory takes a while, and it is created once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LsBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int entries;
+
+    private final Terminal terminal = new Terminal();
+    private Path dir;
+    private Session session;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("ls");
+        Fixtures.emptyFiles(dir, entries);
+        session = new Session(dir, Map.of(), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    /**
+     * A sink per thread, since sinks are not thread-safe.
+     */
+    @State(Scope.Thread)
+    public static class Sink {
+        final OutputSink out = Fixtures.discard();
+    }
+
+    @Benchmark
+    public void plain(Sink sink) throws IOException {
+        terminal.ls(session, new String[]{}, sink.out);
+        sink.out.flush();
+    }
+
+    @Benchmark
+    public void longFormat(Sink sink) throws IOException {
+        terminal.ls(session, new String[]{"-l"}, sink.out);
+        sink.out.flush();
+    }
+
+    @Benchmark
+    public void topBySize(Sink sink) throws IOException {
+        terminal.ls(session, new String[]{"-S", "--top=20"}, sink.out);
+        sink.out.flush();
+    }
+}
@@ -0,0 +1,74 @@
+package cli.bench;
+
+import cli.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses short command lines, as typed at the prompt, and long ones with quoting and pipes, as scripts generate.
+ * The regexSplit benchmarks are the baseline: the {@code split("\\s+")} the tokenizer replaced, which neither
+ * handles quotes nor pipes, so it does less work than the tokenizer on the long line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ParserBenchmark {
+    private final Parser parser = new Parser();
+    private String longLine;
+
+    /**
+     * Builds a pipeline of three stages with 200 arguments, a third of them quoted.
+     */
+    @Setup
+    public void setup() {
+        StringBuilder line = new StringBuilder("cat");
+        for (int i = 0; i < 200; i++) {
+            line.append(i % 3 == 0 ? " \"file " + i + ".txt\"" : " file" + i + ".txt");
+        }
+        line.append(" | grep -i 'some pattern' | wc -l > counts.txt");
+        longLine = line.toString();
+    }
+
+    @Benchmark
+    public boolean shortLine() {
+        return parser.parse("ls -a");
+    }
+
+    @Benchmark
+    public boolean longLine() {
+        return parser.parse(longLine);
+    }
+
+    @Benchmark
+    public String[] regexSplitShortLine() {
+        return regexSplit("ls -a");
+    }
+
+    @Benchmark
+    public String[] regexSplitLongLine() {
+        return regexSplit(longLine);
+    }
+
+    /**
+     * Splits a line the way Parser did before the tokenizer: the command, then a copy of the remaining words.
+     */
+    private static String[] regexSplit(String line) {
+        String[] tmp = line.split("\\s+");
+        String[] arguments = new String[tmp.length - 1];
+        System.arraycopy(tmp, 1, arguments, 0, tmp.length - 1);
+        return arguments;
+    }
+}
@@ -0,0 +1,66 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.ReadEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies the same regions with transferTo and with mapping, to find where mapping starts to pay off
+ * and tune {@code cli.read.mapThreshold}, whose default is {@link ReadEngine#DEFAULT_MAP_THRESHOLD}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ReadEngineBenchmark {
+    @Param({"65536", "1048576", "4194304", "16777216", "67108864"})
+    public long size;
+
+    @Param({"transfer", "map"})
+    public String mode;
+
+    private final OutputSink out = Fixtures.discard();
+    private Path dir;
+    private FileChannel file;
+    private ReadEngine engine;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("read");
+        Path path = dir.resolve("data.txt");
+        Fixtures.text(path, size);
+        file = FileChannel.open(path);
+        long threshold = mode.equals("map") ? 0 : Long.MAX_VALUE;
+        engine = new ReadEngine(threshold, ReadEngine.DEFAULT_MAP_WINDOW);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        file.close();
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public void copy() throws IOException {
+        engine.copy(file, 0, size, out);
+        out.flush();
+    }
+}
@@ -0,0 +1,73 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redirects the output of `cat` into a file with `>` and `>>`. The appended file is truncated
+ * before every iteration, so it does not grow without bound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RedirectionBenchmark {
+    @Param({"1024", "1048576"})
+    public long size;
+
+    private final Terminal terminal = new Terminal();
+    private final OutputSink out = Fixtures.discard();
+    private Path dir;
+    private Session session;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("redirect");
+        Fixtures.text(dir.resolve("data.txt"), size);
+        session = new Session(dir, Map.of(), null);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws IOException {
+        Files.deleteIfExists(dir.resolve("appended.txt"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        terminal.execute(session, "cat data.txt > written.txt", out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        terminal.execute(session, "cat data.txt >> appended.txt", out);
+        out.flush();
+    }
+}
@@ -0,0 +1,294 @@
+package cli.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The result of a replay: throughput, and latency percentiles per command type and over all commands.
+ * Reports are written as JSON and read back, so a run can be checked against a baseline run.
+ * The JSON is small and flat enough that it is written and parsed here, keeping the module free of a JSON library.
+ */
+final class Report {
+    /** The type under which the percentiles of all commands are reported. */
+    static final String ALL = "all";
+
+    private final Map<String, String> info = new LinkedHashMap<>();
+    private double commandsPerSecond;
+    private final Map<String, Latency> latencies = new TreeMap<>();
+
+    /**
+     * The latency percentiles of one command type, in microseconds.
+     */
+    record Latency(long count, double p50, double p99, double p999, double max) {
+        /**
+         * Computes the percentiles of latencies in nanoseconds; the array is sorted in place.
+         */
+        static Latency of(long[] nanos) {
+            Arrays.sort(nanos);
+            return new Latency(nanos.length, percentile(nanos, 0.50), percentile(nanos, 0.99),
+                    percentile(nanos, 0.999), nanos.length == 0 ? 0 : nanos[nanos.length - 1] / 1000.0);
+        }
+
+        /**
+         * Returns the nearest-rank percentile of sorted latencies, in microseconds.
+         */
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / 1000.0;
+        }
+    }
+
+    /**
+     * Records a description of the run, such as the workload and the number of sessions.
+     */
+    void info(String key, Object value) {
+        info.put(key, String.valueOf(value));
+    }
+
+    void setCommandsPerSecond(double commandsPerSecond) {
+        this.commandsPerSecond = commandsPerSecond;
+    }
+
+    void put(String type, Latency latency) {
+        latencies.put(type, latency);
+    }
+
+    /**
+     * Lists how this run is worse than a baseline by more than the threshold: lower throughput,
+     * or a higher p50, p99 or p999 for a command type both runs have.
+     *
+     * @param baseline  the earlier run.
+     * @param threshold the allowed relative regression, for example 0.10 for 10%.
+     * @return a line per regression; empty if there is none.
+     */
+    List<String> regressions(Report baseline, double threshold) {
+        List<String> found = new ArrayList<>();
+        if (commandsPerSecond < baseline.commandsPerSecond * (1 - threshold)) {
+            found.add(String.format(Locale.ROOT, "throughput: %.1f commands/s, baseline %.1f", commandsPerSecond, baseline.commandsPerSecond));
+        }
+        for (Map.Entry<String, Latency> entry : baseline.latencies.entrySet()) {
+            Latency now = latencies.get(entry.getKey());
+            if (now == null) {
+                continue;
+            }
+            Latency before = entry.getValue();
+            check(found, entry.getKey() + " p50", now.p50(), before.p50(), threshold);
+            check(found, entry.getKey() + " p99", now.p99(), before.p99(), threshold);
+            check(found, entry.getKey() + " p999", now.p999(), before.p999(), threshold);
+        }
+        return found;
+    }
+
+    private static void check(List<String> found, String what, double now, double before, double threshold) {
+        if (now > before * (1 + threshold)) {
+            found.add(String.format(Locale.ROOT, "%s: %.1f us, baseline %.1f us", what, now, before));
+        }
+    }
+
+    /**
+     * Returns the report as a table for the console.
+     */
+    String table() {
+        StringBuilder output = new StringBuilder();
+        output.append(String.format(Locale.ROOT, "%-10s %10s %12s %12s %12s %12s%n", "command", "count", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            Latency l = entry.getValue();
+            output.append(String.format(Locale.ROOT, "%-10s %10d %12.1f %12.1f %12.1f %12.1f%n", entry.getKey(), l.count(), l.p50(), l.p99(), l.p999(), l.max()));
+        }
+        output.append(String.format(Locale.ROOT, "%.1f commands/s%n", commandsPerSecond));
+        return output.toString();
+    }
+
+    /**
+     * Returns the report as JSON.
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        for (Map.Entry<String, String> entry : info.entrySet()) {
+            json.append("  ").append(quote(entry.getKey())).append(": ").append(quote(entry.getValue())).append(",\n");
+        }
+        json.append(String.format(Locale.ROOT, "  \"commandsPerSecond\": %.3f,%n", commandsPerSecond));
+        json.append("  \"latencyMicros\": {\n");
+        int i = 0;
+        for (Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            Latency l = entry.getValue();
+            json.append(String.format(Locale.ROOT, "    %s: {\"count\": %d, \"p50\": %.3f, \"p99\": %.3f, \"p999\": %.3f, \"max\": %.3f}%s%n",
+                    quote(entry.getKey()), l.count(), l.p50(), l.p99(), l.p999(), l.max(), ++i < latencies.size() ? "," : ""));
+        }
+        json.append("  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Reads a report written by {@link #toJson}.
+     *
+     * @param json the JSON text.
+     * @return the report.
+     * @throws IllegalArgumentException if the text is not a report.
+     */
+    static Report parse(String json) {
+        try {
+            return fromJson(new JsonReader(json).read());
+        } catch (ClassCastException | NullPointerException | IndexOutOfBoundsException e) { // Cut short, or fields of the wrong type
+            throw new IllegalArgumentException("not a replay report");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Report fromJson(Object value) {
+        if (!(value instanceof Map<?, ?> root) || !(root.get("latencyMicros") instanceof Map<?, ?> latencies)
+                || !(root.get("commandsPerSecond") instanceof Double commandsPerSecond)) {
+            throw new IllegalArgumentException("not a replay report");
+        }
+        Report report = new Report();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) root).entrySet()) {
+            if (entry.getValue() instanceof String text) {
+                report.info(entry.getKey(), text);
+            }
+        }
+        report.setCommandsPerSecond(commandsPerSecond);
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) latencies).entrySet()) {
+            Map<String, Object> l = (Map<String, Object>) entry.getValue();
+            report.put(entry.getKey(), new Latency(((Double) l.get("count")).longValue(), (Double) l.get("p50"),
+                    (Double) l.get("p99"), (Double) l.get("p999"), (Double) l.get("max")));
+        }
+        return report;
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> quoted.append(c < 0x20 ? String.format("\\u%04x", (int) c) : String.valueOf(c));
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Reads the JSON subset reports use: objects, strings and numbers, which are read as doubles.
+     */
+    private static final class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object read() {
+            Object value = value();
+            skipSpace();
+            if (pos != text.length()) {
+                throw error();
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipSpace();
+            if (pos >= text.length()) {
+                throw error();
+            }
+            char c = text.charAt(pos);
+            if (c == '{') {
+                return object();
+            }
+            if (c == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && "+-.0123456789eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            pos++; // {
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                object.put(key, value());
+                skipSpace();
+                if (peek() == '}') {
+                    pos++;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (peek() != '"') {
+                char c = text.charAt(pos++);
+                if (c == '\\') {
+                    char escaped = text.charAt(pos++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 't' -> value.append('\t');
+                        case 'u' -> {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                        }
+                        default -> value.append(escaped);
+                    }
+                }
+                else {
+                    value.append(c);
+                }
+            }
+            pos++;
+            return value.toString();
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error();
+            }
+            return text.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error();
+            }
+            pos++;
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("invalid JSON at offset " + pos);
+        }
+    }
+}
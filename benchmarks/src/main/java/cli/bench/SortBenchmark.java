@@ -0,0 +1,66 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Sorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts inputs against memory budgets below and above their size, to show what spilling runs
+ * and merging them costs compared with sorting in memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx2g"})
+public class SortBenchmark {
+    @Param({"1048576", "67108864"})
+    public long size;
+
+    @Param({"1M", "16M", "1G"})
+    public String budget;
+
+    private final OutputSink out = Fixtures.discard();
+    private Path dir;
+    private Path input;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Fixtures.directory("sort");
+        input = dir.resolve("data.txt");
+        Fixtures.text(input, size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public int sort() throws IOException {
+        try (Sorter sorter = new Sorter(false, false, false, 0, 0, Sorter.parseBudget(budget));
+             FileChannel in = FileChannel.open(input)) {
+            sorter.addAll(in);
+            sorter.finish(out);
+            out.flush();
+            return sorter.getRuns();
+        }
+    }
+}
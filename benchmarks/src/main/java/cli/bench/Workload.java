@@ -0,0 +1,182 @@
+package cli.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The command lines one session replays, either recorded in a script or generated from a mix of commands.
+ * <p>
+ * Generated workloads run in a tree of their own, built by {@link #tree}: a session directory holding
+ * directories d0, d1, ... each with text files f0, f1, .... The generator keeps track of where the session
+ * is and what it created, so its `cd`, `cat` and `rm` lines refer to entries that exist when they run.
+ * The whole script is generated up front, so generating it is not part of the measured time.
+ */
+final class Workload {
+    /** The mix used when none is given, in percent. */
+    static final String DEFAULT_MIX = "ls=30,cd=20,cat=20,touch=10,mkdir=10,rm=10";
+
+    private static final String[] COMMANDS = {"ls", "cd", "cat", "touch", "mkdir", "rm"};
+
+    private Workload() {
+    }
+
+    /**
+     * Reads a recorded script, skipping blank lines and lines starting with #, as `-f` does.
+     *
+     * @param script the script file.
+     * @return its command lines.
+     * @throws IOException if the script cannot be read.
+     */
+    static List<String> recorded(Path script) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(script)) {
+            if (!line.isBlank() && !line.stripLeading().startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Parses a mix such as {@code ls=30,cd=20}; commands left out do not run.
+     *
+     * @param mix the weights by command.
+     * @return the weights in the order of {@link #COMMANDS}.
+     * @throws IllegalArgumentException if a command is not one the generator knows or a weight is not a number.
+     */
+    static int[] parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2 || !List.of(COMMANDS).contains(pair[0].strip())) {
+                throw new IllegalArgumentException("invalid mix entry '" + part + "' (commands: " + String.join(", ", COMMANDS) + ")");
+            }
+            int weight = Integer.parseInt(pair[1].strip());
+            if (weight < 0) {
+                throw new IllegalArgumentException("invalid weight '" + pair[1] + "'");
+            }
+            weights.put(pair[0].strip(), weight);
+        }
+        int[] result = new int[COMMANDS.length];
+        for (int i = 0; i < COMMANDS.length; i++) {
+            result[i] = weights.getOrDefault(COMMANDS[i], 0);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the tree of one session: {@code directories} directories of {@code files} text files each.
+     *
+     * @param root        the session directory, created if missing.
+     * @param directories the number of directories.
+     * @param files       the number of files in each directory.
+     * @param fileSize    the size of each file in bytes.
+     * @throws IOException if the tree cannot be written.
+     */
+    static void tree(Path root, int directories, int files, long fileSize) throws IOException {
+        Files.createDirectories(root);
+        for (int d = 0; d < directories; d++) {
+            Path dir = Files.createDirectory(root.resolve("d" + d));
+            for (int f = 0; f < files; f++) {
+                Fixtures.text(dir.resolve("f" + f), fileSize);
+            }
+        }
+    }
+
+    /**
+     * Generates the command lines of one session, which starts in its session directory.
+     *
+     * @param weights     the weights of the commands, from {@link #parseMix}.
+     * @param count       the number of command lines.
+     * @param directories the number of directories in the session's tree.
+     * @param files       the number of files in each directory.
+     * @param seed        the seed, so runs with the same arguments replay the same lines.
+     * @return the command lines.
+     */
+    static List<String> synthetic(int[] weights, int count, int directories, int files, long seed) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("the mix has no commands");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<String, Deque<String>> created = new HashMap<>(); // Entries the script made, by the directory they are in
+        String where = ""; // "" for the session directory, else the name of the directory the session is in
+        int next = 0;
+        List<String> lines = new ArrayList<>(count);
+        while (lines.size() < count) {
+            int pick = random.nextInt(total);
+            int command = 0;
+            while (pick >= weights[command]) {
+                pick -= weights[command++];
+            }
+            Deque<String> here = created.computeIfAbsent(where, k -> new ArrayDeque<>());
+            switch (COMMANDS[command]) {
+                case "ls" -> lines.add(random.nextInt(4) == 0 ? "ls -l" : "ls");
+                case "cd" -> {
+                    if (where.isEmpty()) {
+                        where = "d" + random.nextInt(directories);
+                        lines.add("cd " + where);
+                    }
+                    else {
+                        where = "";
+                        lines.add("cd ..");
+                    }
+                }
+                case "cat" -> {
+                    String file = "f" + random.nextInt(files);
+                    lines.add("cat " + (where.isEmpty() ? "d" + random.nextInt(directories) + "/" + file : file));
+                }
+                case "touch" -> {
+                    String name = "t" + next++;
+                    here.add(name);
+                    lines.add("touch " + name);
+                }
+                case "mkdir" -> {
+                    String name = "m" + next++;
+                    here.add(name);
+                    lines.add("mkdir " + name);
+                }
+                default -> { // rm, of what this session created here, oldest first
+                    String name = here.poll();
+                    if (name == null) { // Nothing to remove yet, so make something
+                        name = "t" + next++;
+                        here.add(name);
+                        lines.add("touch " + name);
+                    }
+                    else {
+                        lines.add(name.startsWith("m") ? "rm -r " + name : "rm " + name);
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the type a command line is reported under: the name of its first command.
+     *
+     * @param line the command line.
+     * @return the command name.
+     */
+    static String type(String line) {
+        String stripped = line.strip();
+        int end = 0;
+        while (end < stripped.length() && !Character.isWhitespace(stripped.charAt(end))
+                && stripped.charAt(end) != '|' && stripped.charAt(end) != ';') {
+            end++;
+        }
+        return end == 0 ? "(empty)" : stripped.substring(0, end);
+    }
+}
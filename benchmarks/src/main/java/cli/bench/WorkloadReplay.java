@@ -0,0 +1,273 @@
+package cli.bench;
+
+import cli.OutputSink;
+import cli.Session;
+import cli.Terminal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Replays command lines through one {@link Terminal}, as sessions of a daemon would, and reports the
+ * p50, p99 and p999 latency of every command type and the commands per second of the whole run.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar cli.bench.WorkloadReplay [options]
+ *   --script FILE       replay a recorded script instead of a generated workload
+ *   --commands N        generated lines per session (20000)
+ *   --mix SPEC          weights of the generated commands ({@value Workload#DEFAULT_MIX})
+ *   --sessions N        sessions replaying at once, each on its own thread and tree (1)
+ *   --dirs N, --files N, --file-size BYTES
+ *                       the tree of each session (10 directories of 20 files of 4096 bytes)
+ *   --warmup N          generated lines run first, unmeasured, so the JIT has compiled the commands (5000)
+ *   --seed N            the seed of the generated lines (1)
+ *   --dir DIR           where the trees are built (a new temporary directory, removed afterwards)
+ *   --emit FILE         also write the lines of the first session, to replay them later with --script
+ *   --out FILE          where the JSON report goes (replay-result.json)
+ *   --baseline FILE     an earlier report; exits with 1 if this run is worse by more than the threshold
+ *   --threshold PCT     the allowed regression in throughput and in each percentile (10)
+ * </pre>
+ * Output of the commands is thrown away, so the latency is that of the commands and not of a console.
+ */
+public class WorkloadReplay {
+    private String script;
+    private int commands = 20_000;
+    private String mix = Workload.DEFAULT_MIX;
+    private int sessions = 1;
+    private int directories = 10;
+    private int files = 20;
+    private long fileSize = 4096;
+    private int warmup = 5_000;
+    private long seed = 1;
+    private String dir;
+    private String emit;
+    private String out = "replay-result.json";
+    private String baseline;
+    private double threshold = 0.10;
+
+    public static void main(String[] args) {
+        WorkloadReplay replay = new WorkloadReplay();
+        try {
+            replay.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("replay: " + e.getMessage());
+            System.exit(2);
+        }
+        try {
+            System.exit(replay.run());
+        } catch (IllegalArgumentException e) {
+            System.err.println("replay: " + e.getMessage());
+            System.exit(2);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("replay: " + e);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Reads the options.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[++i];
+            try {
+                switch (args[i - 1]) {
+                    case "--script" -> script = value;
+                    case "--commands" -> commands = positive(Integer.parseInt(value));
+                    case "--mix" -> mix = value;
+                    case "--sessions" -> sessions = positive(Integer.parseInt(value));
+                    case "--dirs" -> directories = positive(Integer.parseInt(value));
+                    case "--files" -> files = positive(Integer.parseInt(value));
+                    case "--file-size" -> fileSize = Long.parseLong(value);
+                    case "--warmup" -> warmup = Integer.parseInt(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--dir" -> dir = value;
+                    case "--emit" -> emit = value;
+                    case "--out" -> out = value;
+                    case "--baseline" -> baseline = value;
+                    case "--threshold" -> threshold = Double.parseDouble(value) / 100;
+                    default -> throw new IllegalArgumentException("unknown option " + args[i - 1]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid value '" + value + "' for " + args[i - 1]);
+            }
+        }
+        Workload.parseMix(mix); // Fail before building any tree
+    }
+
+    private static int positive(int value) {
+        if (value <= 0) {
+            throw new NumberFormatException();
+        }
+        return value;
+    }
+
+    /**
+     * Builds the trees, replays the workload and writes the report.
+     *
+     * @return the exit status: 0, or 1 if the run regressed against the baseline.
+     */
+    private int run() throws IOException, InterruptedException {
+        Report before = null;
+        if (baseline != null) {
+            try {
+                before = Report.parse(Files.readString(Path.of(baseline)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("can't read the baseline '" + baseline + "': " + e.getMessage());
+            }
+        }
+        int[] weights = Workload.parseMix(mix);
+        List<String> recorded = script == null ? null : Workload.recorded(Path.of(script));
+        Path root = dir == null ? Fixtures.directory("replay") : Files.createDirectories(Path.of(dir));
+        try {
+            Terminal terminal = new Terminal();
+            if (warmup > 0) {
+                Path warm = root.resolve("warmup");
+                Workload.tree(warm, directories, files, fileSize);
+                replay(terminal, warm, Workload.synthetic(weights, warmup, directories, files, seed - 1), Fixtures.discard());
+            }
+            List<List<String>> lines = new ArrayList<>();
+            for (int s = 0; s < sessions; s++) {
+                Workload.tree(root.resolve("s" + s), directories, files, fileSize);
+                lines.add(recorded != null ? recorded : Workload.synthetic(weights, commands, directories, files, seed + s));
+            }
+            if (emit != null) {
+                Files.write(Path.of(emit), lines.get(0));
+            }
+
+            Report report = measure(terminal, root, lines);
+            report.info("workload", script != null ? "script " + script : "synthetic " + mix);
+            report.info("sessions", sessions);
+            report.info("commandsPerSession", lines.get(0).size());
+            report.info("tree", directories + " directories of " + files + " files of " + fileSize + " bytes");
+            report.info("java", System.getProperty("java.version"));
+            report.info("processors", Runtime.getRuntime().availableProcessors());
+            Files.writeString(Path.of(out), report.toJson());
+            System.out.print(report.table());
+            System.out.println("report written to " + out);
+
+            if (before != null) {
+                List<String> regressions = report.regressions(before, threshold);
+                for (String regression : regressions) {
+                    System.out.println("REGRESSION " + regression);
+                }
+                if (!regressions.isEmpty()) {
+                    return 1;
+                }
+                System.out.println(String.format(Locale.ROOT, "within %.0f%% of %s", threshold * 100, baseline));
+            }
+            return 0;
+        }
+        finally {
+            if (dir == null) {
+                Fixtures.delete(root);
+            }
+        }
+    }
+
+    /**
+     * Runs the sessions at once, each on its own thread, and collects their latencies.
+     */
+    private Report measure(Terminal terminal, Path root, List<List<String>> lines) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Map<String, Samples>> results = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < lines.size(); s++) {
+            Map<String, Samples> samples = new HashMap<>();
+            results.add(samples);
+            Path home = root.resolve("s" + s);
+            List<String> session = lines.get(s);
+            threads.add(Thread.ofPlatform().name("replay-" + s).start(() -> {
+                try {
+                    start.await();
+                    samples.putAll(replay(terminal, home, session, Fixtures.discard()));
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("a session failed", failures.get(0));
+        }
+
+        Map<String, Samples> merged = new HashMap<>();
+        Samples all = new Samples();
+        for (Map<String, Samples> samples : results) {
+            for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), k -> new Samples()).addAll(entry.getValue());
+                all.addAll(entry.getValue());
+            }
+        }
+        Report report = new Report();
+        for (Map.Entry<String, Samples> entry : merged.entrySet()) {
+            report.put(entry.getKey(), Report.Latency.of(entry.getValue().toArray()));
+        }
+        long total = all.size;
+        report.put(Report.ALL, Report.Latency.of(all.toArray()));
+        report.setCommandsPerSecond(total / (elapsed / 1e9));
+        return report;
+    }
+
+    /**
+     * Runs the lines in a new session starting in the given directory, timing each one.
+     */
+    private static Map<String, Samples> replay(Terminal terminal, Path home, List<String> lines, OutputSink sink) throws IOException {
+        Session session = new Session(home, Map.of(), null);
+        Map<String, Samples> samples = new HashMap<>();
+        for (String line : lines) {
+            long started = System.nanoTime();
+            terminal.execute(session, line, sink);
+            sink.flush();
+            long nanos = System.nanoTime() - started;
+            samples.computeIfAbsent(Workload.type(line), k -> new Samples()).add(nanos);
+            if (session.isExited()) {
+                break;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * A growable list of latencies in nanoseconds, so recording one does not box it.
+     */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cli;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The BulkExecutor class runs per-argument work for commands that take many paths.
+ * Short argument lists run on the calling thread. Longer ones are spread over a shared,
+ * bounded fork-join pool, so a command given thousands of paths is not limited by the
+ * latency of one syscall at a time. Results are always collected in argument order,
+ * so the output stays deterministic.
+ * <p>
+ * The pool size can be set with the {@code cli.bulk.parallelism} system property.
+ */
+public final class BulkExecutor {
+    public static final int PARALLEL_THRESHOLD = 32;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Integer.getInteger("cli.bulk.parallelism", Math.max(4, 2 * Runtime.getRuntime().availableProcessors())));
+
+    private BulkExecutor() {
+    }
+
+    /**
+     * Returns the shared pool used for bulk filesystem work.
+     *
+     * @return the fork-join pool.
+     */
+    public static ForkJoinPool pool() {
+        return POOL;
+    }
+
+    /**
+     * Applies an operation to every argument and joins the messages it returns.
+     *
+     * @param args      the arguments given to the command.
+     * @param operation runs on one argument and returns its message, or an empty string.
+     * @return the messages concatenated in argument order.
+     */
+    public static String map(String[] args, Function<String, String> operation) {
+        if (args.length < PARALLEL_THRESHOLD) {
+            StringBuilder output = new StringBuilder();
+            for (String arg : args) {
+                output.append(operation.apply(arg));
+            }
+            return output.toString();
+        }
+        return POOL.submit(() -> Arrays.stream(args).parallel()
+                .map(operation)
+                .collect(Collectors.joining())).join();
+    }
+
+    /**
+     * Runs an operation for every index from 0 to count - 1, in parallel when count is large enough.
+     * The operation must only write to slots it owns, for example the element of an array at its index.
+     *
+     * @param count     the number of indexes.
+     * @param operation runs on one index.
+     */
+    public static void forEach(int count, IntConsumer operation) {
+        if (count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                operation.accept(i);
+            }
+            return;
+        }
+        POOL.submit(() -> IntStream.range(0, count).parallel().forEach(operation)).join();
+    }
+}
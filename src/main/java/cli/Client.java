@@ -0,0 +1,153 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The Client class runs command lines in a session of a {@link Daemon}.
+ * It is small on purpose: a reference for the protocol and a way to try the daemon by hand.
+ * <p>
+ * {@code java cli.Client socket} runs the lines typed on standard input;
+ * {@code java cli.Client socket -c "cmd; cmd"} runs the given statements.
+ */
+public class Client implements Closeable {
+    private static final int MAX_REPLY_FRAME = Integer.MAX_VALUE - 8;
+
+    private final SocketChannel channel;
+
+    /**
+     * Connects to a daemon, starting a new session.
+     *
+     * @param socketPath the socket file of the daemon.
+     * @throws IOException if no daemon is listening on it.
+     */
+    public Client(Path socketPath) throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        }
+        catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs a command line and returns its output.
+     *
+     * @param line the command line.
+     * @return everything the command printed.
+     * @throws IOException if the connection fails.
+     */
+    public String execute(String line) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        execute(line, Channels.newChannel(buffer));
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs a command line, copying its output into a channel as it arrives.
+     *
+     * @param line the command line.
+     * @param out  the channel receiving the output.
+     * @throws IOException if the connection or the output channel fails.
+     */
+    public void execute(String line, WritableByteChannel out) throws IOException {
+        if (!tryExecute(line, out)) {
+            throw new EOFException("the daemon closed the session");
+        }
+    }
+
+    /**
+     * Runs a command line like {@link #execute(String, WritableByteChannel)}, but returns false instead of
+     * failing if the daemon had already ended the session, as it does after a line running `exit`.
+     *
+     * @param line the command line.
+     * @param out  the channel receiving the output.
+     * @return false if the session ended before the line could run.
+     * @throws IOException if the connection fails while the line runs, or the output channel fails.
+     */
+    public boolean tryExecute(String line, WritableByteChannel out) throws IOException {
+        try {
+            Frames.write(channel, StandardCharsets.UTF_8.encode(line));
+        }
+        catch (IOException ex) { // The daemon closed its end after the previous reply
+            return false;
+        }
+        ByteBuffer frame;
+        try {
+            frame = Frames.read(channel, MAX_REPLY_FRAME);
+        }
+        catch (EOFException ex) { // Inside a frame, so the daemon broke off a reply
+            throw ex;
+        }
+        catch (IOException ex) { // Reset because the daemon closed with this line unread
+            return false;
+        }
+        if (frame == null) { // Ended after the previous reply's last frame
+            return false;
+        }
+        while (true) {
+            if (frame == null) {
+                throw new EOFException("the daemon closed the session");
+            }
+            if (!frame.hasRemaining()) { // The end of the output
+                return true;
+            }
+            while (frame.hasRemaining()) {
+                out.write(frame);
+            }
+            frame = Frames.read(channel, MAX_REPLY_FRAME);
+        }
+    }
+
+    /**
+     * Ends the session.
+     *
+     * @throws IOException if closing the connection fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("-c"))) {
+            System.err.println("usage: cli.Client socket [-c \"command; command\"]");
+            System.exit(2);
+        }
+        try (Client client = new Client(Path.of(args[0]))) {
+            WritableByteChannel out = Channels.newChannel(System.out);
+            if (args.length == 3) {
+                client.execute(args[2], out);
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!client.tryExecute(line, out)) { // A previous line ran `exit`, for example as `ls; exit`
+                    return;
+                }
+                if (line.strip().equals("exit")) { // Ends now rather than at the next line
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("cli: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The Command interface is implemented by every builtin the terminal can run.
+ * Commands that depend on the session running them implement {@link SessionCommand} instead.
+ */
+@FunctionalInterface
+public interface Command {
+    /**
+     * Runs the command.
+     *
+     * @param args the arguments given to the command, without any redirection.
+     * @param in   the output of the previous pipeline stage, or null if the command is not piped.
+     * @param out  the sink receiving the output of the command.
+     * @throws IOException if reading the input or writing to the sink fails.
+     */
+    void execute(String[] args, ReadableByteChannel in, OutputSink out) throws IOException;
+
+    /**
+     * Runs the command in a session. Commands that do not depend on the session ignore it.
+     * Wrappers should call this method, so the commands they wrap still see the session.
+     *
+     * @param session the session running the command.
+     * @param args    the arguments given to the command, without any redirection.
+     * @param in      the output of the previous pipeline stage, or null if the command is not piped.
+     * @param out     the sink receiving the output of the command.
+     * @throws IOException if reading the input or writing to the sink fails.
+     */
+    default void execute(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        execute(args, in, out);
+    }
+}
@@ -0,0 +1,95 @@
+package cli;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The CommandMetrics class holds what {@link Instrumentation} records about one command.
+ * Counters are {@link LongAdder}s, so sessions running the same command at once do not contend on them.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Records one run of the command.
+     *
+     * @param nanos   how long it ran.
+     * @param failed  true if it ended with an exception or reported an error.
+     * @param read    the bytes it read from the previous pipeline stage and from files.
+     * @param written the bytes it wrote.
+     */
+    public void record(long nanos, boolean failed, long read, long written) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (read > 0) {
+            bytesRead.add(read);
+        }
+        if (written > 0) {
+            bytesWritten.add(written);
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Returns the histogram of the command's latencies.
+     *
+     * @return the histogram, in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public double getLatencyP50() {
+        return latency.getPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99() {
+        return latency.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP999() {
+        return latency.getPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMax() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        latency.reset();
+    }
+}
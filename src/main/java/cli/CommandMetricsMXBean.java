@@ -0,0 +1,68 @@
+package cli;
+
+/**
+ * The management interface of the metrics of one command, registered with JMX as
+ * {@code cli:type=CommandMetrics,terminal=<name>,command=<command>}. Latencies are in microseconds.
+ */
+public interface CommandMetricsMXBean {
+    /**
+     * Returns the number of times the command ran.
+     *
+     * @return the call count.
+     */
+    long getCalls();
+
+    /**
+     * Returns the number of runs that ended with an exception or reported an error, such as a missing file.
+     *
+     * @return the error count.
+     */
+    long getErrors();
+
+    /**
+     * Returns the bytes the command read from the previous pipeline stage and from files.
+     *
+     * @return the byte count.
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the bytes the command wrote.
+     *
+     * @return the byte count.
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns the median latency.
+     *
+     * @return the latency in microseconds.
+     */
+    double getLatencyP50();
+
+    /**
+     * Returns the 99th percentile latency.
+     *
+     * @return the latency in microseconds.
+     */
+    double getLatencyP99();
+
+    /**
+     * Returns the 99.9th percentile latency.
+     *
+     * @return the latency in microseconds.
+     */
+    double getLatencyP999();
+
+    /**
+     * Returns the largest latency.
+     *
+     * @return the latency in microseconds.
+     */
+    double getLatencyMax();
+
+    /**
+     * Clears the metrics of the command.
+     */
+    void reset();
+}
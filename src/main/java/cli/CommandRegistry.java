@@ -0,0 +1,59 @@
+package cli;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * The CommandRegistry class maps command names to their implementations.
+ * Lookups are a single hash probe, and wrappers (timing, metrics, cancellation)
+ * can be applied to every registered command in one place.
+ */
+public class CommandRegistry {
+    private final Map<String, Command> commands = new HashMap<>();
+
+    /**
+     * Registers a command under the given name.
+     *
+     * @param name    the name typed by the user.
+     * @param command the implementation of the command.
+     * @throws IllegalArgumentException if a command with the same name is already registered.
+     */
+    public void register(String name, Command command) {
+        if (commands.putIfAbsent(name, command) != null) {
+            throw new IllegalArgumentException("command already registered: " + name);
+        }
+    }
+
+    /**
+     * Finds the command registered under the given name.
+     *
+     * @param name the name typed by the user.
+     * @return the command, or null if no command has that name.
+     */
+    public Command lookup(String name) {
+        return commands.get(name);
+    }
+
+    /**
+     * Replaces every registered command with a wrapped version of itself.
+     * Builtins that depend on the session are {@link SessionCommand}s, so wrappers of a {@link Terminal}'s
+     * commands should be SessionCommands too and call {@link Command#execute(Session, String[], java.nio.channels.ReadableByteChannel, OutputSink)}.
+     *
+     * @param wrapper receives the command name and the current implementation, and returns the wrapped implementation.
+     */
+    public void wrapAll(BiFunction<String, Command, Command> wrapper) {
+        commands.replaceAll(wrapper);
+    }
+
+    /**
+     * Returns the names of all registered commands.
+     *
+     * @return an unmodifiable view of the command names.
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(commands.keySet());
+    }
+}
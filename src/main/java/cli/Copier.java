@@ -0,0 +1,262 @@
+package cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Copier class copies files and directory trees for `cp`, and for `mv` across filesystems.
+ * File data is copied with {@link Files#copy(Path, Path, CopyOption...)}, which hands the work
+ * to the kernel, so the bytes never pass through the Java heap.
+ * <p>
+ * A tree is walked once on the calling thread. Each directory is created as soon as the walk
+ * reaches it, before any of its files, and every file is copied as a task on the shared bulk
+ * pool. The number of copies waiting or running is bounded, so the walk cannot run arbitrarily
+ * far ahead of the copies. Errors are collected and the copy carries on with everything else.
+ */
+public class Copier {
+    private static final int MAX_PENDING = 4 * BulkExecutor.pool().getParallelism();
+
+    /**
+     * A directory whose attributes are set once everything inside it has been copied.
+     */
+    private static class PreservedDirectory {
+        final Path target;
+        final BasicFileAttributes attributes;
+
+        PreservedDirectory(Path target, BasicFileAttributes attributes) {
+            this.target = target;
+            this.attributes = attributes;
+        }
+    }
+
+    private final String command;
+    private final boolean preserve;
+    private final Semaphore pending = new Semaphore(MAX_PENDING);
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+    private final List<PreservedDirectory> preserved = new ArrayList<>();
+
+    /**
+     * Constructs a Copier.
+     *
+     * @param command  the command the error messages are reported for.
+     * @param preserve true to keep permissions and modification times, as `cp -p` does.
+     */
+    public Copier(String command, boolean preserve) {
+        this.command = command;
+        this.preserve = preserve;
+    }
+
+    /**
+     * Starts copying a file, or walks a directory and starts copying everything in it.
+     * Symbolic links inside trees are copied as links. Call {@link #await()} to wait for the copies.
+     *
+     * @param source     the file or directory to copy.
+     * @param attributes the attributes of the source, already read by the caller.
+     * @param target     the path of the copy.
+     */
+    public void copy(Path source, BasicFileAttributes attributes, Path target) {
+        if (!attributes.isDirectory()) {
+            submit(source, attributes, target, !attributes.isSymbolicLink());
+            return;
+        }
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    Path copy = target.resolve(source.relativize(dir).toString());
+                    try {
+                        Files.createDirectory(copy);
+                    }
+                    catch (FileAlreadyExistsException ex) { // Copying into an existing tree merges the two
+                        if (!Files.isDirectory(copy, LinkOption.NOFOLLOW_LINKS)) {
+                            fail(dir, ex);
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                    }
+                    catch (IOException ex) {
+                        fail(dir, ex);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    directories.increment();
+                    if (preserve) {
+                        preserved.add(new PreservedDirectory(copy, attrs));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    submit(file, attrs, target.resolve(source.relativize(file).toString()), false);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    fail(file, ex);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException ex) {
+            fail(source, ex);
+        }
+    }
+
+    /**
+     * Waits for every copy started so far, then sets the attributes of the copied directories when preserving them.
+     */
+    public void await() {
+        pending.acquireUninterruptibly(MAX_PENDING); // Every permit back means every copy is done
+        pending.release(MAX_PENDING);
+        for (int i = preserved.size() - 1; i >= 0; i--) { // Deepest first, so setting them does not change them again
+            PreservedDirectory dir = preserved.get(i);
+            try {
+                copyAttributes(dir.target, dir.attributes);
+            }
+            catch (IOException ex) {
+                fail(dir.target, ex);
+            }
+        }
+        preserved.clear();
+    }
+
+    /**
+     * Checks that a copy matches its source: every entry of the source must exist in the copy with
+     * the same type, and every regular file with the same size.
+     *
+     * @param source the file or directory that was copied.
+     * @param target the copy.
+     * @return true if the copy is complete.
+     */
+    public static boolean verify(Path source, Path target) {
+        try (var entries = Files.walk(source)) {
+            return entries.allMatch(entry -> {
+                try {
+                    BasicFileAttributes original = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    BasicFileAttributes copy = Files.readAttributes(target.resolve(source.relativize(entry).toString()),
+                            BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    return original.isDirectory() == copy.isDirectory()
+                            && original.isSymbolicLink() == copy.isSymbolicLink()
+                            && (!original.isRegularFile() || original.size() == copy.size());
+                }
+                catch (IOException ex) { // Missing from the copy, or unreadable
+                    return false;
+                }
+            });
+        }
+        catch (IOException | UncheckedIOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of files (and links) copied so far.
+     *
+     * @return the file count.
+     */
+    public long getFiles() {
+        return files.sum();
+    }
+
+    /**
+     * Returns the number of directories created so far.
+     *
+     * @return the directory count.
+     */
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    /**
+     * Returns the number of bytes copied so far.
+     *
+     * @return the byte count.
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the errors collected so far.
+     *
+     * @return the error messages, one per failed path.
+     */
+    public List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Copies one file on the bulk pool, waiting first if too many copies are already pending.
+     */
+    private void submit(Path source, BasicFileAttributes attributes, Path target, boolean followLinks) {
+        pending.acquireUninterruptibly();
+        BulkExecutor.pool().execute(() -> {
+            try {
+                Files.copy(source, target, options(followLinks));
+                files.increment();
+                bytes.add(attributes.size());
+            }
+            catch (IOException ex) {
+                fail(source, ex);
+            }
+            finally {
+                pending.release();
+            }
+        });
+    }
+
+    /**
+     * Returns the copy options for one file.
+     */
+    private CopyOption[] options(boolean followLinks) {
+        List<CopyOption> options = new ArrayList<>(3);
+        options.add(StandardCopyOption.REPLACE_EXISTING);
+        if (preserve) {
+            options.add(StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        if (!followLinks) {
+            options.add(LinkOption.NOFOLLOW_LINKS);
+        }
+        return options.toArray(new CopyOption[0]);
+    }
+
+    /**
+     * Gives a copied directory the permissions and times of its source.
+     */
+    private static void copyAttributes(Path target, BasicFileAttributes attributes) throws IOException {
+        if (attributes instanceof PosixFileAttributes posix) {
+            Files.setPosixFilePermissions(target, posix.permissions());
+        }
+        Files.getFileAttributeView(target, BasicFileAttributeView.class)
+                .setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), attributes.creationTime());
+    }
+
+    /**
+     * Records a failure.
+     */
+    private void fail(Path path, IOException ex) {
+        String reason = ex instanceof NoSuchFileException ? "No such file or directory" : ex.getClass().getSimpleName();
+        errors.add(command + ": cannot copy '" + path + "': " + reason);
+    }
+}
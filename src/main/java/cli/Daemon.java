@@ -0,0 +1,228 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Daemon class serves terminal sessions over a Unix domain socket, so clients that run many
+ * small batches of commands pay for JVM startup once instead of once per batch.
+ * Every connection is a {@link Session} of one shared {@link Terminal}, with its own working directory,
+ * served by its own virtual thread; thousands of mostly idle sessions cost a few kilobytes each.
+ * The directory cache belongs to the Terminal, so `cache on` in one session speeds up all of them.
+ * <p>
+ * Clients send command lines and receive their output in frames, as described in {@link Frames}.
+ * `exit` ends the session instead of the daemon. Each session also has a virtual thread reading the
+ * client's requests ahead, so a client that disconnects is noticed even while a command that writes
+ * nothing, such as `tail -f` on a quiet file, is running; that command is interrupted.
+ */
+public class Daemon implements Closeable {
+    private static final int BACKLOG = 4096; // Clients connecting at once; beyond it, connects fail instead of waiting
+    private static final int REQUESTS_AHEAD = 16; // Command lines a client may send before their output
+    private static final ByteBuffer HANGUP = ByteBuffer.allocate(0); // Queued once the client has gone
+
+    private final Path socketPath;
+    private final Terminal terminal = new Terminal();
+    private final Map<SocketChannel, Thread> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong totalSessions = new AtomicLong();
+    private ServerSocketChannel server;
+    private Thread acceptor;
+
+    /**
+     * Constructs a Daemon listening on the given socket file once started.
+     *
+     * @param socketPath the path of the socket file.
+     */
+    public Daemon(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Binds the socket, registers the command metrics with JMX and starts accepting sessions on a background thread.
+     * A socket file left behind by a daemon that is no longer running is replaced.
+     *
+     * @throws IOException if the socket cannot be bound or another daemon is listening on it.
+     */
+    public void start() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socketPath);
+        if (Files.exists(socketPath)) {
+            if (isListening(address)) {
+                throw new IOException("a daemon is already listening on " + socketPath);
+            }
+            Files.delete(socketPath); // Nobody is listening, so the file is stale
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address, BACKLOG);
+        terminal.getInstrumentation().registerMBeans("daemon " + socketPath);
+        acceptor = Thread.ofPlatform().name("daemon-acceptor").start(this::accept);
+    }
+
+    /**
+     * Waits until the daemon is closed.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Returns the number of sessions currently connected.
+     *
+     * @return the active session count.
+     */
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of sessions accepted since the daemon started.
+     *
+     * @return the total session count.
+     */
+    public long getTotalSessions() {
+        return totalSessions.get();
+    }
+
+    /**
+     * Returns the terminal the sessions run on, so callers can register or wrap its commands.
+     *
+     * @return the shared terminal.
+     */
+    public Terminal getTerminal() {
+        return terminal;
+    }
+
+    /**
+     * Stops accepting sessions, disconnects the connected ones and interrupts the commands they run, turns the directory cache off,
+     * unregisters the command metrics and removes the socket file.
+     *
+     * @throws IOException if the socket file cannot be removed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        for (Map.Entry<SocketChannel, Thread> session : sessions.entrySet()) {
+            session.getKey().close();
+            session.getValue().interrupt(); // Stops commands that do not write, such as `tail -f`
+        }
+        terminal.closeCache();
+        terminal.getInstrumentation().unregisterMBeans();
+        Files.deleteIfExists(socketPath);
+    }
+
+    /**
+     * Returns whether something accepts connections on the address.
+     */
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        }
+        catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Accepts connections until the server socket is closed, starting a virtual thread per session.
+     */
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                Thread session = Thread.ofVirtual().name("session-" + totalSessions.incrementAndGet())
+                        .unstarted(() -> serve(channel));
+                sessions.put(channel, session); // Before it starts, so it is never removed before it is added
+                session.start();
+            }
+            catch (AsynchronousCloseException ex) { // Closed by close()
+                return;
+            }
+            catch (IOException ex) {
+                if (!server.isOpen()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the command lines of one session until the client disconnects or runs `exit`.
+     */
+    private void serve(SocketChannel channel) {
+        Session session = new Session(terminal.getDefaultSession().getCurrentDir(), System.getenv(), null);
+        WritableByteChannel frames = Frames.writer(channel);
+        BlockingQueue<ByteBuffer> requests = new ArrayBlockingQueue<>(REQUESTS_AHEAD);
+        Thread self = Thread.currentThread();
+        Thread reader = Thread.ofVirtual().name(self.getName() + "-reader")
+                .start(() -> readRequests(channel, requests, self));
+        try (channel) {
+            while (!session.isExited()) {
+                ByteBuffer request = requests.take();
+                if (request == HANGUP) {
+                    return;
+                }
+                String line = StandardCharsets.UTF_8.decode(request).toString();
+                // A sink per command, so an idle session holds no output buffer
+                try (OutputSink out = OutputSink.toChannel(frames)) {
+                    terminal.execute(session, line, out);
+                }
+                catch (RuntimeException ex) {
+                    try (OutputSink out = OutputSink.toChannel(frames)) {
+                        out.print("cli: the command failed: " + ex + "\n");
+                    }
+                }
+                Frames.write(channel, ByteBuffer.allocate(0)); // The end of the output
+            }
+        }
+        catch (IOException ex) { // The client went away or broke the protocol, so the session ends
+        }
+        catch (InterruptedException ex) { // The client went away or the daemon is closing
+        }
+        finally {
+            sessions.remove(channel);
+            reader.interrupt(); // In case it waits for room in the queue
+        }
+    }
+
+    /**
+     * Reads the requests of a session into its queue. Once the client disconnects or breaks the protocol,
+     * closes the channel and interrupts the session, which may be running a command that never writes.
+     */
+    private static void readRequests(SocketChannel channel, BlockingQueue<ByteBuffer> requests, Thread session) {
+        try {
+            ByteBuffer request;
+            while ((request = Frames.read(channel, Frames.MAX_REQUEST)) != null) {
+                requests.put(request);
+            }
+        }
+        catch (IOException ex) { // Broken protocol, or the session closed the channel
+        }
+        catch (InterruptedException ex) { // The session ended
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        requests.offer(HANGUP); // For a session waiting for its next request
+        session.interrupt();
+    }
+}
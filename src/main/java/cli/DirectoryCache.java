@@ -0,0 +1,338 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The DirectoryCache class keeps the listings and entry attributes of recently used directories.
+ * Directories are evicted least recently used first once the estimated memory of the cached
+ * listings goes above the cap.
+ * <p>
+ * A cached directory is dropped when a {@link WatchService} reports a change in it. Where the
+ * directory cannot be watched, every hit compares its modification time with the one seen when it
+ * was listed instead. Network file stores such as NFS accept watches but only report the changes made
+ * through this machine, so their directories are never watched and always compared this way.
+ * Watch events arrive asynchronously, so the terminal also drops the directories it changes itself
+ * with {@link #invalidate(Path)} and {@link #invalidateTree(Path)} right after changing them.
+ * <p>
+ * Every lookup counts as a hit or a miss, whether it lists the directory or only asks for a cached listing.
+ */
+public class DirectoryCache implements Closeable {
+    private static final long ENTRY_OVERHEAD = 240; // Map node, String header and attributes object
+    private static final Set<String> REMOTE_STORES = Set.of("nfs", "nfs4", "cifs", "smb", "smb2", "smbfs",
+            "9p", "afs", "ceph", "glusterfs", "lustre", "fuse.sshfs", "webdav", "davfs"); // Types as /proc/mounts names them
+
+    /**
+     * A cached listing.
+     */
+    private static class Listing {
+        final Map<String, BasicFileAttributes> entries;
+        final FileTime modified;
+        final long bytes;
+        final WatchKey key;
+
+        Listing(Map<String, BasicFileAttributes> entries, FileTime modified, long bytes, WatchKey key) {
+            this.entries = entries;
+            this.modified = modified;
+            this.bytes = bytes;
+            this.key = key;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<WatchKey, Path> watched = new HashMap<>();
+    private final WatchService watcher;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    /**
+     * Constructs a DirectoryCache.
+     *
+     * @param maxBytes the estimated memory the cached listings may use.
+     */
+    public DirectoryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        WatchService service;
+        try {
+            service = Path.of("").toAbsolutePath().getFileSystem().newWatchService();
+        } catch (IOException | UnsupportedOperationException ex) { // Fall back to modification times only
+            service = null;
+        }
+        this.watcher = service;
+    }
+
+    /**
+     * Returns the entries of a directory, listing it only if it is not cached or has changed.
+     * Every entry comes with its attributes, read with one call per entry. The directory is
+     * listed without holding the cache's lock, so lookups of other directories go on meanwhile.
+     *
+     * @param dir the directory, as an absolute normalized path.
+     * @return the entries by name, in directory order; the map must not be modified.
+     * @throws IOException if the directory cannot be read.
+     */
+    public Map<String, BasicFileAttributes> entries(Path dir) throws IOException {
+        WatchKey key;
+        synchronized (this) {
+            Map<String, BasicFileAttributes> cached = cachedEntries(dir);
+            if (cached != null) {
+                return cached;
+            }
+            key = watch(dir); // Before listing, so a change made while listing still drops the listing
+        }
+        Map<String, BasicFileAttributes> entries = new LinkedHashMap<>();
+        FileTime modified;
+        long bytes = ENTRY_OVERHEAD;
+        try {
+            modified = Files.getLastModifiedTime(dir);
+            boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    try {
+                        BasicFileAttributes attributes = posix
+                                ? Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                                : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        String name = path.getFileName().toString();
+                        entries.put(name, attributes);
+                        bytes += ENTRY_OVERHEAD + 2L * name.length();
+                    }
+                    catch (NoSuchFileException ex) { // Removed while the directory was being read
+                    }
+                }
+            }
+        }
+        catch (IOException ex) {
+            synchronized (this) {
+                unwatch(key);
+            }
+            throw ex;
+        }
+        entries = Collections.unmodifiableMap(entries);
+        synchronized (this) {
+            if (bytes > maxBytes) { // Would evict everything else, so do not cache it
+                unwatch(key);
+                return entries;
+            }
+            put(dir, new Listing(entries, modified, bytes, key));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the entries of a directory only if it is cached and unchanged, without touching the disk otherwise.
+     * Counts a hit or a miss.
+     *
+     * @param dir the directory, as an absolute normalized path.
+     * @return the entries by name, or null if the directory is not cached.
+     */
+    public synchronized Map<String, BasicFileAttributes> cachedEntries(Path dir) {
+        drainEvents();
+        Listing listing = listings.get(dir);
+        if (listing != null && (listing.key != null ? listing.key.isValid() : isUnmodified(dir, listing.modified))) {
+            hits++;
+            return listing.entries;
+        }
+        if (listing != null) {
+            invalidate(dir);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Drops a directory from the cache.
+     *
+     * @param dir the directory, as an absolute normalized path.
+     */
+    public synchronized void invalidate(Path dir) {
+        Listing listing = listings.remove(dir);
+        if (listing != null) {
+            forget(listing);
+            invalidations++;
+        }
+    }
+
+    /**
+     * Drops a directory and every cached directory below it, for trees that were moved or removed.
+     *
+     * @param dir the root of the tree, as an absolute normalized path.
+     */
+    public synchronized void invalidateTree(Path dir) {
+        Iterator<Map.Entry<Path, Listing>> iterator = listings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Listing> entry = iterator.next();
+            if (entry.getKey().startsWith(dir)) {
+                iterator.remove();
+                forget(entry.getValue());
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Drops every cached directory and resets the counters.
+     */
+    public synchronized void clear() {
+        for (Listing listing : listings.values()) {
+            forget(listing);
+        }
+        listings.clear();
+        usedBytes = 0;
+        hits = misses = invalidations = evictions = 0;
+    }
+
+    /**
+     * Returns a summary of the cache counters.
+     *
+     * @return one line per counter.
+     */
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return "directories: " + listings.size() + "\n"
+                + "memory: " + usedBytes / 1024 + " KB of " + maxBytes / 1024 + " KB\n"
+                + "hits: " + hits + "\n"
+                + "misses: " + misses + "\n"
+                + "hit rate: " + (lookups == 0 ? 0 : 100 * hits / lookups) + "%\n"
+                + "invalidations: " + invalidations + "\n"
+                + "evictions: " + evictions + "\n"
+                + "watch service: " + (watcher != null ? "yes" : "no, modification times only") + "\n";
+    }
+
+    /**
+     * Stops watching every directory.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        clear();
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Adds a listing and evicts the least recently used ones until the cache fits its cap.
+     */
+    private void put(Path dir, Listing listing) {
+        Listing previous = listings.put(dir, listing);
+        if (previous != null && previous.key == listing.key) { // Listed twice at once; the watch is shared
+            usedBytes -= previous.bytes;
+        }
+        else if (previous != null) {
+            forget(previous);
+        }
+        usedBytes += listing.bytes;
+        Iterator<Map.Entry<Path, Listing>> eldest = listings.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Listing evicted = eldest.next().getValue();
+            eldest.remove();
+            forget(evicted);
+            evictions++;
+        }
+    }
+
+    /**
+     * Releases the memory and the watch of a listing that left the cache.
+     */
+    private void forget(Listing listing) {
+        usedBytes -= listing.bytes;
+        unwatch(listing.key);
+    }
+
+    /**
+     * Stops watching a directory. Does nothing if the key is null.
+     */
+    private void unwatch(WatchKey key) {
+        if (key != null) {
+            key.cancel();
+            watched.remove(key);
+        }
+    }
+
+    /**
+     * Returns whether a directory still has the modification time it was listed with.
+     */
+    private static boolean isUnmodified(Path dir, FileTime modified) {
+        try {
+            return modified.equals(Files.getLastModifiedTime(dir));
+        }
+        catch (IOException ex) { // The directory is gone
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether a directory is on a network file store, where changes made by other machines are not reported.
+     * A store whose type cannot be read counts as remote, so the modification time is compared.
+     */
+    private static boolean isRemote(Path dir) {
+        try {
+            return REMOTE_STORES.contains(Files.getFileStore(dir).type());
+        }
+        catch (IOException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Starts watching a directory for changes.
+     *
+     * @return the watch key, or null if the directory cannot be watched or is on a network file store.
+     */
+    private WatchKey watch(Path dir) {
+        if (watcher == null || isRemote(dir)) {
+            return null;
+        }
+        try {
+            WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.put(key, dir);
+            return key;
+        }
+        catch (IOException | UnsupportedOperationException | ClosedWatchServiceException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops every directory the watch service reported a change for, without blocking.
+     */
+    private void drainEvents() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            WatchKey key;
+            while ((key = watcher.poll()) != null) {
+                key.pollEvents();
+                Path dir = watched.get(key);
+                if (dir != null) {
+                    invalidate(dir);
+                }
+                unwatch(key); // A listing still being read with this key is dropped when it is looked up
+            }
+        }
+        catch (ClosedWatchServiceException ex) { // Cache closed, nothing left to invalidate
+        }
+    }
+}
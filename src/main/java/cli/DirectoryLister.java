@@ -0,0 +1,278 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The DirectoryLister class produces the output of `ls`.
+ * Entries are read with a {@link DirectoryStream}, so no array of every name is built up front.
+ * Attributes are only read when the options need them, with a single {@code readAttributes}
+ * call per entry. Unsorted listings are written as they are read; when only the first N
+ * entries are wanted, a bounded heap keeps the best N instead of sorting everything.
+ */
+public class DirectoryLister {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    /**
+     * The order entries are listed in.
+     */
+    public enum Order { NAME, TIME, SIZE, NONE }
+
+    /**
+     * One directory entry with the attributes read for it, if any.
+     */
+    public static class Entry {
+        final String name;
+        final BasicFileAttributes attributes;
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param name       the file name.
+         * @param attributes the attributes, or null if they were not needed.
+         */
+        public Entry(String name, BasicFileAttributes attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Returns the file name.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the attributes read for the entry.
+         *
+         * @return the attributes, or null if they were not needed.
+         */
+        public BasicFileAttributes getAttributes() {
+            return attributes;
+        }
+    }
+
+    private final boolean all;
+    private final boolean reverse;
+    private final boolean longFormat;
+    private final boolean onePerLine;
+    private final Order order;
+    private final int top;
+
+    /**
+     * Constructs a DirectoryLister.
+     *
+     * @param all        true to include hidden entries (names starting with a dot).
+     * @param reverse    true to reverse the order.
+     * @param longFormat true to print type, permissions, size and modification time.
+     * @param onePerLine true to print one name per line instead of one line of names.
+     * @param order      the order to list entries in.
+     * @param top        the number of entries to list, or 0 to list every entry.
+     */
+    public DirectoryLister(boolean all, boolean reverse, boolean longFormat, boolean onePerLine, Order order, int top) {
+        this.all = all;
+        this.reverse = reverse;
+        this.longFormat = longFormat;
+        this.onePerLine = onePerLine;
+        this.order = order;
+        this.top = top;
+    }
+
+    /**
+     * Returns whether the options need the attributes of each entry.
+     *
+     * @return true for long format and for time or size order.
+     */
+    public boolean needsAttributes() {
+        return longFormat || order == Order.TIME || order == Order.SIZE;
+    }
+
+    /**
+     * Lists a directory into the sink.
+     *
+     * @param dir the directory to list.
+     * @param out the sink receiving the listing.
+     * @throws IOException if the directory cannot be read or the sink fails.
+     */
+    public void list(Path dir, OutputSink out) throws IOException {
+        boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+        Selection selection = new Selection(out);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path path : entries) {
+                String name = path.getFileName().toString();
+                if (!all && name.startsWith(".")) {
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = new Entry(name, needsAttributes() ? readAttributes(path, posix) : null);
+                }
+                catch (NoSuchFileException ex) { // Removed while the directory was being read
+                    continue;
+                }
+                if (!selection.add(entry)) {
+                    break;
+                }
+            }
+        }
+        selection.finish();
+    }
+
+    /**
+     * Lists entries that were already read, for example from a {@link DirectoryCache}, into the sink.
+     *
+     * @param entries the attributes of every entry by name, in directory order.
+     * @param out     the sink receiving the listing.
+     * @throws IOException if the sink fails.
+     */
+    public void list(Map<String, BasicFileAttributes> entries, OutputSink out) throws IOException {
+        Selection selection = new Selection(out);
+        for (Map.Entry<String, BasicFileAttributes> entry : entries.entrySet()) {
+            if (!all && entry.getKey().startsWith(".")) {
+                continue;
+            }
+            if (!selection.add(new Entry(entry.getKey(), entry.getValue()))) {
+                break;
+            }
+        }
+        selection.finish();
+    }
+
+    /**
+     * Orders the entries of one listing and writes them out.
+     */
+    private class Selection {
+        private final OutputSink out;
+        private final boolean streaming = order == Order.NONE && !reverse;
+        private final Comparator<Entry> comparator = comparator();
+        private final List<Entry> collected = new ArrayList<>();
+        private final PriorityQueue<Entry> best;
+        private int count;
+
+        Selection(OutputSink out) {
+            this.out = out;
+            this.best = top > 0 && comparator != null ? new PriorityQueue<>(top + 1, comparator.reversed()) : null;
+        }
+
+        /**
+         * Takes one entry, returning false once no more entries are wanted.
+         */
+        boolean add(Entry entry) throws IOException {
+            if (streaming) { // Nothing to order, so write the entry straight away
+                if (top > 0 && count++ >= top) {
+                    return false;
+                }
+                print(entry, out);
+            }
+            else if (best != null) { // Only keep the best entries seen so far
+                best.add(entry);
+                if (best.size() > top) {
+                    best.poll();
+                }
+            }
+            else {
+                collected.add(entry);
+            }
+            return true;
+        }
+
+        /**
+         * Writes the entries kept back for ordering.
+         */
+        void finish() throws IOException {
+            if (best != null) {
+                collected.addAll(best);
+            }
+            if (comparator != null) {
+                collected.sort(comparator);
+            }
+            else if (reverse) { // Directory order, reversed
+                Collections.reverse(collected);
+            }
+            int limit = top > 0 ? Math.min(top, collected.size()) : collected.size();
+            for (int i = 0; i < limit; i++) {
+                print(collected.get(i), out);
+            }
+            if (!longFormat && !onePerLine) {
+                out.print("\n");
+            }
+        }
+    }
+
+    /**
+     * Reads every attribute the listing needs with one call.
+     */
+    private static BasicFileAttributes readAttributes(Path path, boolean posix) throws IOException {
+        if (posix) {
+            return Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Returns the comparator for the chosen order, or null when entries stay in directory order.
+     */
+    private Comparator<Entry> comparator() {
+        Comparator<Entry> byName = Comparator.comparing(Entry::getName);
+        Comparator<Entry> comparator;
+        if (order == Order.NAME) {
+            comparator = byName;
+        }
+        else if (order == Order.TIME) { // Newest first
+            comparator = Comparator.comparing((Entry e) -> e.attributes.lastModifiedTime()).reversed().thenComparing(byName);
+        }
+        else if (order == Order.SIZE) { // Largest first
+            comparator = Comparator.comparingLong((Entry e) -> e.attributes.size()).reversed().thenComparing(byName);
+        }
+        else {
+            return null;
+        }
+        return reverse ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Writes one entry in the chosen format.
+     */
+    private void print(Entry entry, OutputSink out) throws IOException {
+        if (longFormat) {
+            out.print(describe(entry.attributes) + " " + TIME_FORMAT.format(entry.attributes.lastModifiedTime().toInstant())
+                    + " " + entry.name + "\n");
+        }
+        else if (onePerLine) {
+            out.print(entry.name + "\n");
+        }
+        else {
+            out.print(entry.name + " ");
+        }
+    }
+
+    /**
+     * Returns the type, permissions and size columns of the long format.
+     */
+    private static String describe(BasicFileAttributes attributes) {
+        char type = attributes.isDirectory() ? 'd' : attributes.isSymbolicLink() ? 'l' : attributes.isOther() ? '?' : '-';
+        String permissions = attributes instanceof PosixFileAttributes posix
+                ? PosixFilePermissions.toString(posix.permissions())
+                : "---------";
+        return String.format("%c%s %12d", type, permissions, attributes.size());
+    }
+}
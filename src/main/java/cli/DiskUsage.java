@@ -0,0 +1,231 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The DiskUsage class sums the sizes of the files in directory trees for `du`.
+ * Each directory is a fork-join task that returns its own total; a parent forks its subdirectories
+ * and adds up their results when they join, so no counter is shared between threads.
+ * Sizes are the apparent sizes of the files, read once per entry without following links.
+ * <p>
+ * Totals are kept for the directories that will be printed, and printed children first once the
+ * walk is over, so the output does not depend on which thread finished first.
+ */
+public class DiskUsage {
+    private final int maxDepth;
+    private final boolean human;
+    private final DiskUsageCache cache;
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The total of one printed directory, and of its printed subdirectories.
+     */
+    private static final class Node {
+        private final String display;
+        private final List<Node> children = new ArrayList<>();
+        private long total;
+
+        Node(String display) {
+            this.display = display;
+        }
+    }
+
+    /**
+     * Constructs a DiskUsage.
+     *
+     * @param maxDepth the deepest level of directories to print, 0 being the starting point itself.
+     *                 Deeper directories are still counted in their parents' totals.
+     * @param human    true to print sizes like 1.5K, 20M or 3.0G instead of kibibytes.
+     * @param cache    the totals of unchanged directories from earlier runs, or null to read every directory.
+     */
+    public DiskUsage(int maxDepth, boolean human, DiskUsageCache cache) {
+        this.maxDepth = maxDepth;
+        this.human = human;
+        this.cache = cache;
+    }
+
+    /**
+     * Sums a tree and writes the total of each directory down to the maximum depth into the sink,
+     * as the size, a tab and the path.
+     *
+     * @param root    the starting point.
+     * @param display the starting point as the user wrote it.
+     * @param out     the sink receiving the totals and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void print(Path root, String display, OutputSink out) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (IOException ex) {
+            out.error("du: cannot access '" + display + "': No such file or directory\n");
+            return;
+        }
+        Node node = new Node(display);
+        if (attributes.isDirectory()) {
+            String prefix = display.endsWith("/") ? display : display + "/";
+            Path absolute = root.toAbsolutePath().normalize();
+            node.total = BulkExecutor.pool().invoke(new SizeTask(absolute, attributes, prefix, 0, node));
+            if (cache != null) {
+                cache.walked(absolute);
+            }
+        }
+        else {
+            node.total = attributes.size();
+        }
+        for (String error : errors) {
+            out.error(error);
+        }
+        errors.clear();
+        printTree(node, out);
+    }
+
+    /**
+     * Formats a size in bytes as kibibytes rounded up, or in the largest unit that keeps it below 1024.
+     *
+     * @param bytes the size.
+     * @param human true for a size with a unit suffix.
+     * @return the formatted size.
+     */
+    public static String formatSize(long bytes, boolean human) {
+        if (!human) {
+            return Long.toString((bytes + 1023) / 1024);
+        }
+        if (bytes < 1024) {
+            return Long.toString(bytes);
+        }
+        String units = "KMGTPE";
+        double value = bytes;
+        int unit = -1;
+        do {
+            value /= 1024;
+            unit++;
+        } while (value >= 1024 && unit < units.length() - 1);
+        if (value < 10) { // One decimal, rounded up like du does
+            double rounded = Math.ceil(value * 10) / 10;
+            if (rounded < 10) {
+                return String.format(Locale.ROOT, "%.1f%c", rounded, units.charAt(unit));
+            }
+            value = rounded;
+        }
+        long whole = (long) Math.ceil(value);
+        if (whole >= 1024 && unit < units.length() - 1) {
+            return "1.0" + units.charAt(unit + 1);
+        }
+        return whole + "" + units.charAt(unit);
+    }
+
+    /**
+     * Prints the subdirectories before their parent.
+     */
+    private void printTree(Node node, OutputSink out) throws IOException {
+        for (Node child : node.children) {
+            printTree(child, out);
+        }
+        out.print(formatSize(node.total, human) + "\t" + node.display + "\n");
+    }
+
+    /**
+     * Sums one directory, forking a task per subdirectory.
+     */
+    private class SizeTask extends RecursiveTask<Long> {
+        private final Path dir;
+        private final BasicFileAttributes attributes;
+        private final String prefix;
+        private final int depth;
+        private final Node node; // Null below the printed depth
+
+        SizeTask(Path dir, BasicFileAttributes attributes, String prefix, int depth, Node node) {
+            this.dir = dir;
+            this.attributes = attributes;
+            this.prefix = prefix;
+            this.depth = depth;
+            this.node = node;
+        }
+
+        @Override
+        protected Long compute() {
+            long modified = attributes.lastModifiedTime().toMillis();
+            DiskUsageCache.Entry cached = cache != null ? cache.get(dir, modified) : null;
+            long total;
+            List<SizeTask> subdirectories = new ArrayList<>();
+            if (cached != null) { // Only the subdirectories need checking
+                total = cached.files();
+                for (String name : cached.subdirectories()) {
+                    Path entry = dir.resolve(name);
+                    try {
+                        BasicFileAttributes entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (entryAttributes.isDirectory()) {
+                            subdirectories.add(subtask(entry, entryAttributes, name));
+                        }
+                    }
+                    catch (IOException ex) { // Removed without the directory changing, as on some network filesystems
+                    }
+                }
+            }
+            else {
+                total = 0;
+                List<String> names = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path entry : entries) {
+                        BasicFileAttributes entryAttributes;
+                        try {
+                            entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        }
+                        catch (NoSuchFileException ex) { // Removed while the walk was running
+                            continue;
+                        }
+                        if (entryAttributes.isDirectory()) {
+                            String name = entry.getFileName().toString();
+                            names.add(name);
+                            subdirectories.add(subtask(entry, entryAttributes, name));
+                        }
+                        else {
+                            total += entryAttributes.size();
+                        }
+                    }
+                    if (cache != null) {
+                        cache.put(dir, new DiskUsageCache.Entry(modified, total, List.copyOf(names)));
+                    }
+                }
+                catch (IOException ex) {
+                    errors.add("du: cannot read directory '" + prefix.substring(0, prefix.length() - 1) + "': "
+                            + ex.getClass().getSimpleName() + "\n");
+                }
+            }
+            invokeAll(subdirectories); // Idle threads steal the subtrees
+            for (SizeTask subdirectory : subdirectories) {
+                total += subdirectory.join();
+            }
+            if (node != null) {
+                node.total = total;
+            }
+            return total;
+        }
+
+        /**
+         * Creates the task of a subdirectory, with a node when it is printed.
+         */
+        private SizeTask subtask(Path entry, BasicFileAttributes entryAttributes, String name) {
+            Node child = null;
+            if (node != null && depth < maxDepth) {
+                child = new Node(prefix + name);
+                node.children.add(child);
+            }
+            return new SizeTask(entry, entryAttributes, prefix + name + "/", depth + 1, child);
+        }
+    }
+}
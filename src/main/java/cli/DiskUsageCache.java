@@ -0,0 +1,224 @@
+package cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The DiskUsageCache class remembers, per directory, the total size of its files and the names of
+ * its subdirectories, keyed by the modification time of the directory. It is kept in a file between
+ * runs of `du --cache`.
+ * <p>
+ * A directory's modification time changes when entries are added, removed or renamed, but not when
+ * a file inside it is rewritten in place, so a cached total can miss such a change. That is why the
+ * cache is only used when asked for. Subdirectories are still checked one by one, so a change
+ * deep in the tree only walks that directory again.
+ * <p>
+ * Directories that are gone would otherwise stay in the file forever, so saving drops the entries
+ * below each tree walked in this run that the walk did not reach.
+ */
+public class DiskUsageCache {
+    private static final int FORMAT = 1;
+
+    /**
+     * What is remembered about one directory.
+     *
+     * @param modified       the modification time of the directory, in milliseconds.
+     * @param files          the total size of the entries that are not directories.
+     * @param subdirectories the names of the subdirectories.
+     */
+    public record Entry(long modified, long files, List<String> subdirectories) {
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> visited = ConcurrentHashMap.newKeySet(); // Directories looked up in this run
+    private final List<Path> walked = new CopyOnWriteArrayList<>(); // Roots of the trees walked completely
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean changed;
+
+    /**
+     * Constructs a DiskUsageCache stored in the given file and loads it. A missing or
+     * unreadable file gives an empty cache.
+     *
+     * @param file the file holding the cache.
+     */
+    public DiskUsageCache(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Returns the file used when none is given: the {@code cli.du.cache} system property,
+     * or {@code .cache/cli/du.cache} in the user's home directory.
+     *
+     * @return the default cache file.
+     */
+    public static Path defaultFile() {
+        String property = System.getProperty("cli.du.cache");
+        return property != null ? Path.of(property) : Path.of(System.getProperty("user.home"), ".cache", "cli", "du.cache");
+    }
+
+    /**
+     * Returns what is remembered about a directory, if it has not been modified since.
+     * The directory counts as still existing when the cache is saved.
+     *
+     * @param dir      the absolute path of the directory.
+     * @param modified its modification time, in milliseconds.
+     * @return the entry, or null if the directory is not cached or has changed.
+     */
+    public Entry get(Path dir, long modified) {
+        visited.add(dir.toString());
+        Entry entry = entries.get(dir.toString());
+        if (entry == null || entry.modified() != modified) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Remembers a directory that has just been read.
+     *
+     * @param dir   the absolute path of the directory.
+     * @param entry what was found in it.
+     */
+    public void put(Path dir, Entry entry) {
+        entries.put(dir.toString(), entry);
+        changed = true;
+    }
+
+    /**
+     * Records that a whole tree was walked, looking up every directory in it, so the entries below it
+     * that were not looked up belong to directories that are gone and are dropped when saving.
+     *
+     * @param root the absolute normalized path of the tree.
+     */
+    public void walked(Path root) {
+        walked.add(root);
+    }
+
+    /**
+     * Returns the number of directories remembered.
+     *
+     * @return the entry count.
+     */
+    public int getDirectories() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of directories found unchanged in the cache.
+     *
+     * @return the hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of directories that had to be read.
+     *
+     * @return the miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Drops the directories that are gone, then writes the cache back to its file if anything changed.
+     * The file is replaced atomically, so a concurrent `du` reads either the old or the new cache.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void save() throws IOException {
+        if (!walked.isEmpty()) {
+            changed |= entries.keySet().removeIf(dir -> !visited.contains(dir) && isWalked(Path.of(dir)));
+        }
+        if (!changed) {
+            return;
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temporary = Files.createTempFile(dir, "du", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(FORMAT);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().modified());
+                    out.writeLong(e.getValue().files());
+                    out.writeInt(e.getValue().subdirectories().size());
+                    for (String name : e.getValue().subdirectories()) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        changed = false;
+    }
+
+    /**
+     * Returns whether a directory is inside one of the trees walked in this run.
+     */
+    private boolean isWalked(Path dir) {
+        for (Path root : walked) {
+            if (dir.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the cache file, starting empty if it is missing, unreadable or of another format.
+     */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String dir = in.readUTF();
+                long modified = in.readLong();
+                long files = in.readLong();
+                String[] subdirectories = new String[in.readInt()];
+                for (int j = 0; j < subdirectories.length; j++) {
+                    subdirectories[j] = in.readUTF();
+                }
+                entries.put(dir, new Entry(modified, files, List.of(subdirectories)));
+            }
+        }
+        catch (NoSuchFileException ex) { // Nothing cached yet
+        }
+        catch (IOException ex) { // A damaged cache is rebuilt
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+/**
+ * The FileStat class holds a resolved path together with its attributes, read once.
+ * Commands resolve each argument into a FileStat and ask it every question they have
+ * (does it exist, is it a directory, is it a regular file), so a path costs one
+ * {@code readAttributes} call per command instead of one call per check.
+ * When a {@link DirectoryCache} holds the parent directory, no call is made at all.
+ */
+public final class FileStat {
+    private final Path path;
+    private final BasicFileAttributes attributes;
+
+    private FileStat(Path path, BasicFileAttributes attributes) {
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Resolves an argument against a directory, unless it is already absolute.
+     *
+     * @param base the directory relative arguments are resolved against.
+     * @param arg  the path given by the user.
+     * @return the resolved path.
+     */
+    public static Path resolve(Path base, String arg) {
+        Path path = Path.of(arg);
+        return path.isAbsolute() ? path : base.resolve(path);
+    }
+
+    /**
+     * Reads the attributes of a path, following symbolic links.
+     *
+     * @param path  the path.
+     * @param cache the directory cache to answer from, or null.
+     * @return the path and its attributes; a path that does not exist has none.
+     */
+    public static FileStat of(Path path, DirectoryCache cache) {
+        return read(path, cache, true);
+    }
+
+    /**
+     * Reads the attributes of a path without following a symbolic link, which is then described itself.
+     *
+     * @param path  the path.
+     * @param cache the directory cache to answer from, or null.
+     * @return the path and its attributes; a path that does not exist has none.
+     */
+    public static FileStat ofLink(Path path, DirectoryCache cache) {
+        return read(path, cache, false);
+    }
+
+    /**
+     * Reads the attributes from the cached parent listing if there is one, otherwise from the filesystem.
+     */
+    private static FileStat read(Path path, DirectoryCache cache, boolean followLinks) {
+        if (cache != null) {
+            Path absolute = path.toAbsolutePath().normalize();
+            Path parent = absolute.getParent();
+            Map<String, BasicFileAttributes> entries = parent != null && absolute.getFileName() != null
+                    ? cache.cachedEntries(parent)
+                    : null;
+            if (entries != null) {
+                BasicFileAttributes attributes = entries.get(absolute.getFileName().toString());
+                if (attributes == null || !followLinks || !attributes.isSymbolicLink()) { // Links to follow need the target
+                    return new FileStat(path, attributes);
+                }
+            }
+        }
+        try {
+            BasicFileAttributes attributes = followLinks
+                    ? Files.readAttributes(path, BasicFileAttributes.class)
+                    : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new FileStat(path, attributes);
+        }
+        catch (IOException ex) { // Missing, or unreadable, which commands report the same way
+            return new FileStat(path, null);
+        }
+    }
+
+    /**
+     * Returns the path.
+     *
+     * @return the resolved path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the last name of the path, which the error messages show.
+     *
+     * @return the file name.
+     */
+    public Path getFileName() {
+        return path.getFileName();
+    }
+
+    /**
+     * Returns the attributes that were read.
+     *
+     * @return the attributes, or null if the path does not exist.
+     */
+    public BasicFileAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns whether the path exists.
+     *
+     * @return true if attributes could be read.
+     */
+    public boolean exists() {
+        return attributes != null;
+    }
+
+    /**
+     * Returns whether the path is a directory.
+     *
+     * @return true for an existing directory.
+     */
+    public boolean isDirectory() {
+        return attributes != null && attributes.isDirectory();
+    }
+
+    /**
+     * Returns whether the path is a regular file.
+     *
+     * @return true for an existing regular file.
+     */
+    public boolean isRegularFile() {
+        return attributes != null && attributes.isRegularFile();
+    }
+}
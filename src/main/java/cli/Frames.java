@@ -0,0 +1,106 @@
+package cli;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The Frames class reads and writes the messages exchanged by the {@link Daemon} and its {@link Client}.
+ * Every message is a frame: a 4-byte big-endian length followed by that many bytes.
+ * The client sends one frame per command line, in UTF-8. The daemon answers with the output of the
+ * command as it is produced, in any number of frames, and ends it with an empty frame.
+ */
+final class Frames {
+    static final int MAX_REQUEST = 1024 * 1024;
+
+    private Frames() {
+    }
+
+    /**
+     * Writes one frame holding the remaining bytes of the payload, which may be empty.
+     *
+     * @param channel the channel to write to.
+     * @param payload the bytes of the frame.
+     * @throws IOException if the channel fails.
+     */
+    static void write(GatheringByteChannel channel, ByteBuffer payload) throws IOException {
+        ByteBuffer[] frame = {ByteBuffer.allocate(4).putInt(0, payload.remaining()), payload};
+        while (frame[0].hasRemaining() || frame[1].hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Reads one frame.
+     *
+     * @param channel the channel to read from.
+     * @param max     the largest frame accepted.
+     * @return the bytes of the frame, or null if the channel ended before a new frame.
+     * @throws IOException if the channel fails, ends inside a frame or the frame is too large.
+     */
+    static ByteBuffer read(ReadableByteChannel channel, int max) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (!readFully(channel, header)) {
+            if (header.position() == 0) {
+                return null;
+            }
+            throw new EOFException("connection closed inside a frame");
+        }
+        int length = header.getInt(0);
+        if (length < 0 || length > max) {
+            throw new IOException("frame of " + length + " bytes is too large");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload)) {
+            throw new EOFException("connection closed inside a frame");
+        }
+        return payload.flip();
+    }
+
+    /**
+     * Returns a channel that writes every buffer it is given as one frame.
+     * Empty writes send nothing, so only {@link #write(GatheringByteChannel, ByteBuffer)} ends a reply.
+     *
+     * @param channel the channel the frames are written to.
+     * @return the framing channel; closing it leaves the underlying channel open.
+     */
+    static WritableByteChannel writer(GatheringByteChannel channel) {
+        return new WritableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int length = src.remaining();
+                if (length > 0) {
+                    Frames.write(channel, src);
+                }
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open && channel.isOpen();
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        };
+    }
+
+    /**
+     * Fills the buffer, returning false if the channel ends first.
+     */
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,339 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The Grep class searches files and piped input for the lines matching a pattern.
+ * Literal patterns are searched directly on the bytes with the Boyer-Moore-Horspool algorithm,
+ * which skips ahead by up to the length of the pattern at each step, so most bytes are never
+ * compared and no line is decoded unless it is printed. A regular expression is compiled only
+ * when the pattern contains regex metacharacters, and then lines are decoded and matched one by one.
+ * <p>
+ * Files at or above the mapping threshold of the {@link ReadEngine} are searched on memory-mapped
+ * windows; smaller files are read into a buffer sized to the file, so searching many small files does not
+ * allocate a whole chunk for each, and piped input is read in chunks into a buffer reused until the input ends.
+ * A Grep holds no state between searches, so one instance can search many files in parallel.
+ */
+public class Grep {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final boolean ignoreCase;
+    private final boolean count;
+    private final boolean filesOnly;
+    private final boolean lineNumbers;
+    private final ReadEngine readEngine;
+    private final byte[] literal; // Null when the pattern is a regular expression
+    private final int[] skip;
+    private final Pattern regex;
+
+    /**
+     * Constructs a Grep.
+     *
+     * @param pattern     the literal text or regular expression to look for.
+     * @param ignoreCase  true to ignore case when matching.
+     * @param count       true to print only the number of matching lines.
+     * @param filesOnly   true to print only the names of files with a match.
+     * @param lineNumbers true to print the line number before each matching line.
+     * @param readEngine  decides which files are memory-mapped.
+     * @throws java.util.regex.PatternSyntaxException if the pattern is not a valid regular expression.
+     */
+    public Grep(String pattern, boolean ignoreCase, boolean count, boolean filesOnly, boolean lineNumbers, ReadEngine readEngine) {
+        this.ignoreCase = ignoreCase;
+        this.count = count;
+        this.filesOnly = filesOnly;
+        this.lineNumbers = lineNumbers;
+        this.readEngine = readEngine;
+        boolean ascii = pattern.chars().allMatch(c -> c < 128);
+        if (isLiteral(pattern) && (ascii || !ignoreCase)) { // Byte-level case folding only works for ASCII
+            literal = (ignoreCase ? pattern.toLowerCase(Locale.ROOT) : pattern).getBytes(Charset.defaultCharset());
+            skip = skipTable(literal, ignoreCase);
+            regex = null;
+        }
+        else {
+            literal = null;
+            skip = null;
+            String expression = isLiteral(pattern) ? Pattern.quote(pattern) : pattern;
+            regex = Pattern.compile(expression, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        }
+    }
+
+    /**
+     * Returns whether a pattern can be searched for as plain text.
+     *
+     * @param pattern the pattern given to grep.
+     * @return true if it is not empty and has no regex metacharacters.
+     */
+    public static boolean isLiteral(String pattern) {
+        if (pattern.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if (METACHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the pattern is searched with the skip table rather than a regular expression.
+     *
+     * @return true for literal patterns.
+     */
+    public boolean isLiteralSearch() {
+        return literal != null;
+    }
+
+    /**
+     * Searches a file and writes the results into the sink.
+     *
+     * @param file  the file to search.
+     * @param label the name printed before each result (and alone with -l), or null to print none.
+     * @param out   the sink receiving the results.
+     * @throws IOException if reading the file or writing the sink fails.
+     */
+    public void search(FileChannel file, String label, OutputSink out) throws IOException {
+        Scan scan = new Scan(label, out);
+        long size = file.size();
+        if (!readEngine.isMapped(size)) {
+            search(file, (int) Math.min(CHUNK_SIZE, size + 1), scan); // One byte spare to see the end without growing
+            out.countRead(file.position()); // Read from the start, possibly stopping early with -l
+            return;
+        }
+        long position = 0;
+        while (position < size && !scan.done) { // One window at a time, each ending on a line boundary
+            long length = Math.min(readEngine.getMapWindow(), size - position);
+            ByteBuffer window = file.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean last = position + length == size;
+            int end = last ? (int) length : lastLineEnd(window, (int) length);
+            if (end == 0) { // A single line longer than the window
+                end = (int) length;
+            }
+            scan.lines(window, 0, end);
+            position += end;
+        }
+        out.countRead(position);
+        scan.finish();
+    }
+
+    /**
+     * Searches piped input and writes the results into the sink.
+     *
+     * @param in    the input to search; it is read until it ends.
+     * @param label the name printed before each result, or null to print none.
+     * @param out   the sink receiving the results.
+     * @throws IOException if reading the input or writing the sink fails.
+     */
+    public void search(ReadableByteChannel in, String label, OutputSink out) throws IOException {
+        Scan scan = new Scan(label, out);
+        search(in, CHUNK_SIZE, scan);
+    }
+
+    /**
+     * Reads a channel in chunks and searches every complete line, carrying a partial line over to the next chunk.
+     * The buffer starts at the given capacity and doubles whenever a line does not fit.
+     */
+    private void search(ReadableByteChannel in, int capacity, Scan scan) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        while (!scan.done) {
+            boolean ended = in.read(buffer) == -1;
+            int end = ended ? buffer.position() : lastLineEnd(buffer, buffer.position());
+            if (end > 0) { // Search the complete lines as soon as they arrive, so piped output is not held back
+                scan.lines(buffer, 0, end);
+                buffer.limit(buffer.position()).position(end);
+                buffer.compact();
+            }
+            else if (!buffer.hasRemaining()) { // No complete line yet, so make room for a longer one
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+            if (ended) {
+                break;
+            }
+        }
+        scan.finish();
+    }
+
+    /**
+     * Returns the position just after the last newline before end, or 0 if there is none.
+     */
+    private static int lastLineEnd(ByteBuffer data, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (data.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Builds the Boyer-Moore-Horspool table: how far the search may jump when a byte ends the current window.
+     */
+    private static int[] skipTable(byte[] pattern, boolean ignoreCase) {
+        int[] table = new int[256];
+        Arrays.fill(table, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            int distance = pattern.length - 1 - i;
+            table[pattern[i] & 0xFF] = distance;
+            if (ignoreCase) {
+                table[Character.toUpperCase(pattern[i]) & 0xFF] = distance;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Folds an ASCII upper-case letter to lower case when case is ignored.
+     */
+    private byte fold(byte b) {
+        return ignoreCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Finds the literal pattern between from and to.
+     *
+     * @return the position of the first match, or -1.
+     */
+    private int indexOf(ByteBuffer data, int from, int to) {
+        int last = literal.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (fold(data.get(i + j)) == literal[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += skip[data.get(i + last) & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * The state of one search: the line number reached, the matches counted and whether to stop.
+     */
+    private class Scan {
+        private final String label;
+        private final OutputSink out;
+        private long line = 1; // The number of the line starting where the next chunk starts
+        private long matches;
+        boolean done;
+
+        Scan(String label, OutputSink out) {
+            this.label = label;
+            this.out = out;
+        }
+
+        /**
+         * Searches the complete lines between from and to.
+         */
+        void lines(ByteBuffer data, int from, int to) throws IOException {
+            int position = from;
+            while (position < to && !done) {
+                int start;
+                int end;
+                if (literal != null) {
+                    int match = indexOf(data, position, to);
+                    if (match < 0) {
+                        break;
+                    }
+                    start = lastLineEnd(data, match);
+                    start = Math.max(start, position);
+                    end = lineEnd(data, match, to);
+                }
+                else {
+                    start = position;
+                    end = lineEnd(data, position, to);
+                    if (!regex.matcher(decode(data, start, end)).find()) {
+                        position = end + 1;
+                        line++;
+                        continue;
+                    }
+                }
+                if (lineNumbers) {
+                    line += countLines(data, position, start);
+                }
+                found(data, start, end);
+                position = end + 1;
+                line++;
+            }
+            if (lineNumbers && position < to) {
+                line += countLines(data, position, to);
+            }
+        }
+
+        /**
+         * Handles one matching line.
+         */
+        private void found(ByteBuffer data, int start, int end) throws IOException {
+            matches++;
+            if (filesOnly) {
+                out.print((label != null ? label : "(standard input)") + "\n");
+                done = true;
+            }
+            else if (!count) {
+                StringBuilder prefix = new StringBuilder();
+                if (label != null) {
+                    prefix.append(label).append(':');
+                }
+                if (lineNumbers) {
+                    prefix.append(line).append(':');
+                }
+                out.print(prefix.toString());
+                out.write(data.slice(start, end - start));
+                out.print("\n");
+            }
+        }
+
+        /**
+         * Prints the count once the search is over.
+         */
+        void finish() throws IOException {
+            if (count && !filesOnly) {
+                out.print((label != null ? label + ":" : "") + matches + "\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the newline ending the line that contains position, or to if the line is not terminated.
+     */
+    private static int lineEnd(ByteBuffer data, int position, int to) {
+        for (int i = position; i < to; i++) {
+            if (data.get(i) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Counts the newlines between from and to.
+     */
+    private static int countLines(ByteBuffer data, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (data.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Decodes one line for the regular expression.
+     */
+    private static String decode(ByteBuffer data, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        data.get(start, bytes);
+        return new String(bytes, Charset.defaultCharset());
+    }
+}
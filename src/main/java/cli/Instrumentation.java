@@ -0,0 +1,193 @@
+package cli;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The Instrumentation class measures every command a {@link Terminal} runs: calls, failed runs, bytes read
+ * from the previous pipeline stage and from files, bytes written, and latency in a {@link LatencyHistogram}.
+ * It wraps the commands of a {@link CommandRegistry}, so every way of running a command, from the prompt,
+ * a script, a pipeline stage or a daemon session, is measured alike.
+ * A run fails if it ends with an exception or reports an error with {@link OutputSink#error(String)},
+ * such as a missing file. The bytes read from files and the errors are tallied by the command's sink.
+ * <p>
+ * The metrics can be read with {@link #report()}, which the `stats` builtin prints,
+ * and over JMX once {@link #registerMBeans(String)} is called.
+ */
+public class Instrumentation {
+    private final Map<String, CommandMetrics> metrics = new ConcurrentSkipListMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * Wraps a command so its runs are recorded under the given name, for use with {@link CommandRegistry#wrapAll}.
+     * The wrapper passes the session on, so commands that need one keep working, and run without
+     * a session it runs the command without one too.
+     *
+     * @param name    the name the command is registered under.
+     * @param command the command to measure.
+     * @return the measured command.
+     */
+    public SessionCommand wrap(String name, Command command) {
+        CommandMetrics metrics = this.metrics.computeIfAbsent(name, k -> new CommandMetrics());
+        return new SessionCommand() {
+            @Override
+            public void execute(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+                measure(metrics, command, session, args, in, out);
+            }
+
+            @Override
+            public void execute(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+                measure(metrics, command, null, args, in, out);
+            }
+        };
+    }
+
+    /**
+     * Runs a command, in the session if there is one, and records the run.
+     */
+    private static void measure(CommandMetrics metrics, Command command, Session session,
+                                String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        CountingChannel counted = in == null ? null : new CountingChannel(in);
+        long writtenBefore = out.getBytesWritten();
+        long readBefore = out.getBytesRead();
+        long errorsBefore = out.getErrors();
+        boolean failed = true;
+        long started = System.nanoTime();
+        try {
+            if (session == null) {
+                command.execute(args, counted, out);
+            } else {
+                command.execute(session, args, counted, out);
+            }
+            failed = out.getErrors() > errorsBefore;
+        }
+        finally {
+            long nanos = System.nanoTime() - started;
+            long read = (counted == null ? 0 : counted.count) + out.getBytesRead() - readBefore;
+            metrics.record(nanos, failed, read, out.getBytesWritten() - writtenBefore);
+        }
+    }
+
+    /**
+     * Returns the metrics of a command.
+     *
+     * @param name the name of the command.
+     * @return the metrics, or null if no command of that name was wrapped.
+     */
+    public CommandMetrics get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Clears the metrics of every command.
+     */
+    public void reset() {
+        for (CommandMetrics m : metrics.values()) {
+            m.reset();
+        }
+    }
+
+    /**
+     * Returns a table of the commands that ran, with latencies in microseconds.
+     *
+     * @return the table, or a note that nothing ran yet.
+     */
+    public String report() {
+        StringBuilder output = new StringBuilder();
+        output.append(String.format(Locale.ROOT, "%-8s %8s %7s %12s %12s %10s %10s %10s %10s%n",
+                "command", "calls", "errors", "bytes in", "bytes out", "p50 us", "p99 us", "p999 us", "max us"));
+        boolean any = false;
+        for (Map.Entry<String, CommandMetrics> entry : metrics.entrySet()) {
+            CommandMetrics m = entry.getValue();
+            long calls = m.getCalls();
+            if (calls == 0) {
+                continue;
+            }
+            any = true;
+            output.append(String.format(Locale.ROOT, "%-8s %8d %7d %12d %12d %10.1f %10.1f %10.1f %10.1f%n",
+                    entry.getKey(), calls, m.getErrors(), m.getBytesRead(), m.getBytesWritten(),
+                    m.getLatencyP50(), m.getLatencyP99(), m.getLatencyP999(), m.getLatencyMax()));
+        }
+        return any ? output.toString() : "stats: no commands have run\n";
+    }
+
+    /**
+     * Registers an MBean per command with the platform MBean server, as
+     * {@code cli:type=CommandMetrics,terminal=<terminal>,command=<command>}.
+     * Terminals that live as long as the process, such as the interactive one and the daemon's, call it.
+     *
+     * @param terminal a name telling this terminal apart from others in the same process.
+     * @throws IllegalStateException if the MBeans cannot be registered, for example because the name is taken.
+     */
+    public synchronized void registerMBeans(String terminal) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<String, CommandMetrics> entry : metrics.entrySet()) {
+                ObjectName name = new ObjectName("cli", new Hashtable<>(Map.of(
+                        "type", "CommandMetrics", "terminal", ObjectName.quote(terminal), "command", ObjectName.quote(entry.getKey()))));
+                server.registerMBean(entry.getValue(), name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("can't register the command metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes the MBeans registered by {@link #registerMBeans(String)}.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) { // Already gone
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Counts the bytes a command reads from the previous pipeline stage.
+     * Only the reading command uses it, so the count needs no synchronization.
+     */
+    private static final class CountingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel channel;
+        private long count;
+
+        CountingChannel(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -1,11 +1,74 @@
 package cli;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
+/**
+ * Starts the terminal.
+ * Without arguments the interactive interface runs. For automation:
+ * - {@code -f script.txt} runs every line of the script ({@code -f -} reads the script from standard input).
+ * - {@code -c "cmd; cmd"} runs the given statements.
+ * - {@code --daemon socket} serves sessions on a Unix domain socket until killed; see {@link Daemon} and {@link Client}.
+ * The interactive terminal and the daemon publish their command metrics over JMX; see {@link Instrumentation}.
+ * <p>
+ * Launch with {@code java --add-modules jdk.incubator.vector -jar command-line-interpreter.jar}
+ * so `wc` can count with the Vector API; without the module it falls back to a scalar loop.
+ */
 public class Main {
     public static void main(String[] args) {
         Terminal terminal = new Terminal();
-        terminal.runInterface();
+        if (args.length == 0) {
+            terminal.getInstrumentation().registerMBeans("interactive");
+            terminal.runInterface();
+            return;
+        }
+        if (args.length != 2 || !(args[0].equals("-f") || args[0].equals("-c") || args[0].equals("--daemon"))) {
+            System.err.println("usage: cli.Main [-f script | -c \"command; command\" | --daemon socket]");
+            System.exit(2);
+        }
+        if (args[0].equals("--daemon")) {
+            runDaemon(Path.of(args[1]));
+            return;
+        }
+        try {
+            if (args[0].equals("-c")) {
+                terminal.runScript(new StringReader(args[1]));
+            }
+            else if (args[1].equals("-")) {
+                terminal.runScript(new InputStreamReader(System.in));
+            }
+            else {
+                terminal.runScript(Files.newBufferedReader(Path.of(args[1])));
+            }
+        } catch (IOException e) {
+            System.err.println("cli: can't read the script '" + args[1] + "': " + e.getMessage());
+            System.exit(1);
+        }
     }
 
-
-}
\ No newline at end of file
+    /**
+     * Serves sessions until the process is stopped, removing the socket file on the way out.
+     */
+    private static void runDaemon(Path socket) {
+        Daemon daemon = new Daemon(socket);
+        try {
+            daemon.start();
+        } catch (IOException e) {
+            System.err.println("cli: can't listen on '" + socket + "': " + e.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException ignored) {
+            }
+        }));
+        try {
+            daemon.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The OutputSink class is the destination commands write their output into.
+ * Output is collected in a fixed-size buffer and handed to the underlying channel
+ * whenever the buffer fills up, so commands never need to hold their whole output in memory.
+ * <p>
+ * A sink also tallies what the command writing into it did, for {@link Instrumentation}: the bytes
+ * written, the bytes read from files, and the errors reported with {@link #error(String)}.
+ */
+public class OutputSink implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final Flushable flushTarget;
+    private final boolean ownsChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bytesWritten;
+    private final AtomicLong bytesRead = new AtomicLong(); // Also counted by workers reading files in parallel
+    private final AtomicLong errors = new AtomicLong();
+
+    private OutputSink(WritableByteChannel channel, Flushable flushTarget, boolean ownsChannel) {
+        this.channel = channel;
+        this.flushTarget = flushTarget;
+        this.ownsChannel = ownsChannel;
+    }
+
+    /**
+     * Creates a sink writing to the console. Closing it flushes but leaves {@code System.out} open.
+     *
+     * @return a sink backed by standard output.
+     */
+    public static OutputSink toStdout() {
+        return new OutputSink(Channels.newChannel(System.out), System.out, false);
+    }
+
+    /**
+     * Opens a file once and returns a sink streaming into it.
+     *
+     * @param path   the file to write to, created if it does not exist.
+     * @param append true to append to the file, false to truncate it first.
+     * @return a sink that owns and closes the file channel.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static OutputSink toFile(Path path, boolean append) throws IOException {
+        StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        return new OutputSink(file, null, true);
+    }
+
+    /**
+     * Wraps an existing channel. The channel is not closed when the sink is closed.
+     *
+     * @param channel the channel to write to.
+     * @return a sink backed by the channel.
+     */
+    public static OutputSink toChannel(WritableByteChannel channel) {
+        return new OutputSink(channel, null, false);
+    }
+
+    /**
+     * Writes text to the sink using the platform charset.
+     *
+     * @param text the text to write.
+     * @throws IOException if the underlying channel fails.
+     */
+    public void print(String text) throws IOException {
+        write(ByteBuffer.wrap(text.getBytes(Charset.defaultCharset())));
+    }
+
+    /**
+     * Writes the remaining bytes of the given buffer to the sink.
+     * Chunks larger than the internal buffer bypass it and go straight to the channel.
+     *
+     * @param src the bytes to write.
+     * @throws IOException if the underlying channel fails.
+     */
+    public void write(ByteBuffer src) throws IOException {
+        bytesWritten += src.remaining();
+        if (src.remaining() > buffer.remaining()) {
+            drain();
+            if (src.remaining() >= buffer.capacity()) {
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+                return;
+            }
+        }
+        buffer.put(src);
+    }
+
+    /**
+     * Copies a region of a file into the sink using {@link FileChannel#transferTo},
+     * which lets the kernel move the bytes when the sink is backed by a file or socket.
+     *
+     * @param in       the file to copy from.
+     * @param position the position in the file to start at.
+     * @param count    the number of bytes to copy.
+     * @throws IOException if reading the file or writing the channel fails.
+     */
+    public void transferFrom(FileChannel in, long position, long count) throws IOException {
+        drain();
+        long end = position + count;
+        while (position < end) {
+            long moved = in.transferTo(position, end - position, channel);
+            if (moved > 0) {
+                position += moved;
+                bytesWritten += moved;
+                continue;
+            }
+            // Nothing moved: either the file ended earlier than expected, or the channel is a pipe or socket
+            // in non-blocking mode, as virtual threads use them, that is full for now
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = in.read(buffer, position);
+            if (read <= 0) {
+                buffer.clear();
+                break;
+            }
+            drain(); // A plain write waits until the reader catches up
+            position += read;
+            bytesWritten += read;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written into the sink so far, including bytes still buffered.
+     *
+     * @return the byte count.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes an error message and counts it, so the run of the command is recorded as failed.
+     *
+     * @param message the message, ending with a newline.
+     * @throws IOException if the underlying channel fails.
+     */
+    public void error(String message) throws IOException {
+        errors.incrementAndGet();
+        print(message);
+    }
+
+    /**
+     * Counts errors whose messages reach the sink some other way, such as in output collected on another thread.
+     * Safe to call from any thread.
+     *
+     * @param count the number of errors.
+     */
+    public void countErrors(long count) {
+        errors.addAndGet(count);
+    }
+
+    /**
+     * Counts bytes the command read from files. Safe to call from any thread.
+     *
+     * @param bytes the number of bytes read.
+     */
+    public void countRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * Returns the number of errors reported into the sink so far.
+     *
+     * @return the error count.
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Returns the number of bytes read from files by the commands writing into the sink so far.
+     *
+     * @return the byte count.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Returns whether the channel behind the sink is still open, for commands that may go a long time
+     * without writing, such as `tail -f`, to notice that nobody is reading their output anymore.
+     *
+     * @return true if the channel is open.
+     */
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Writes any buffered bytes to the channel and flushes the console if the sink writes to it.
+     *
+     * @throws IOException if the underlying channel fails.
+     */
+    public void flush() throws IOException {
+        drain();
+        if (flushTarget != null) {
+            flushTarget.flush();
+        }
+    }
+
+    /**
+     * Flushes the sink and closes the channel if the sink opened it.
+     *
+     * @throws IOException if flushing or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (ownsChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the internal buffer to the channel and clears it.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -1,42 +1,232 @@
 package cli;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Parser class processes input commands from the command line.
+ * Lines are split into words in a single pass. Single quotes keep everything literally,
+ * double quotes keep whitespace, and a backslash escapes the next character when that
+ * character is whitespace, a quote, a pipe, a semicolon or another backslash (so Windows paths such as
+ * {@code src\test} are left untouched). An unquoted {@code |} splits the line into pipeline stages.
+ * <p>
+ * The token buffers are reused between calls, so a Parser must not be shared between threads.
  */
 public class Parser {
-    private String command;
-    private String[] arguments;
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    private String error;
+    private final StringBuilder token = new StringBuilder(64);
+    private final ArrayList<String> tokens = new ArrayList<>();
+    private final ArrayList<String> commands = new ArrayList<>();
+    private final ArrayList<String[]> argumentLists = new ArrayList<>();
 
     /**
-     * Parses the input line into a command and its arguments.
+     * Parses the input line into commands and their arguments, one per pipeline stage.
      *
-     * @param line The input line containing the command and its arguments.
+     * @param line The input line containing the commands and their arguments.
+     * @return true if the line holds a command to run, false if it is blank or malformed
+     *         (see {@link #getError()}).
      */
     public boolean parse(String line) {
-        String[] tmp = line.split("\\s+");
-        command = tmp[0];
-        arguments = new String[tmp.length - 1];
-        System.arraycopy(tmp, 1, arguments, 0, tmp.length - 1);
+        tokens.clear();
+        token.setLength(0);
+        commands.clear();
+        argumentLists.clear();
+        error = null;
+
+        char quote = 0; // The quote character currently open, or 0 outside quotes
+        boolean inToken = false; // Distinguishes an empty quoted word ("") from no word at all
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') { // Everything inside single quotes is literal
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            }
+            else if (c == '\\' && i + 1 < length && isEscapable(line.charAt(i + 1), quote)) {
+                token.append(line.charAt(++i));
+                inToken = true;
+            }
+            else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            }
+            else if (c == '\'' || c == '"') {
+                quote = c;
+                inToken = true;
+            }
+            else if (Character.isWhitespace(c) || c == '|') {
+                if (inToken) {
+                    endToken();
+                    inToken = false;
+                }
+                if (c == '|' && !endStage()) {
+                    return false;
+                }
+            }
+            else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+
+        if (quote != 0) {
+            error = "parse error: unterminated " + (quote == '"' ? "double" : "single") + " quote";
+            return false;
+        }
+        if (inToken) {
+            endToken();
+        }
+        if (tokens.isEmpty() && commands.isEmpty()) { // Blank line
+            return false;
+        }
+        return endStage();
+    }
+
+    /**
+     * Turns the words collected so far into a pipeline stage.
+     *
+     * @return false if the stage is empty, which makes the line malformed.
+     */
+    private boolean endStage() {
+        if (tokens.isEmpty()) {
+            error = "parse error near '|'";
+            commands.clear();
+            argumentLists.clear();
+            return false;
+        }
+        int count = tokens.size() - 1;
+        String[] arguments = NO_ARGUMENTS;
+        if (count > 0) {
+            arguments = new String[count];
+            for (int i = 0; i < count; i++) {
+                arguments[i] = tokens.get(i + 1);
+            }
+        }
+        commands.add(tokens.get(0));
+        argumentLists.add(arguments);
+        tokens.clear();
         return true;
     }
 
     /**
-     * Returns the parsed command.
+     * Splits a line into statements on every {@code ;} that is not quoted or escaped.
+     * The statements are returned as written, ready to be passed to {@link #parse(String)}.
      *
-     * @return The command.
+     * @param line The input line, possibly holding several statements.
+     * @return The statements, in order; blank statements are kept and parse as nothing.
+     */
+    public static List<String> splitStatements(String line) {
+        List<String> statements = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                }
+            }
+            else if (c == '\\' && i + 1 < length) {
+                i++; // Whatever follows a backslash never separates statements
+            }
+            else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                }
+            }
+            else if (c == '\'' || c == '"') {
+                quote = c;
+            }
+            else if (c == ';') {
+                statements.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        statements.add(line.substring(start));
+        return statements;
+    }
+
+    /**
+     * Returns whether a backslash followed by the given character is an escape sequence.
+     */
+    private static boolean isEscapable(char next, char quote) {
+        if (quote == '"') {
+            return next == '"' || next == '\\';
+        }
+        return next == '\\' || next == '"' || next == '\'' || next == '|' || next == ';' || Character.isWhitespace(next);
+    }
+
+    /**
+     * Moves the word collected so far into the token list.
+     */
+    private void endToken() {
+        tokens.add(token.toString());
+        token.setLength(0);
+    }
+
+    /**
+     * Returns the parsed command of the first pipeline stage.
+     *
+     * @return The command, or an empty string if the last line held none.
      */
     public String getCommand() {
-        return command;
+        return commands.isEmpty() ? "" : commands.get(0);
     }
 
     /**
-     * Returns a copy of the parsed arguments.
+     * Returns the parsed arguments of the first pipeline stage.
+     * Each call to {@link #parse(String)} creates new arrays, so callers may keep them.
      *
      * @return The arguments.
      */
     public String[] getArguments() {
-        return Arrays.copyOf(arguments, arguments.length);
+        return argumentLists.isEmpty() ? NO_ARGUMENTS : argumentLists.get(0);
+    }
+
+    /**
+     * Returns the number of pipeline stages on the last line.
+     *
+     * @return The number of stages, 0 if the line held no command.
+     */
+    public int getStageCount() {
+        return commands.size();
+    }
+
+    /**
+     * Returns the command of the given pipeline stage.
+     *
+     * @param stage The index of the stage, starting at 0.
+     * @return The command.
+     */
+    public String getCommand(int stage) {
+        return commands.get(stage);
+    }
+
+    /**
+     * Returns the arguments of the given pipeline stage.
+     *
+     * @param stage The index of the stage, starting at 0.
+     * @return The arguments.
+     */
+    public String[] getArguments(int stage) {
+        return argumentLists.get(stage);
+    }
+
+    /**
+     * Returns why the last line could not be parsed.
+     *
+     * @return The error message, or null if the last line was blank or parsed successfully.
+     */
+    public String getError() {
+        return error;
     }
 }
@@ -0,0 +1,118 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Pipeline class runs commands joined with {@code |}.
+ * Every stage except the last runs on its own virtual thread, and consecutive stages are
+ * connected by an OS pipe. The pipe's fixed-size buffer gives backpressure: a fast producer
+ * blocks until the consumer catches up, so no stage ever holds the whole stream in memory,
+ * and downstream stages start producing output while upstream ones are still running.
+ * When a stage finishes it closes its input, which stops the stages feeding it.
+ */
+public class Pipeline {
+    private final Session session;
+    private final List<Command> commands = new ArrayList<>();
+    private final List<String[]> arguments = new ArrayList<>();
+
+    /**
+     * Constructs a Pipeline whose stages run in a session starting in the working directory of the process.
+     */
+    public Pipeline() {
+        this(Session.ofProcess(null));
+    }
+
+    /**
+     * Constructs a Pipeline whose stages run in a session.
+     *
+     * @param session the session running every stage.
+     */
+    public Pipeline(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Appends a stage to the pipeline.
+     *
+     * @param command the command to run.
+     * @param args    the arguments of the command.
+     * @return this pipeline.
+     */
+    public Pipeline add(Command command, String[] args) {
+        commands.add(command);
+        arguments.add(args);
+        return this;
+    }
+
+    /**
+     * Runs every stage and waits for all of them to finish.
+     * The last stage runs on the calling thread and writes into the given sink.
+     *
+     * @param out the sink receiving the output of the last stage.
+     * @throws IOException if the last stage fails to write its output.
+     */
+    public void run(OutputSink out) throws IOException {
+        int last = commands.size() - 1;
+        List<Thread> stages = new ArrayList<>(last);
+        ReadableByteChannel in = null;
+        try {
+            for (int i = 0; i < last; i++) {
+                Pipe pipe = Pipe.open();
+                Command command = commands.get(i);
+                String[] args = arguments.get(i);
+                ReadableByteChannel stageIn = in;
+                stages.add(Thread.ofVirtual().name("pipeline-stage-" + i)
+                        .start(() -> runStage(session, command, args, stageIn, pipe.sink())));
+                in = pipe.source();
+            }
+            commands.get(last).execute(session, arguments.get(last), in, out);
+        }
+        finally {
+            closeQuietly(in); // Lets upstream stages that are still writing stop
+            for (Thread stage : stages) {
+                try {
+                    stage.join();
+                } catch (InterruptedException e) {
+                    for (Thread other : stages) { // Stages that never write, such as `tail -f`, would not stop otherwise
+                        other.interrupt();
+                    }
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one upstream stage, writing into the pipe connected to the next stage.
+     */
+    private static void runStage(Session session, Command command, String[] args, ReadableByteChannel in, Pipe.SinkChannel pipe) {
+        try (OutputSink out = OutputSink.toChannel(pipe)) {
+            command.execute(session, args, in, out);
+        }
+        catch (IOException e) { // The next stage stopped reading, so there is nobody left to write for
+        }
+        finally {
+            closeQuietly(pipe);
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Closes a channel, ignoring null channels and errors.
+     */
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
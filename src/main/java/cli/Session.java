@@ -0,0 +1,113 @@
+package cli;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Session class holds what belongs to one caller of a shared {@link Terminal}: the working
+ * directory, the environment, the sink for output that is not tied to a single command, and the
+ * parser for its command lines. Sessions are small, so a caller can have its own without building
+ * a Terminal. A session runs one command line at a time, while any number of sessions run on the
+ * same Terminal at once.
+ */
+public class Session {
+    private volatile Path currentDir;
+    private final Map<String, String> environment;
+    private final OutputSink out;
+    private final Parser parser = new Parser();
+    private volatile boolean exited;
+
+    /**
+     * Constructs a Session.
+     *
+     * @param currentDir  the working directory the session starts in.
+     * @param environment the environment variables of the session, copied.
+     * @param out         the sink receiving output that is not tied to a command, such as the prompt and
+     *                    the status of `>` and `>>`, or null if the caller passes a sink to every command.
+     */
+    public Session(Path currentDir, Map<String, String> environment, OutputSink out) {
+        this.currentDir = currentDir.toAbsolutePath().normalize();
+        this.environment = new ConcurrentHashMap<>(environment);
+        this.out = out;
+    }
+
+    /**
+     * Constructs a Session starting in the working directory and with the environment of the process.
+     *
+     * @param out the sink receiving output that is not tied to a command, or null.
+     * @return the session.
+     */
+    public static Session ofProcess(OutputSink out) {
+        return new Session(Path.of(System.getProperty("user.dir")), System.getenv(), out);
+    }
+
+    /**
+     * Returns the working directory.
+     *
+     * @return the absolute path of the working directory.
+     */
+    public Path getCurrentDir() {
+        return currentDir;
+    }
+
+    /**
+     * Changes the working directory.
+     *
+     * @param dir the new working directory.
+     */
+    public void setCurrentDir(Path dir) {
+        currentDir = dir.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Resolves an argument against the working directory, unless it is already absolute.
+     *
+     * @param arg the path as the user wrote it.
+     * @return the resolved path.
+     */
+    public Path resolve(String arg) {
+        return FileStat.resolve(currentDir, arg);
+    }
+
+    /**
+     * Returns the environment variables of the session, which callers may change.
+     *
+     * @return the modifiable environment.
+     */
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Returns the sink receiving output that is not tied to a command.
+     *
+     * @return the sink, or null if the session has none.
+     */
+    public OutputSink getOut() {
+        return out;
+    }
+
+    /**
+     * Ends the session; scripts and the interface stop before their next line.
+     */
+    public void exit() {
+        exited = true;
+    }
+
+    /**
+     * Returns whether `exit` has run in this session.
+     *
+     * @return true once the session has ended.
+     */
+    public boolean isExited() {
+        return exited;
+    }
+
+    /**
+     * Returns the parser of the session's command lines, which keeps state between calls.
+     */
+    Parser getParser() {
+        return parser;
+    }
+}
@@ -0,0 +1,38 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The SessionCommand interface is implemented by the builtins that depend on the session running them,
+ * for example to resolve paths against its working directory. Run without one,
+ * they get a session of their own.
+ */
+@FunctionalInterface
+public interface SessionCommand extends Command {
+    /**
+     * Runs the command in a session.
+     *
+     * @param session the session running the command.
+     * @param args    the arguments given to the command, without any redirection.
+     * @param in      the output of the previous pipeline stage, or null if the command is not piped.
+     * @param out     the sink receiving the output of the command.
+     * @throws IOException if reading the input or writing to the sink fails.
+     */
+    @Override
+    void execute(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException;
+
+    /**
+     * Runs the command in a new session starting in the working directory of the process.
+     * The builtins of a {@link Terminal} run in its default session instead.
+     *
+     * @param args the arguments given to the command, without any redirection.
+     * @param in   the output of the previous pipeline stage, or null if the command is not piped.
+     * @param out  the sink receiving the output of the command.
+     * @throws IOException if reading the input or writing to the sink fails.
+     */
+    @Override
+    default void execute(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        execute(Session.ofProcess(null), args, in, out);
+    }
+}
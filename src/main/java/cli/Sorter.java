@@ -0,0 +1,482 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The Sorter class sorts lines for `sort`, in memory when they fit within a memory budget and
+ * with an external merge sort when they do not.
+ * Lines are collected until their estimated size reaches the budget; the batch is then sorted
+ * with {@link Arrays#parallelSort} and written to a temporary file as a sorted run. Once the
+ * input ends, the runs are merged through a priority queue, at most {@link #MERGE_WIDTH} at a
+ * time, so the memory used stays near the budget however large the input is.
+ * <p>
+ * Lines are decoded as ISO-8859-1, which maps every byte to one char: lines are compared byte by
+ * byte, like `sort` does in the C locale, and written back exactly as they were read.
+ */
+public class Sorter implements Closeable {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MERGE_WIDTH = 64;
+    private static final long LINE_OVERHEAD = 64; // The String, its byte array and the reference to it
+
+    private final Comparator<String> order;
+    private final Comparator<String> keys;
+    private final boolean unique;
+    private final long memoryBudget;
+    private final List<String> batch = new ArrayList<>();
+    private final Deque<Path> runs = new ArrayDeque<>();
+    private long batchBytes;
+    private int runCount;
+    private Path tempDir;
+
+    /**
+     * Constructs a Sorter.
+     *
+     * @param reverse      true to sort in descending order.
+     * @param numeric      true to compare the keys as numbers, lines without a number counting as 0.
+     * @param unique       true to print only the first of the lines whose keys are equal.
+     * @param firstField   the first field of the key, counting from 1, or 0 to use the whole line.
+     * @param lastField    the last field of the key, or 0 for the end of the line.
+     * @param memoryBudget the estimated memory the lines may use before they are spilled to disk.
+     */
+    public Sorter(boolean reverse, boolean numeric, boolean unique, int firstField, int lastField, long memoryBudget) {
+        Comparator<String> byKey = numeric
+                ? Comparator.comparingDouble(line -> parseNumber(line, keyStart(line, firstField), keyEnd(line, lastField)))
+                : (a, b) -> compareRegions(a, keyStart(a, firstField), keyEnd(a, lastField), b, keyStart(b, firstField), keyEnd(b, lastField));
+        // Lines with equal keys are ordered by their whole text, unless only one of them is kept
+        Comparator<String> whole = unique || (firstField == 0 && !numeric) ? byKey : byKey.thenComparing(Comparator.naturalOrder());
+        this.keys = reverse ? byKey.reversed() : byKey;
+        this.order = reverse ? whole.reversed() : whole;
+        this.unique = unique;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Parses a memory budget: a number of bytes, optionally followed by K, M or G.
+     *
+     * @param size the budget, for example 512M.
+     * @return the budget in bytes.
+     * @throws IllegalArgumentException if the budget is not a positive size.
+     */
+    public static long parseBudget(String size) {
+        long unit = 1;
+        String number = size;
+        if (!size.isEmpty() && !Character.isDigit(size.charAt(size.length() - 1))) {
+            unit = switch (Character.toUpperCase(size.charAt(size.length() - 1))) {
+                case 'K' -> 1024;
+                case 'M' -> 1024 * 1024;
+                case 'G' -> 1024L * 1024 * 1024;
+                default -> throw new IllegalArgumentException(size);
+            };
+            number = size.substring(0, size.length() - 1);
+        }
+        long budget = Long.parseLong(number) * unit;
+        if (budget <= 0) {
+            throw new IllegalArgumentException(size);
+        }
+        return budget;
+    }
+
+    /**
+     * Returns the memory budget used when none is given: the {@code cli.sort.memory} system property,
+     * or a quarter of the maximum heap size.
+     *
+     * @return the default budget in bytes.
+     */
+    public static long defaultBudget() {
+        String property = System.getProperty("cli.sort.memory");
+        return property != null ? parseBudget(property) : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Reads every line of a channel, spilling sorted runs to disk whenever the budget is reached.
+     * A last line without a newline is read as a line too.
+     *
+     * @param in the input to read.
+     * @throws IOException if reading the input or writing a run fails.
+     */
+    public void addAll(ReadableByteChannel in) throws IOException {
+        LineReader reader = new LineReader(in);
+        for (String line = reader.next(); line != null; line = reader.next()) {
+            add(line);
+        }
+    }
+
+    /**
+     * Adds one line, spilling a sorted run to disk if the budget is reached.
+     *
+     * @param line the line, without its newline.
+     * @throws IOException if writing a run fails.
+     */
+    public void add(String line) throws IOException {
+        batch.add(line);
+        batchBytes += LINE_OVERHEAD + line.length();
+        if (batchBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes every line added, in order, into the sink.
+     *
+     * @param out the sink receiving the sorted lines.
+     * @throws IOException if reading a run or writing to the sink fails.
+     */
+    public void finish(OutputSink out) throws IOException {
+        LineWriter writer = new LineWriter(out);
+        if (runs.isEmpty()) { // Everything fitted in memory
+            String[] lines = sortBatch();
+            writeUnique(Arrays.asList(lines), writer);
+            writer.flush();
+            return;
+        }
+        spill();
+        while (runs.size() > MERGE_WIDTH) { // Too many files to read at once, so merge some into longer runs
+            Path merged = newRun();
+            try (FileChannel channel = FileChannel.open(merged, StandardOpenOption.WRITE)) {
+                LineWriter runWriter = new LineWriter(OutputSink.toChannel(channel));
+                merge(MERGE_WIDTH, runWriter);
+                runWriter.flush();
+            }
+            runs.addLast(merged);
+        }
+        merge(runs.size(), writer);
+        writer.flush();
+    }
+
+    /**
+     * Returns the number of sorted runs written to disk, 0 when the input was sorted in memory.
+     *
+     * @return the run count.
+     */
+    public int getRuns() {
+        return runCount;
+    }
+
+    /**
+     * Deletes the temporary files of the runs.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (tempDir == null) {
+            return;
+        }
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        try (var leftovers = Files.list(tempDir)) {
+            for (Path run : (Iterable<Path>) leftovers::iterator) {
+                Files.deleteIfExists(run);
+            }
+        }
+        Files.deleteIfExists(tempDir);
+        tempDir = null;
+    }
+
+    /**
+     * Sorts the current batch and writes it to a new run file.
+     */
+    private void spill() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        String[] lines = sortBatch();
+        Path run = newRun();
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            LineWriter writer = new LineWriter(OutputSink.toChannel(channel));
+            writeUnique(Arrays.asList(lines), writer);
+            writer.flush();
+        }
+        runs.addLast(run);
+        runCount++;
+    }
+
+    /**
+     * Sorts the current batch in parallel and empties it.
+     */
+    private String[] sortBatch() {
+        String[] lines = batch.toArray(new String[0]);
+        batch.clear();
+        batchBytes = 0;
+        Arrays.parallelSort(lines, order);
+        return lines;
+    }
+
+    /**
+     * Writes sorted lines, skipping the ones whose keys equal the previous line's when only unique lines are kept.
+     */
+    private void writeUnique(Iterable<String> lines, LineWriter writer) throws IOException {
+        String previous = null;
+        for (String line : lines) {
+            if (!unique || previous == null || keys.compare(previous, line) != 0) {
+                writer.write(line);
+            }
+            previous = line;
+        }
+    }
+
+    /**
+     * Merges the first runs of the queue into the writer and deletes them.
+     */
+    private void merge(int width, LineWriter writer) throws IOException {
+        List<RunReader> readers = new ArrayList<>(width);
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(width, (a, b) -> order.compare(a.line, b.line));
+        try {
+            for (int i = 0; i < width; i++) {
+                RunReader reader = new RunReader(runs.removeFirst());
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+            String previous = null;
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                String line = reader.line;
+                if (!unique || previous == null || keys.compare(previous, line) != 0) {
+                    writer.write(line);
+                }
+                previous = line;
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        }
+        finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Creates an empty file for a run in the temporary directory of this sort.
+     */
+    private Path newRun() throws IOException {
+        if (tempDir == null) {
+            tempDir = Files.createTempDirectory("sort");
+        }
+        return Files.createTempFile(tempDir, "run", ".txt");
+    }
+
+    /**
+     * Returns the index where a field starts, skipping the blanks before it, or the start of the line for field 0.
+     */
+    private static int keyStart(String line, int field) {
+        if (field == 0) {
+            return 0;
+        }
+        int i = 0;
+        int length = line.length();
+        for (int f = 1; ; f++) {
+            while (i < length && isBlank(line.charAt(i))) {
+                i++;
+            }
+            if (f == field || i == length) {
+                return i;
+            }
+            while (i < length && !isBlank(line.charAt(i))) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns the index where a field ends, or the end of the line for field 0.
+     */
+    private static int keyEnd(String line, int field) {
+        if (field == 0) {
+            return line.length();
+        }
+        int i = keyStart(line, field);
+        while (i < line.length() && !isBlank(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Compares two regions of text char by char, a shorter region that is a prefix of the other coming first.
+     */
+    private static int compareRegions(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        int aLength = Math.max(0, aEnd - aStart);
+        int bLength = Math.max(0, bEnd - bStart);
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int diff = a.charAt(aStart + i) - b.charAt(bStart + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Parses the number at the start of a region, after any blanks: an optional minus sign, digits and a fraction.
+     * A region that does not start with a number is 0.
+     */
+    private static double parseNumber(String line, int start, int end) {
+        int i = start;
+        while (i < end && isBlank(line.charAt(i))) {
+            i++;
+        }
+        boolean negative = i < end && line.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        double value = 0;
+        while (i < end && Character.isDigit(line.charAt(i))) {
+            value = value * 10 + (line.charAt(i++) - '0');
+        }
+        if (i < end && line.charAt(i) == '.') {
+            double scale = 0.1;
+            for (i++; i < end && Character.isDigit(line.charAt(i)); i++, scale /= 10) {
+                value += (line.charAt(i) - '0') * scale;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns whether a char separates fields: a space or a tab.
+     */
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * Splits a channel into lines, reading it one block at a time.
+     */
+    private static class LineReader {
+        private final ReadableByteChannel in;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        private byte[] line = new byte[256];
+        private boolean ended;
+
+        LineReader(ReadableByteChannel in) {
+            this.in = in;
+            buffer.flip();
+        }
+
+        /**
+         * Returns the next line without its newline, or null at the end of the input.
+         */
+        String next() throws IOException {
+            int length = 0;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (ended) {
+                        return length > 0 ? new String(line, 0, length, StandardCharsets.ISO_8859_1) : null;
+                    }
+                    buffer.clear();
+                    ended = in.read(buffer) == -1;
+                    buffer.flip();
+                    continue;
+                }
+                int start = buffer.position();
+                int limit = buffer.limit();
+                int end = start;
+                byte[] array = buffer.array();
+                while (end < limit && array[end] != '\n') {
+                    end++;
+                }
+                int n = end - start;
+                if (length + n > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + n));
+                }
+                System.arraycopy(array, start, line, length, n);
+                length += n;
+                if (end < limit) { // Found the newline
+                    buffer.position(end + 1);
+                    return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+                }
+                buffer.position(limit);
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of a run file, keeping the current one for the merge.
+     */
+    private static class RunReader implements Closeable {
+        private final Path run;
+        private final FileChannel channel;
+        private final LineReader reader;
+        private String line;
+
+        RunReader(Path run) throws IOException {
+            this.run = run;
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.reader = new LineReader(channel);
+        }
+
+        /**
+         * Moves to the next line of the run, returning false at its end.
+         */
+        boolean advance() throws IOException {
+            line = reader.next();
+            return line != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(run);
+        }
+    }
+
+    /**
+     * Writes lines with their newlines into a sink, one block at a time.
+     */
+    private static class LineWriter {
+        private final OutputSink out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+
+        LineWriter(OutputSink out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes one line followed by a newline.
+         */
+        void write(String line) throws IOException {
+            byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+            if (bytes.length + 1 > buffer.remaining()) {
+                flush();
+                if (bytes.length + 1 > buffer.capacity()) { // A line longer than the block goes straight through
+                    out.write(ByteBuffer.wrap(bytes));
+                    out.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                    return;
+                }
+            }
+            buffer.put(bytes).put((byte) '\n');
+        }
+
+        /**
+         * Writes the buffered lines into the sink and flushes it.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            out.write(buffer);
+            buffer.clear();
+            out.flush();
+        }
+    }
+}
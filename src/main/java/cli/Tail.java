@@ -0,0 +1,274 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Tail class finds and follows the end of files for `tail`.
+ * The last lines of a file are found by reading it backwards from the end, one block at a time,
+ * so only the blocks holding those lines are read however large the file is. Piped input cannot
+ * seek, so only the blocks that may still hold the last lines are kept while it is read.
+ * <p>
+ * Following a file prints what is appended to it until the thread is interrupted or the sink is closed.
+ * The watch service of its directory wakes the follower when the file changes; where the directory cannot
+ * be watched it checks the file periodically instead. A file that is replaced, as log rotation does, is reopened
+ * and followed from its start, and a file that is truncated is followed from its new end.
+ */
+public class Tail {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final long POLL_MILLIS = 250;
+    private static final long CHECK_MILLIS = 1000; // Checked even when watched, in case an event was missed
+
+    private final Path path;
+    private final String display;
+    private final ReadEngine readEngine;
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+
+    /**
+     * Constructs a Tail following a file from a position.
+     *
+     * @param path       the file to follow.
+     * @param display    the file as the user wrote it, for messages.
+     * @param channel    the open file, which the Tail closes when it stops.
+     * @param position   the position up to which the file has been printed.
+     * @param readEngine copies the appended data into the sink.
+     * @throws IOException if the attributes of the file cannot be read.
+     */
+    public Tail(Path path, String display, FileChannel channel, long position, ReadEngine readEngine) throws IOException {
+        this.path = path;
+        this.display = display;
+        this.channel = channel;
+        this.position = position;
+        this.readEngine = readEngine;
+        this.fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Returns the position where the last lines of a file start, reading it backwards from the end.
+     * A newline ending the file ends the last line rather than starting another one.
+     *
+     * @param file  the file.
+     * @param lines the number of lines wanted.
+     * @return the position of the first byte to print.
+     * @throws IOException if the file cannot be read.
+     */
+    public static long lastLinesStart(SeekableByteChannel file, long lines) throws IOException {
+        long size = file.size();
+        if (lines == 0) {
+            return size;
+        }
+        ByteBuffer block = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, Math.max(size, 1)));
+        long start = size;
+        long newlines = 0;
+        while (start > 0) {
+            int length = (int) Math.min(block.capacity(), start);
+            start -= length;
+            block.clear().limit(length);
+            file.position(start);
+            while (block.hasRemaining() && file.read(block) != -1) {
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && start + i != size - 1 && ++newlines == lines) {
+                    return start + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the last lines or bytes of piped input into the sink once it ends.
+     * Blocks are dropped as soon as the blocks after them hold enough data.
+     *
+     * @param in    the piped input.
+     * @param count the number of lines or bytes wanted.
+     * @param lines true to count lines, false to count bytes.
+     * @param out   the sink receiving the data.
+     * @throws IOException if reading the input or writing to the sink fails.
+     */
+    public static void copyLast(ReadableByteChannel in, long count, boolean lines, OutputSink out) throws IOException {
+        Deque<byte[]> blocks = new ArrayDeque<>();
+        Deque<Long> blockNewlines = new ArrayDeque<>();
+        long kept = 0; // Newlines or bytes in the kept blocks
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        boolean ended = false;
+        while (!ended) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) == -1) {
+                    ended = true;
+                    break;
+                }
+            }
+            if (buffer.position() == 0) {
+                continue;
+            }
+            byte[] block = new byte[buffer.position()];
+            buffer.flip().get(block);
+            long newlines = lines ? countNewlines(block) : block.length;
+            blocks.add(block);
+            blockNewlines.add(newlines);
+            kept += newlines;
+            // One newline more than the lines wanted, since the last one may end the input
+            while (blocks.size() > 1 && kept - blockNewlines.peekFirst() >= count + (lines ? 1 : 0)) {
+                blocks.removeFirst();
+                kept -= blockNewlines.removeFirst();
+            }
+        }
+
+        int size = 0;
+        for (byte[] block : blocks) {
+            size += block.length;
+        }
+        byte[] data = new byte[size];
+        int offset = 0;
+        for (byte[] block : blocks) {
+            System.arraycopy(block, 0, data, offset, block.length);
+            offset += block.length;
+        }
+        int start = lines ? lastLinesStart(data, count) : (int) Math.max(0, size - count);
+        out.write(ByteBuffer.wrap(data, start, size - start));
+    }
+
+    /**
+     * Prints what is appended to the file until the thread is interrupted, the sink is closed or writing to it fails.
+     * The sink is checked at least every second, so a follower whose reader has gone stops even if the file stays quiet.
+     *
+     * @param out the sink receiving the appended data and any messages about the file.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void follow(OutputSink out) throws IOException {
+        try (WatchService watcher = watch()) {
+            while (!Thread.currentThread().isInterrupted() && out.isOpen()) {
+                catchUp(out);
+                if (watcher != null) {
+                    WatchKey key = watcher.poll(CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) { // Any change in the directory is a reason to look at the file
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
+                else {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedByInterruptException ex) { // Interrupted while reading or writing; the flag is already set
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Prints whatever was appended since the last check, reopening the file if it was replaced.
+     */
+    private void catchUp(OutputSink out) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException ex) { // Moved away and not recreated yet, so keep reading the old file
+            copyAppended(out);
+            return;
+        }
+        if (fileKey != null && !fileKey.equals(attributes.fileKey())) {
+            copyAppended(out); // The end of the old file, written before it was replaced
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileKey = attributes.fileKey();
+            position = 0;
+            out.print("tail: '" + display + "' has been replaced; following new file\n");
+        }
+        else if (channel.size() < position) {
+            out.print("tail: " + display + ": file truncated\n");
+            out.flush();
+            position = channel.size();
+        }
+        copyAppended(out);
+    }
+
+    /**
+     * Copies the data after the current position into the sink.
+     */
+    private void copyAppended(OutputSink out) throws IOException {
+        long size = channel.size();
+        if (size > position) {
+            readEngine.copy(channel, position, size - position, out);
+            position = size;
+            out.flush();
+        }
+    }
+
+    /**
+     * Watches the directory of the file, or returns null if it cannot be watched.
+     */
+    private WatchService watch() {
+        Path dir = path.toAbsolutePath().getParent();
+        WatchService watcher = null;
+        try {
+            watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            return watcher;
+        }
+        catch (IOException | UnsupportedOperationException ex) { // Fall back to checking periodically
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index where the last lines of a block of data start.
+     */
+    private static int lastLinesStart(byte[] data, long lines) {
+        if (lines == 0) {
+            return data.length;
+        }
+        long newlines = 0;
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == '\n' && i != data.length - 1 && ++newlines == lines) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the newlines of a block.
+     */
+    private static long countNewlines(byte[] block) {
+        long newlines = 0;
+        for (byte b : block) {
+            if (b == '\n') {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+}
@@ -1,40 +1,97 @@
 package cli;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongPredicate;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
 
+/**
+ * The Terminal class runs command lines. It holds what all of its callers share, the builtin commands,
+ * the read engine and the directory cache, while everything that belongs to one caller lives in a
+ * {@link Session}, so any number of sessions can run commands on the same Terminal at once.
+ * The methods without a session run in the default session, which starts in the working directory
+ * of the process and prints to standard output.
+ */
 public class Terminal {
-    private Parser parser;
-    private Path currentDir;
+    private static final int SCRIPT_BUFFER_SIZE = 1024 * 1024;
+
+    private final Session defaultSession = Session.ofProcess(OutputSink.toStdout());
+    private final ReadEngine readEngine = new ReadEngine();
+    private final CommandRegistry commands = new CommandRegistry();
+    private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+    private volatile DirectoryCache directoryCache; // Null while the cache is off
+    private final Instrumentation instrumentation = new Instrumentation();
 
 
     /**
      * Constructs a Terminal instance.
-     * Initializes the parser and sets the current directory to the user's working directory.
+     * Registers the builtin commands, measured by the terminal's {@link Instrumentation};
+     * the default session starts in the user's working directory.
      */
     public Terminal(){
-        parser = new Parser();
-        currentDir = Path.of(System.getProperty("user.dir"));
+        registerBuiltins();
+        commands.wrapAll(instrumentation::wrap);
     }
 
     /**
-     * Prints the current working directory to the console.
+     * Returns the current working directory, which the `pwd` command prints. Runs in the default session.
      */
     public String pwd(){
-        System.out.print(getCurrentDir());
-        return getCurrentDir();
+        return pwd(defaultSession);
     }
 
     /**
-     * Changes the current directory based on the provided argument.
+     * Returns the current working directory, which the `pwd` command prints.
+     *
+     * @param session the session to run in.
+     */
+    public String pwd(Session session){
+        return session.getCurrentDir().toString();
+    }
+
+    /**
+     * Changes the current directory based on the provided argument. Runs in the default session.
      *
      * @param args the directory path to change to. If no arguments are provided, does nothing.
      */
     public String cd(String args[]){
+        return cd(defaultSession, args);
+    }
+
+    /**
+     * Changes the current directory based on the provided argument.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the directory path to change to. If no arguments are provided, does nothing.
+     */
+    public String cd(Session session, String args[]){
         StringBuilder output = new StringBuilder();
         if(args.length == 0 ){ // No arguments case
             return output.toString();
@@ -44,20 +101,17 @@ public class Terminal {
             return output.toString();
         }
         else{
-            Path targetPath = Path.of(args[0]);
-            if(!targetPath.isAbsolute()){ // If path is relative, resolve it against the current directory
-                targetPath = currentDir.resolve(targetPath);
-            }
-            File file = new File(targetPath.toAbsolutePath().toString());
-            if(!file.exists()){ // If directory does not exist
+            Path targetPath = session.resolve(args[0]); // Relative paths are resolved against the current directory
+            FileStat target = stat(targetPath);
+            if(!target.exists()){ // If directory does not exist
                 output.append("cd: no such file or directory: " + targetPath.getFileName() + "\n");
                 return output.toString();
             }
-            if(!file.isDirectory()){ // If path is not a directory
+            if(!target.isDirectory()){ // If path is not a directory
                 output.append("cd: not a directory: " + targetPath.getFileName() + "\n");
                 return output.toString();
             }
-            currentDir = targetPath.normalize(); // Set the new current directory
+            session.setCurrentDir(targetPath); // Set the new current directory
         }
         return output.toString();
     }
@@ -66,331 +120,1988 @@ public class Terminal {
      * Lists the contents of the current directory with optional flags.
      * -a: lists all files, including hidden files.
      * -r: lists files in reverse order.
+     * -l: lists type, permissions, size and modification time, one entry per line.
+     * -t: sorts by modification time, newest first.
+     * -S: sorts by size, largest first.
+     * -1: lists one name per line.
+     * -U: does not sort; entries are written as they are read.
+     * --top=N: lists only the first N entries of the chosen order.
      *
-     * @param args optional flags for displaying files. If no flags are given, lists visible files only.
+     * @param args optional flags for displaying files, and optionally the directory to list.
+     *             If no flags are given, lists visible files only.
      */
     public String ls(String args[]){
-        File cur = new File(getCurrentDir());
-        String[] list = cur.list();
-        StringBuilder output = new StringBuilder();
-        if(args.length > 1){
-            output.append("ls: too many arguments\n");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            ls(args, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
         }
-        else if(args.length == 0){ // Default listing excluding hidden files
-            Arrays.stream(list).filter(e -> !e.startsWith("."))
-                    .forEach((e) -> output.append(e + " "));
-            output.append("\n");
+        return buffer.toString();
+    }
+
+    /**
+     * Streams the listing of a directory into the given sink. See {@link #ls(String[])} for the flags. Runs in the default session.
+     *
+     * @param args optional flags for displaying files, and optionally the directory to list.
+     * @param out  the sink receiving the listing.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void ls(String[] args, OutputSink out) throws IOException {
+        ls(defaultSession, args, out);
+    }
 
+    /**
+     * Streams the listing of a directory into the given sink. See {@link #ls(String[])} for the flags.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args optional flags for displaying files, and optionally the directory to list.
+     * @param out  the sink receiving the listing.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void ls(Session session, String[] args, OutputSink out) throws IOException {
+        boolean all = false;
+        boolean reverse = false;
+        boolean longFormat = false;
+        boolean onePerLine = false;
+        DirectoryLister.Order order = DirectoryLister.Order.NAME;
+        int top = 0;
+        String operand = null;
+        for(String arg : args){
+            if(arg.startsWith("--top=")){
+                try {
+                    top = Integer.parseInt(arg.substring("--top=".length()));
+                } catch (NumberFormatException ex) {
+                    top = -1;
+                }
+                if(top <= 0){
+                    out.error("ls: invalid number of entries: '" + arg.substring("--top=".length()) + "'\n");
+                    return;
+                }
+            }
+            else if(arg.startsWith("-") && arg.length() > 1){
+                for(char flag : arg.substring(1).toCharArray()){
+                    switch(flag){
+                        case 'a' -> all = true;
+                        case 'r' -> reverse = true;
+                        case 'l' -> longFormat = true;
+                        case 't' -> order = DirectoryLister.Order.TIME;
+                        case 'S' -> order = DirectoryLister.Order.SIZE;
+                        case '1' -> onePerLine = true;
+                        case 'U' -> order = DirectoryLister.Order.NONE;
+                        default -> {
+                            out.error("ls: invalid argument (supports -a, -r, -l, -t, -S, -1, -U and --top=N)\n");
+                            return;
+                        }
+                    }
+                }
+            }
+            else if(operand == null){
+                operand = arg;
+            }
+            else{
+                out.error("ls: too many arguments\n");
+                return;
+            }
         }
-        else if(args[0].equals("-a")){ // List all files, including hidden
-            Arrays.stream(list).forEach(e -> output.append(e + " "));
-            output.append("\n");
+
+        Path dir = operand != null ? session.resolve(operand) : session.getCurrentDir();
+        FileStat target = stat(dir);
+        if(!target.isDirectory()){
+            if(target.exists()){ // A single file lists as itself
+                out.print(dir.getFileName() + (longFormat || onePerLine ? "\n" : " \n"));
+            }
+            else{
+                out.error("ls: cannot access '" + operand + "': No such file or directory\n");
+            }
+            return;
         }
-        else if(args[0].equals("-r")){ // List files in reverse order, excluding hidden
-            Collections.reverse(Arrays.asList(list));
-            Arrays.stream(list).filter(e -> !e.startsWith("."))
-                    .forEach((e) -> output.append(e + " "));
-            output.append("\n");
+        try {
+            DirectoryLister lister = new DirectoryLister(all, reverse, longFormat, onePerLine, order, top);
+            if(directoryCache != null){
+                lister.list(directoryCache.entries(dir.toAbsolutePath().normalize()), out);
+            }
+            else{
+                lister.list(dir, out);
+            }
         }
-        else{ // Invalid argument case
-            output.append("ls: invalid argument (currently only supports ls, ls -r, ls -a)\n");
+        catch (IOException ex) {
+            out.error("ls: An error occurred, can't read the directory: '" + dir.getFileName() + "'\n");
         }
-        return output.toString();
     }
 
     /**
-     * Creates directories based on the provided arguments.
+     * Creates directories based on the provided arguments. Runs in the default session.
      *
      * @param args the names or paths of directories to create.
      */
     public String mkdir(String args[]){
+        return mkdir(defaultSession, args);
+    }
+
+    /**
+     * Creates directories based on the provided arguments.
+     * Parent directories shared by several arguments are planned up front and created once,
+     * then the directories themselves are created in parallel when there are many of them.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the names or paths of directories to create.
+     */
+    public String mkdir(Session session, String args[]){
         StringBuilder output = new StringBuilder();
         if(args.length < 1){
             output.append("mkdir: too few arguments\n");
             return output.toString();
         }
-        Arrays.stream(args).forEach((e) -> {
-            Path cur = Path.of(e);
-            if(!cur.isAbsolute()){ // Resolve relative paths against current directory
-                cur = currentDir.resolve(cur);
+
+        Path[] targets = new Path[args.length];
+        for(int i = 0; i < args.length; i++){
+            targets[i] = session.resolve(args[i]);
+        }
+
+        // Check which directories already exist, in parallel
+        String[] messages = new String[args.length];
+        BulkExecutor.forEach(args.length, i -> {
+            if(stat(targets[i]).exists()){ // Directory already exists case
+                messages[i] = "mkdir: A subdirectory or file already exists: '" + targets[i].getFileName() + "'\n";
             }
+        });
 
-            if(Files.exists(cur)){ // Directory already exists case
-                output.append("mkdir: A subdirectory or file already exists: '" + cur.getFileName() + "'\n");
+        // Plan the parents in argument order. A directory that is an ancestor of an earlier
+        // argument, or repeats one, already exists by the time its turn comes.
+        Set<Path> planned = new HashSet<>();
+        Set<Path> parents = new HashSet<>();
+        for(int i = 0; i < args.length; i++){
+            if(messages[i] != null){
+                continue;
             }
-            else{
+            Path normalized = targets[i].toAbsolutePath().normalize();
+            if(planned.contains(normalized) || parents.contains(normalized)){
+                messages[i] = "mkdir: A subdirectory or file already exists: '" + targets[i].getFileName() + "'\n";
+                continue;
+            }
+            planned.add(normalized);
+            for(Path parent = normalized.getParent(); parent != null && parents.add(parent); parent = parent.getParent()){
+            }
+        }
+
+        // Create the parents shared by the arguments once, instead of once per argument
+        Path[] sharedParents = planned.stream()
+                .map(Path::getParent)
+                .filter(parent -> parent != null && !planned.contains(parent))
+                .distinct()
+                .toArray(Path[]::new);
+        BulkExecutor.forEach(sharedParents.length, i -> {
+            try {
+                Files.createDirectories(sharedParents[i]);
+            }
+            catch (IOException ex) { // Reported below for the directories that needed this parent
+            }
+        });
+
+        // Create the requested directories, parents first so nested arguments find theirs
+        Path[] ordered = planned.toArray(Path[]::new);
+        Arrays.sort(ordered, Comparator.comparingInt(Path::getNameCount));
+        Set<Path> failed = ConcurrentHashMap.newKeySet();
+        int start = 0;
+        while(start < ordered.length){ // One parallel round per depth
+            int depth = ordered[start].getNameCount();
+            int end = start;
+            while(end < ordered.length && ordered[end].getNameCount() == depth){
+                end++;
+            }
+            int from = start;
+            BulkExecutor.forEach(end - start, i -> {
                 try {
-                    Files.createDirectories(cur); // Attempt to create the directory
+                    Files.createDirectory(ordered[from + i]);
+                }
+                catch (FileAlreadyExistsException ex) { // Created as the parent of a deeper argument
                 }
                 catch (IOException ex) {
-                    output.append("mkdir: An error occurred, can't create the directory: '" + cur.getFileName() + "'\n");
+                    failed.add(ordered[from + i]);
                 }
+            });
+            start = end;
+        }
+        for(Path parent : sharedParents){ // Created by createDirectories, possibly several levels at once
+            for(Path ancestor = parent; ancestor != null; ancestor = ancestor.getParent()){
+                changed(ancestor);
             }
-        });
+        }
+        for(Path dir : ordered){
+            changed(dir);
+        }
+
+        for(int i = 0; i < args.length; i++){
+            if(messages[i] != null){
+                output.append(messages[i]);
+            }
+            else if(failed.contains(targets[i].toAbsolutePath().normalize())){
+                output.append("mkdir: An error occurred, can't create the directory: '" + targets[i].getFileName() + "'\n");
+            }
+        }
         return output.toString();
     }
 
     /**
-     * Removes directories if they are empty.
+     * Removes directories if they are empty. Runs in the default session.
      *
      * @param args the names or paths of directories to remove.
      */
     public String rmdir(String[] args){
+        return rmdir(defaultSession, args);
+    }
+
+    /**
+     * Removes directories if they are empty.
+     * Many arguments are removed in parallel, deepest directories first, so a directory
+     * given together with its subdirectories is empty by the time its turn comes.
+     * -p (--parents): also removes each parent named in the argument once it is empty,
+     * so `rmdir -p a/b/c` removes a/b/c, a/b and a.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the names or paths of directories to remove.
+     */
+    public String rmdir(Session session, String[] args){
         StringBuilder output = new StringBuilder();
+        if(args.length > 0 && (args[0].equals("-p") || args[0].equals("--parents"))){
+            args = Arrays.copyOfRange(args, 1, args.length);
+            if(args.length < 1){
+                output.append("rmdir: too few arguments\n");
+                return output.toString();
+            }
+            for(String e : args){ // Parents are shared between arguments, so go one argument at a time
+                for(Path cur = Path.of(e); cur != null; cur = cur.getParent()){
+                    String message = rmdir(cur.isAbsolute() ? cur : session.getCurrentDir().resolve(cur));
+                    if(!message.isEmpty()){
+                        output.append(message);
+                        break;
+                    }
+                }
+            }
+            return output.toString();
+        }
         if(args.length < 1){
             output.append("rmdir: too few arguments\n");
             return output.toString();
         }
 
-        Arrays.stream(args).forEach((e) -> {
-            Path cur = Path.of(e);
-            if(!cur.isAbsolute()){ // Resolve relative paths against current directory
-                cur = currentDir.resolve(cur);
+        Integer[] order = new Integer[args.length];
+        Path[] targets = new Path[args.length];
+        for(int i = 0; i < args.length; i++){
+            targets[i] = session.resolve(args[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> targets[i].toAbsolutePath().normalize().getNameCount()).reversed());
+
+        String[] messages = new String[args.length];
+        int start = 0;
+        while(start < order.length){ // One parallel round per depth
+            int depth = targets[order[start]].toAbsolutePath().normalize().getNameCount();
+            int end = start;
+            while(end < order.length && targets[order[end]].toAbsolutePath().normalize().getNameCount() == depth){
+                end++;
             }
+            int from = start;
+            BulkExecutor.forEach(end - start, i -> {
+                int index = order[from + i];
+                messages[index] = rmdir(targets[index]);
+            });
+            start = end;
+        }
 
-            if(Files.exists(cur)){
-                if(!Files.isDirectory(cur)){ // If not a directory, output an error
-                    output.append("rmdir: '" + cur.getFileName() + "' is not a directory.\n");
-                }
-                else{
-                    try {
-                        if(Files.list(cur).findAny().isPresent()){ // Check if directory is not empty
-                            output.append("rmdir: '" + cur.getFileName() + "' is not empty.\n");
-                        }
-                        else{
-                            Files.delete(cur); // Delete if empty
-                        }
-                    }
-                    catch (IOException ex){
-                        output.append("rmdir: An error occurred while removing directory '" + cur.getFileName() + "'\n");
-                    }
-                }
+        for(String message : messages){
+            output.append(message);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Removes a single empty directory.
+     * The directory is not listed first; deleting a directory that is not empty fails on its own.
+     *
+     * @return the error message, or an empty string on success.
+     */
+    private String rmdir(Path cur){
+        FileStat target = stat(cur);
+        if(target.exists()){
+            if(!target.isDirectory()){ // If not a directory, output an error
+                return "rmdir: '" + cur.getFileName() + "' is not a directory.\n";
             }
-            else{ // Directory does not exist case
-                output.append("rmdir: '" + cur.getFileName() + "' does not exist.\n");
+            try {
+                Files.delete(cur); // Delete if empty
+                changed(cur);
             }
-        });
-        return output.toString();
+            catch (DirectoryNotEmptyException ex){
+                return "rmdir: '" + cur.getFileName() + "' is not empty.\n";
+            }
+            catch (NoSuchFileException ex){ // Removed meanwhile by a repeated argument
+                return "rmdir: '" + cur.getFileName() + "' does not exist.\n";
+            }
+            catch (IOException ex){
+                return "rmdir: An error occurred while removing directory '" + cur.getFileName() + "'\n";
+            }
+            return "";
+        }
+        // Directory does not exist case
+        return "rmdir: '" + cur.getFileName() + "' does not exist.\n";
     }
 
     /**
-     * Creates new files for each argument provided.
+     * Creates new files for each argument provided. Runs in the default session.
      *
      * @param args the names or paths of files to create.
      */
     public String touch(String[] args){
+        return touch(defaultSession, args);
+    }
+
+    /**
+     * Creates new files for each argument provided.
+     * Many arguments are created in parallel.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the names or paths of files to create.
+     */
+    public String touch(Session session, String[] args){
         StringBuilder output = new StringBuilder();
         if(args.length < 1){ // Error for missing file operand
             output.append("touch: missing file operand\n");
             return output.toString();
         }
 
-        Arrays.stream(args).forEach((e) -> {
-            Path cur = Path.of(e);
-            if (!cur.isAbsolute()) { // Resolve relative paths against current directory
-                cur = currentDir.resolve(cur);
+        output.append(BulkExecutor.map(args, (e) -> {
+            Path cur = session.resolve(e);
+            try { // Create the file unless it exists; creating it is the existence check
+                Files.createFile(cur);
+                changed(cur);
             }
-
-            if (!Files.exists(cur)) { // Create file if it does not exist
-                try {
-                    Files.createFile(cur);
-                }
-                catch (IOException ex) {
-                    output.append("touch: An error occurred while creating file '" + cur.getFileName() + "'\n");
-                }
+            catch (FileAlreadyExistsException ex) { // Already there, or created meanwhile by a repeated argument
             }
-        });
+            catch (IOException ex) {
+                return "touch: An error occurred while creating file '" + cur.getFileName() + "'\n";
+            }
+            return "";
+        }));
         return output.toString();
     }
 
     /**
-     * Moves or renames a file or directory.
+     * Moves or renames files and directories. Runs in the default session.
      *
-     * @param args the source path and destination path for the move operation.
+     * @param args the source paths followed by the destination path.
      */
     public String mv(String[] args){
+        return mv(defaultSession, args);
+    }
+
+    /**
+     * Moves or renames files and directories.
+     * Each move is a single atomic rename when source and destination are on the same filesystem.
+     * Otherwise the source is copied in parallel, the copy is verified and only then is the source removed.
+     * With more than one source, the destination must be a directory and the sources are moved concurrently.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the source paths followed by the destination path.
+     */
+    public String mv(Session session, String[] args){
         StringBuilder output = new StringBuilder();
         if(args.length == 0){ // Error for missing file operand
             output.append("mv: missing file operand\n");
+            return output.toString();
         }
         else if(args.length == 1){ // Error for missing destination operand
             output.append("mv: missing destination file operand after '" + args[0] + "'\n");
+            return output.toString();
+        }
+
+        Path destPath = session.resolve(args[args.length - 1]);
+        boolean intoDirectory = stat(destPath).isDirectory();
+        if(args.length > 2 && !intoDirectory){
+            output.append("mv: target '" + destPath.getFileName() + "' is not a directory\n");
+            return output.toString();
         }
-        else if(args.length == 2) {
-            Path sourcePath = Path.of(args[0]);
-            Path destPath = Path.of(args[1]);
-            if (!sourcePath.isAbsolute()) {
-                sourcePath = currentDir.resolve(sourcePath);
-            }
-            if (!destPath.isAbsolute()) {
-                destPath = currentDir.resolve(destPath);
-            }
 
-            if(Files.exists(sourcePath)){
-                File file = new File(sourcePath.toAbsolutePath().toString());
+        String[] sources = Arrays.copyOf(args, args.length - 1);
+        Move[] moves = new Move[sources.length];
+        BulkExecutor.forEach(sources.length, i -> moves[i] = rename(session, sources[i], destPath, intoDirectory));
 
-                if(Files.isDirectory(destPath)){
-                    file.renameTo(new File(destPath.resolve(sourcePath.getFileName()).toAbsolutePath().toString()));
-                }
-                else{
-                    file.renameTo(new File(destPath.toAbsolutePath().toString()));
-                }
+        // Start every copy before waiting for any, so the sources are copied concurrently
+        for(Move move : moves){
+            if(move.copier != null){
+                move.copier.copy(move.source.getPath(), move.source.getAttributes(), move.target);
             }
-            else{
-                output.append("mv: cannot stat '" + sourcePath.getFileName() + "': No such file or directory\n");
+        }
+        for(Move move : moves){
+            output.append(move.message);
+            if(move.copier != null){
+                output.append(finishMove(move));
             }
+            if(move.target != null){
+                changed(move.source.getPath());
+                changed(move.target);
+            }
+        }
+        return output.toString();
+    }
 
+    /**
+     * One source given to `mv` and how it is moved.
+     */
+    private static class Move {
+        FileStat source;
+        Path target; // Null if the source cannot be moved at all
+        Copier copier; // Set when the source is on another filesystem and has to be copied
+        String message = "";
+    }
 
+    /**
+     * Moves one source with an atomic rename.
+     * A source on another filesystem gets a copier instead, to be copied and deleted afterwards.
+     */
+    private Move rename(Session session, String e, Path destPath, boolean intoDirectory){
+        Move move = new Move();
+        Path sourcePath = session.resolve(e);
+        move.source = FileStat.ofLink(sourcePath, directoryCache); // A link is moved, not followed
+        if(!move.source.exists()){
+            move.message = "mv: cannot stat '" + sourcePath.getFileName() + "': No such file or directory\n";
+            return move;
         }
-        else{
-            output.append("mv: too many arguments\n");
+        Path target = intoDirectory ? destPath.resolve(sourcePath.getFileName()) : destPath;
+        Path from = sourcePath.toAbsolutePath().normalize();
+        Path to = target.toAbsolutePath().normalize();
+        if(to.equals(from)){
+            move.message = "mv: '" + sourcePath.getFileName() + "' and '" + target.getFileName() + "' are the same file\n";
+            return move;
         }
-        return output.toString();
+        if(move.source.isDirectory() && to.startsWith(from)){
+            move.message = "mv: cannot move '" + sourcePath.getFileName() + "' to a subdirectory of itself, '" + target.getFileName() + "'\n";
+            return move;
+        }
+        move.target = target;
+        try {
+            Files.move(sourcePath, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) { // Another filesystem, so copy and delete instead
+            move.copier = new Copier("mv", true);
+        }
+        catch (IOException ex) {
+            move.message = "mv: cannot move '" + sourcePath.getFileName() + "' to '" + target.getFileName() + "': " + ex.getClass().getSimpleName() + "\n";
+        }
+        return move;
     }
 
     /**
-     * Removes specified files if they are regular files, not directories.
+     * Completes a move across filesystems: waits for the copy, verifies it and removes the source.
+     * The source is kept whenever the copy is incomplete.
      *
-     * @param args the names or paths of files to delete.
+     * @return the error messages, or an empty string on success.
      */
-    public String rm(String[] args){
+    private String finishMove(Move move){
         StringBuilder output = new StringBuilder();
-        if(args.length < 1){
-            output.append("rm: too few arguments\n");
+        Copier copier = move.copier;
+        Path sourcePath = move.source.getPath();
+        Path target = move.target;
+        copier.await();
+        for(String error : copier.getErrors()){
+            output.append(error + "\n");
+        }
+        if(!copier.getErrors().isEmpty() || !Copier.verify(sourcePath, target)){
+            output.append("mv: copy of '" + sourcePath.getFileName() + "' is incomplete, the source was kept\n");
             return output.toString();
         }
-
-        Arrays.stream(args).forEach((e) -> {
-            Path cur = Path.of(e);
-            if(!cur.isAbsolute()){
-                cur = currentDir.resolve(cur);
+        if(move.source.isDirectory()){
+            TreeDeleter deleter = new TreeDeleter("mv", false);
+            deleter.delete(sourcePath);
+            for(String error : deleter.getErrors()){
+                output.append(error + "\n");
             }
-
+        }
+        else{
             try {
-                if(Files.exists(cur)) {
-                    if(Files.isRegularFile(cur)) { // Delete if a regular file
-                        Files.delete(cur);
-                    }
-                    else { // Error if trying to delete a directory
-                        output.append("rm: cannot remove '" + cur.getFileName() + "': is a directory\n");
-                    }
-                }
-                else { // Error if file does not exist
-                    output.append("rm: The system cannot find the file specified: '" + cur.getFileName() + "'\n");
-                }
+                Files.delete(sourcePath);
             }
             catch (IOException ex) {
-                output.append("rm: An error occurred while trying to delete '" + cur.getFileName() + "'\n");
+                output.append("mv: cannot remove '" + sourcePath.getFileName() + "': " + ex.getClass().getSimpleName() + "\n");
             }
-        });
+        }
         return output.toString();
     }
 
     /**
-     * Reads and outputs the contents of the specified files.
+     * Copies files, or whole directory trees when given -r. Runs in the default session.
      *
-     * @param args the names or paths of files to read.
-     * @return the contents of the files as a single string.
+     * @param args the options, the sources and the destination.
      */
-    public String cat(String[] args){
+    public String cp(String[] args){
+        return cp(defaultSession, args);
+    }
+
+    /**
+     * Copies files, or whole directory trees when given -r.
+     * -r (-R, --recursive): copies directories and their contents; the files of a tree are copied in parallel.
+     * -p (--preserve): keeps the permissions and modification times of the sources.
+     * With more than one source, the destination must be a directory.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options, the sources and the destination.
+     */
+    public String cp(Session session, String[] args){
         StringBuilder output = new StringBuilder();
-        if(args.length == 0){ // Error for missing arguments
-            output.append("cat: Invalid number of arguments\n");
-            return output.toString();
-        }
-        Arrays.stream(args).forEach((e) -> {
-            Path cur = Path.of(e);
-            if(!cur.isAbsolute()){
-                cur = currentDir.resolve(cur);
+        boolean recursive = false;
+        boolean preserve = false;
+        int first = 0;
+        for(; first < args.length && args[first].startsWith("-") && args[first].length() > 1; first++){
+            String option = args[first];
+            if(option.equals("--")){
+                first++;
+                break;
             }
-            File file = new File(cur.toAbsolutePath().toString());
-            if(file.exists()){
-                if(file.isDirectory()){ // Error if argument is a directory
-                    output.append("cat: " + file.getName() + ": Is a directory\n");
-                }
-                else{
-                    try {
-                        output.append(Files.readString(cur)); // Append file contents to output
-                        output.append("\n");
-                    } catch (IOException ex) {
-                        output.append("cat: An error occurred, can't read the file: '" + file.getName() + "'\n");
+            else if(option.equals("--recursive")){
+                recursive = true;
+            }
+            else if(option.equals("--preserve")){
+                preserve = true;
+            }
+            else{
+                for(char flag : option.substring(1).toCharArray()){
+                    if(flag == 'r' || flag == 'R'){
+                        recursive = true;
+                    }
+                    else if(flag == 'p'){
+                        preserve = true;
+                    }
+                    else{
+                        output.append("cp: invalid option -- '" + flag + "'\n");
+                        return output.toString();
                     }
                 }
             }
-            else{
-                output.append("cat: " + file.getName() + ": No such file or directory\n");
+        }
+        String[] operands = Arrays.copyOfRange(args, first, args.length);
+        if(operands.length == 0){ // Error for missing file operand
+            output.append("cp: missing file operand\n");
+            return output.toString();
+        }
+        if(operands.length == 1){ // Error for missing destination operand
+            output.append("cp: missing destination file operand after '" + operands[0] + "'\n");
+            return output.toString();
+        }
+
+        Path destPath = session.resolve(operands[operands.length - 1]);
+        FileStat dest = stat(destPath);
+        if(operands.length > 2 && !dest.isDirectory()){
+            output.append("cp: target '" + destPath.getFileName() + "' is not a directory\n");
+            return output.toString();
+        }
+
+        Copier copier = new Copier("cp", preserve);
+        List<Path> targets = new ArrayList<>();
+        for(int i = 0; i < operands.length - 1; i++){
+            Path sourcePath = session.resolve(operands[i]);
+            FileStat source = recursive ? FileStat.ofLink(sourcePath, directoryCache) : stat(sourcePath);
+            if(!source.exists()){
+                output.append("cp: cannot stat '" + sourcePath.getFileName() + "': No such file or directory\n");
+                continue;
             }
-        });
+            if(source.isDirectory() && !recursive){
+                output.append("cp: -r not specified; omitting directory '" + sourcePath.getFileName() + "'\n");
+                continue;
+            }
+            Path target = dest.isDirectory() ? destPath.resolve(sourcePath.getFileName()) : destPath;
+            Path from = sourcePath.toAbsolutePath().normalize();
+            Path to = target.toAbsolutePath().normalize();
+            if(to.equals(from)){
+                output.append("cp: '" + sourcePath.getFileName() + "' and '" + target.getFileName() + "' are the same file\n");
+                continue;
+            }
+            if(source.isDirectory() && to.startsWith(from)){ // The walk would never end
+                output.append("cp: cannot copy a directory, '" + sourcePath.getFileName() + "', into itself, '" + target.getFileName() + "'\n");
+                continue;
+            }
+            copier.copy(sourcePath, source.getAttributes(), target);
+            targets.add(target);
+        }
+        copier.await();
+        for(Path target : targets){
+            changed(target);
+        }
+
+        for(String error : copier.getErrors()){
+            output.append(error + "\n");
+        }
         return output.toString();
     }
 
-
     /**
-     * Writes the specified input string to a file.
+     * Removes specified files if they are regular files, not directories.
+     * Many arguments are removed in parallel.
      *
-     * @param args an array of Strings where:
-     *             - args[0] is the content to write to the file.
-     *             - args[1] is the path of the file to which the content will be written.
-     * @return true if the file is written successfully, false otherwise.
+     * @param args the names or paths of files to delete, optionally preceded by -r, -f and -v.
      */
-    public boolean writeToAFile(String[] args) {
-        // Retrieve the input string from the first argument.
-        String input = args[0];
-
-        // Create a Path object from the second argument for the destination file.
-        Path destPath = Path.of(args[1]);
-
-        // Check if the destination path is not absolute; if so, resolve it against the current directory.
-        if (!destPath.isAbsolute()) {
-            destPath = currentDir.resolve(destPath);
-        }
-
-        try {
-            // Write the input string to the specified file, creating it if it does not exist and truncating it if it does.
-            Files.write(destPath, input.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            System.out.println("File written successfully.");
-            return true; // Return true to indicate successful write operation.
-        } catch (IOException e) {
-            // Handle any IOException that may occur during the write operation.
-            System.out.println("Failed to write to file.");
-            return false; // Return false to indicate failure in the write operation.
+    public String rm(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            rm(args, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
         }
+        return buffer.toString();
     }
 
     /**
-     * Appends the specified input string to a file.
+     * Removes files, or whole directory trees when given -r. Runs in the default session.
      *
-     * @param args an array of Strings where:
-     *             - args[0] is the content to append to the file.
-     *             - args[1] is the path of the file to which the content will be appended.
-     * @return true if the content is appended successfully, false otherwise.
+     * @param args the options followed by the names or paths to remove.
+     * @param out  the sink receiving error messages and reports.
+     * @throws IOException if writing to the sink fails.
      */
-    public boolean appendToAFile(String[] args) {
-        // Retrieve the input string from the first argument.
-        String input = args[0];
-
-        // Create a Path object from the second argument for the destination file.
-        Path destPath = Path.of(args[1]);
-
-        // Check if the destination path is not absolute; if so, resolve it against the current directory.
-        if (!destPath.isAbsolute()) {
-            destPath = currentDir.resolve(destPath);
-        }
+    public void rm(String[] args, OutputSink out) throws IOException {
+        rm(defaultSession, args, out);
+    }
 
-        try {
+    /**
+     * Removes files, or whole directory trees when given -r.
+     * -r: removes directories and their contents, sibling subtrees in parallel; stops at the first error.
+     * -f: ignores missing files and, with -r, keeps going past errors and lists them at the end.
+     * -v: with -r, reports progress every second and the total throughput at the end.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options followed by the names or paths to remove.
+     * @param out  the sink receiving error messages and reports.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void rm(Session session, String[] args, OutputSink out) throws IOException {
+        boolean recursive = false;
+        boolean force = false;
+        boolean verbose = false;
+        int first = 0;
+        for(; first < args.length && args[first].startsWith("-") && args[first].length() > 1; first++){
+            String option = args[first];
+            if(option.equals("--")){
+                first++;
+                break;
+            }
+            else if(option.equals("--recursive")){
+                recursive = true;
+            }
+            else if(option.equals("--force")){
+                force = true;
+            }
+            else if(option.equals("--verbose")){
+                verbose = true;
+            }
+            else{
+                for(char flag : option.substring(1).toCharArray()){
+                    if(flag == 'r' || flag == 'R'){
+                        recursive = true;
+                    }
+                    else if(flag == 'f'){
+                        force = true;
+                    }
+                    else if(flag == 'v'){
+                        verbose = true;
+                    }
+                    else{
+                        out.error("rm: invalid option -- '" + flag + "'\n");
+                        return;
+                    }
+                }
+            }
+        }
+        String[] paths = Arrays.copyOfRange(args, first, args.length);
+        if(paths.length < 1){
+            out.error("rm: too few arguments\n");
+            return;
+        }
+        if(recursive){
+            rmTrees(session, paths, force, verbose, out);
+        }
+        else{
+            printErrors(out, rmFiles(session, paths, force));
+        }
+    }
+
+    /**
+     * Removes regular files in parallel, returning the error messages in argument order.
+     */
+    private String rmFiles(Session session, String[] paths, boolean force){
+        return BulkExecutor.map(paths, (e) -> {
+            Path cur = session.resolve(e);
+            try {
+                FileStat target = stat(cur);
+                if(target.exists()) {
+                    if(target.isRegularFile()) { // Delete if a regular file
+                        Files.delete(cur);
+                        changed(cur);
+                        return "";
+                    }
+                    // Error if trying to delete a directory
+                    return "rm: cannot remove '" + cur.getFileName() + "': is a directory\n";
+                }
+            }
+            catch (NoSuchFileException ex) { // Removed meanwhile by a repeated argument
+            }
+            catch (IOException ex) {
+                return "rm: An error occurred while trying to delete '" + cur.getFileName() + "'\n";
+            }
+            // Error if file does not exist
+            return force ? "" : "rm: The system cannot find the file specified: '" + cur.getFileName() + "'\n";
+        });
+    }
+
+    /**
+     * Removes files and directory trees one argument at a time, each tree with a parallel fork-join walk.
+     */
+    private void rmTrees(Session session, String[] paths, boolean force, boolean verbose, OutputSink out) throws IOException {
+        TreeDeleter deleter = new TreeDeleter("rm", force);
+        long started = System.nanoTime();
+        for(String e : paths){
+            Path cur = session.resolve(e);
+            Path name = cur.getFileName();
+            if(name == null || name.toString().equals(".") || name.toString().equals("..")){ // Never remove the root, '.' or '..'
+                out.error("rm: refusing to remove '" + e + "'\n");
+                continue;
+            }
+
+            FileStat target = FileStat.ofLink(cur, directoryCache); // A link to a directory is removed, not followed
+            if(!target.exists()){
+                if(!force){
+                    out.error("rm: The system cannot find the file specified: '" + name + "'\n");
+                }
+                continue;
+            }
+            if(!target.isDirectory()){
+                deleter.deleteFile(cur);
+            }
+            else{
+                ForkJoinTask<Void> task = deleter.start(cur);
+                while(!task.isDone()){ // Report progress while the tree is being removed
+                    try {
+                        task.get(1, TimeUnit.SECONDS);
+                    }
+                    catch (TimeoutException ex) {
+                        if(verbose){
+                            out.print("rm: removed " + deleter.getFiles() + " files and " + deleter.getDirectories() + " directories so far\n");
+                            out.flush();
+                        }
+                    }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    catch (ExecutionException ex) {
+                        out.error("rm: An error occurred while trying to delete '" + name + "'\n");
+                        break;
+                    }
+                }
+            }
+            changed(cur);
+            if(!force && !deleter.getErrors().isEmpty()){ // Without -f, stop at the first error
+                break;
+            }
+        }
+
+        for(String error : deleter.getErrors()){
+            out.error(error + "\n");
+        }
+        if(verbose){
+            double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
+            long entries = deleter.getFiles() + deleter.getDirectories();
+            out.print(String.format("rm: removed %d files and %d directories in %.2f s (%.0f entries/s)%n",
+                    deleter.getFiles(), deleter.getDirectories(), seconds, entries / seconds));
+        }
+    }
+
+    /**
+     * Reads and outputs the contents of the specified files.
+     *
+     * @param args the names or paths of files to read.
+     * @return the contents of the files as a single string.
+     */
+    public String cat(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            cat(args, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Streams the contents of the specified files into the given sink.
+     * File data is handed over by the {@link ReadEngine}, so the memory used
+     * stays the same no matter how large the files are.
+     *
+     * @param args the names or paths of files to read.
+     * @param out  the sink receiving the file contents and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void cat(String[] args, OutputSink out) throws IOException {
+        cat(args, null, out);
+    }
+
+    /**
+     * Streams the contents of the specified files into the given sink. Runs in the default session.
+     *
+     * @param args the names or paths of files to read.
+     * @param in   the output of the previous pipeline stage, or null if `cat` is not piped.
+     * @param out  the sink receiving the file contents and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void cat(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        cat(defaultSession, args, in, out);
+    }
+
+    /**
+     * Streams the contents of the specified files into the given sink.
+     * Without arguments, copies the output of the previous pipeline stage instead.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the names or paths of files to read.
+     * @param in   the output of the previous pipeline stage, or null if `cat` is not piped.
+     * @param out  the sink receiving the file contents and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void cat(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        if(args.length == 0 && in != null){ // Copy the piped input through
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while(in.read(buffer) != -1){
+                buffer.flip();
+                out.write(buffer);
+                buffer.clear();
+            }
+            return;
+        }
+        if(args.length == 0){ // Error for missing arguments
+            out.error("cat: Invalid number of arguments\n");
+            return;
+        }
+        for(String e : args){
+            Path cur = session.resolve(e);
+            FileStat file = stat(cur);
+            if(file.exists()){
+                if(file.isDirectory()){ // Error if argument is a directory
+                    out.error("cat: " + file.getFileName() + ": Is a directory\n");
+                }
+                else{
+                    try (FileChannel channel = FileChannel.open(cur, StandardOpenOption.READ)) {
+                        readEngine.copy(channel, 0, channel.size(), out); // Stream or map the file straight into the sink
+                        out.print("\n");
+                    } catch (IOException ex) {
+                        out.error("cat: An error occurred, can't read the file: '" + file.getFileName() + "'\n");
+                    }
+                }
+            }
+            else{
+                out.error("cat: " + file.getFileName() + ": No such file or directory\n");
+            }
+        }
+    }
+
+
+    /**
+     * Searches files for the lines matching a pattern.
+     *
+     * @param args the options, the pattern and the files to search.
+     * @return the matching lines, or the counts or file names asked for.
+     */
+    public String grep(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            grep(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Searches files, or the output of the previous pipeline stage, for the lines matching a pattern. Runs in the default session.
+     *
+     * @param args the options, the pattern and the files to search.
+     * @param in   the output of the previous pipeline stage, or null if `grep` is not piped.
+     * @param out  the sink receiving the results and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void grep(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        grep(defaultSession, args, in, out);
+    }
+
+    /**
+     * Searches files, or the output of the previous pipeline stage, for the lines matching a pattern.
+     * Patterns without regex metacharacters are searched as plain text.
+     * -r (-R): searches directories recursively, the current directory when no file is given;
+     *          files are searched in parallel and the output of each file is kept together.
+     * -i: ignores case.
+     * -c: prints only the number of matching lines.
+     * -l: prints only the names of files with a match.
+     * -n: prints the line number before each matching line.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options, the pattern and the files to search.
+     * @param in   the output of the previous pipeline stage, or null if `grep` is not piped.
+     * @param out  the sink receiving the results and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void grep(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        boolean recursive = false;
+        boolean ignoreCase = false;
+        boolean count = false;
+        boolean filesOnly = false;
+        boolean lineNumbers = false;
+        int first = 0;
+        for(; first < args.length && args[first].startsWith("-") && args[first].length() > 1; first++){
+            if(args[first].equals("--")){
+                first++;
+                break;
+            }
+            for(char flag : args[first].substring(1).toCharArray()){
+                switch(flag){
+                    case 'r', 'R' -> recursive = true;
+                    case 'i' -> ignoreCase = true;
+                    case 'c' -> count = true;
+                    case 'l' -> filesOnly = true;
+                    case 'n' -> lineNumbers = true;
+                    default -> {
+                        out.error("grep: invalid option -- '" + flag + "'\n");
+                        return;
+                    }
+                }
+            }
+        }
+        if(first >= args.length){
+            out.error("grep: usage: grep [-r] [-i] [-c] [-l] [-n] pattern [file...]\n");
+            return;
+        }
+        Grep grep;
+        try {
+            grep = new Grep(args[first], ignoreCase, count, filesOnly, lineNumbers, readEngine);
+        } catch (PatternSyntaxException ex) {
+            out.error("grep: invalid pattern: '" + args[first] + "'\n");
+            return;
+        }
+        String[] files = Arrays.copyOfRange(args, first + 1, args.length);
+        if(files.length == 0 && !recursive){
+            if(in != null){ // Search the piped input
+                grep.search(in, null, out);
+            }
+            else{
+                out.error("grep: missing file operand\n");
+            }
+            return;
+        }
+
+        boolean showNames = recursive || files.length > 1 || filesOnly;
+        if(!recursive && files.length == 1){ // A single file is searched straight into the sink
+            FileStat file = stat(session.resolve(files[0]));
+            if(file.isRegularFile()){
+                grepFile(grep, file.getPath(), showNames ? files[0] : null, out);
+                return;
+            }
+        }
+
+        // Search the files in parallel, writing their results out in order as they complete
+        Deque<Future<byte[]>> window = new ArrayDeque<>();
+        int maxPending = 4 * BulkExecutor.pool().getParallelism();
+        for(String e : files.length == 0 ? new String[]{""} : files){
+            FileStat target = stat(e.isEmpty() ? session.getCurrentDir() : session.resolve(e));
+            if(!target.exists()){
+                out.countErrors(1);
+                window.add(CompletableFuture.completedFuture(("grep: " + e + ": No such file or directory\n").getBytes()));
+            }
+            else if(!target.isDirectory()){
+                window.add(submitGrep(grep, target.getPath(), showNames ? e : null, out));
+            }
+            else if(!recursive){
+                out.countErrors(1);
+                window.add(CompletableFuture.completedFuture(("grep: " + e + ": Is a directory\n").getBytes()));
+            }
+            else{
+                Path root = target.getPath();
+                try (Stream<Path> found = Files.find(root, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile())) {
+                    Iterator<Path> paths = found.iterator();
+                    while(paths.hasNext()){
+                        Path path = paths.next();
+                        String relative = root.relativize(path).toString();
+                        window.add(submitGrep(grep, path, e.isEmpty() ? relative : e + "/" + relative, out));
+                        while(window.size() > maxPending){
+                            out.write(ByteBuffer.wrap(awaitGrep(window.poll(), out)));
+                        }
+                    }
+                } catch (IOException | UncheckedIOException ex) {
+                    out.countErrors(1);
+                    window.add(CompletableFuture.completedFuture(("grep: An error occurred while searching '" + e + "'\n").getBytes()));
+                }
+            }
+            while(window.size() > maxPending){
+                out.write(ByteBuffer.wrap(awaitGrep(window.poll(), out)));
+            }
+        }
+        while(!window.isEmpty()){
+            out.write(ByteBuffer.wrap(awaitGrep(window.poll(), out)));
+        }
+    }
+
+    /**
+     * Searches one file into the sink, reporting a file that cannot be read.
+     */
+    private void grepFile(Grep grep, Path path, String label, OutputSink out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            grep.search(channel, label, out);
+        } catch (IOException ex) {
+            out.error("grep: " + path.getFileName() + ": An error occurred, can't read the file\n");
+        }
+    }
+
+    /**
+     * Searches one file on the bulk pool, collecting its results so they can be written out in order.
+     * The bytes read and the errors are counted on the command's sink right away.
+     */
+    private Future<byte[]> submitGrep(Grep grep, Path path, String label, OutputSink parent){
+        return BulkExecutor.pool().submit(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+                grepFile(grep, path, label, out);
+                parent.countRead(out.getBytesRead());
+                parent.countErrors(out.getErrors());
+            }
+            return buffer.toByteArray();
+        });
+    }
+
+    /**
+     * Waits for the results of one file, counting a search that failed as an error.
+     */
+    private static byte[] awaitGrep(Future<byte[]> result, OutputSink out){
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new byte[0];
+        } catch (ExecutionException ex) {
+            out.countErrors(1);
+            return ("grep: " + ex.getCause().getMessage() + "\n").getBytes();
+        }
+    }
+
+    /**
+     * Counts the lines, words and bytes of files.
+     *
+     * @param args the options and the files to count.
+     * @return one line of counts per file, and a total when there are several files.
+     */
+    public String wc(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            wc(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Counts the lines, words and bytes of files, or of the output of the previous pipeline stage. Runs in the default session.
+     *
+     * @param args the options and the files to count.
+     * @param in   the output of the previous pipeline stage, or null if `wc` is not piped.
+     * @param out  the sink receiving the counts and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void wc(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        wc(defaultSession, args, in, out);
+    }
+
+    /**
+     * Counts the lines, words and bytes of files, or of the output of the previous pipeline stage.
+     * Large files are counted in parallel chunks, with SIMD compares when the Vector API is available.
+     * -l: prints the number of lines.
+     * -w: prints the number of words.
+     * -c: prints the number of bytes, which needs no reading at all when it is the only count asked for.
+     * Without options, prints all three.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options and the files to count.
+     * @param in   the output of the previous pipeline stage, or null if `wc` is not piped.
+     * @param out  the sink receiving the counts and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void wc(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        boolean lines = false;
+        boolean words = false;
+        boolean bytes = false;
+        int first = 0;
+        for(; first < args.length && args[first].startsWith("-") && args[first].length() > 1; first++){
+            for(char flag : args[first].substring(1).toCharArray()){
+                switch(flag){
+                    case 'l' -> lines = true;
+                    case 'w' -> words = true;
+                    case 'c' -> bytes = true;
+                    default -> {
+                        out.error("wc: invalid option -- '" + flag + "'\n");
+                        return;
+                    }
+                }
+            }
+        }
+        if(!lines && !words && !bytes){
+            lines = words = bytes = true;
+        }
+        WordCounter counter = new WordCounter(words, readEngine);
+        String[] files = Arrays.copyOfRange(args, first, args.length);
+        if(files.length == 0){
+            if(in != null){ // Count the piped input
+                out.print(formatCounts(counter.count(in), lines, words, bytes) + "\n");
+            }
+            else{
+                out.error("wc: missing file operand\n");
+            }
+            return;
+        }
+
+        long totalLines = 0;
+        long totalWords = 0;
+        long totalBytes = 0;
+        for(String e : files){
+            FileStat file = stat(session.resolve(e));
+            if(!file.exists()){
+                out.error("wc: " + e + ": No such file or directory\n");
+                continue;
+            }
+            if(file.isDirectory()){
+                out.error("wc: " + e + ": Is a directory\n");
+                continue;
+            }
+            WordCounter.Tally tally;
+            if(!lines && !words){ // The size is already known
+                tally = new WordCounter.Tally(file.getAttributes().size());
+            }
+            else{
+                try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+                    tally = counter.count(channel);
+                    out.countRead(tally.getBytes());
+                } catch (IOException ex) {
+                    out.error("wc: " + e + ": An error occurred, can't read the file\n");
+                    continue;
+                }
+            }
+            totalLines += tally.getLines();
+            totalWords += tally.getWords();
+            totalBytes += tally.getBytes();
+            out.print(formatCounts(tally, lines, words, bytes) + " " + e + "\n");
+        }
+        if(files.length > 1){
+            out.print(formatCounts(new WordCounter.Tally(totalLines, totalWords, totalBytes), lines, words, bytes) + " total\n");
+        }
+    }
+
+    /**
+     * Formats the counts asked for, in the order lines, words, bytes.
+     */
+    private static String formatCounts(WordCounter.Tally tally, boolean lines, boolean words, boolean bytes){
+        StringBuilder output = new StringBuilder();
+        if(lines){
+            output.append(tally.getLines());
+        }
+        if(words){
+            output.append(output.length() > 0 ? " " : "").append(tally.getWords());
+        }
+        if(bytes){
+            output.append(output.length() > 0 ? " " : "").append(tally.getBytes());
+        }
+        return output.toString();
+    }
+
+    /**
+     * Prints the first lines or bytes of files.
+     *
+     * @param args the options and the files to read.
+     * @return the first 10 lines of each file, or the amount asked for.
+     */
+    public String head(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            head(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Prints the first lines or bytes of files, or of the output of the previous pipeline stage. Runs in the default session.
+     *
+     * @param args the options and the files to read.
+     * @param in   the output of the previous pipeline stage, or null if `head` is not piped.
+     * @param out  the sink receiving the data and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void head(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        head(defaultSession, args, in, out);
+    }
+
+    /**
+     * Prints the first lines or bytes of files, or of the output of the previous pipeline stage.
+     * Reading stops as soon as enough has been printed, which also stops the stages feeding `head`.
+     * -n N: prints the first N lines, 10 by default.
+     * -c N: prints the first N bytes.
+     * When there are several files, each one is preceded by a header with its name.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options and the files to read.
+     * @param in   the output of the previous pipeline stage, or null if `head` is not piped.
+     * @param out  the sink receiving the data and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void head(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        Extent extent = parseExtent("head", args, false, out);
+        if(extent == null){
+            return;
+        }
+        if(extent.files.isEmpty()){
+            if(in != null){
+                copyFirst(in, extent.count, extent.lines, out);
+            }
+            else{
+                out.error("head: missing file operand\n");
+            }
+            return;
+        }
+        for(int i = 0; i < extent.files.size(); i++){
+            String e = extent.files.get(i);
+            FileStat file = stat(session.resolve(e));
+            if(!checkReadable("head", e, file, out)){
+                continue;
+            }
+            if(extent.files.size() > 1){
+                out.print((i > 0 ? "\n" : "") + "==> " + e + " <==\n");
+            }
+            try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+                if(extent.lines){
+                    copyFirst(channel, extent.count, true, out);
+                    out.countRead(channel.position());
+                }
+                else{
+                    readEngine.copy(channel, 0, Math.min(extent.count, channel.size()), out);
+                }
+            } catch (IOException ex) {
+                out.error("head: " + e + ": An error occurred, can't read the file\n");
+            }
+        }
+    }
+
+    /**
+     * Prints the last lines or bytes of files.
+     *
+     * @param args the options and the files to read.
+     * @return the last 10 lines of each file, or the amount asked for.
+     */
+    public String tail(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            tail(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Prints the last lines or bytes of files, or of the output of the previous pipeline stage. Runs in the default session.
+     *
+     * @param args the options and the files to read.
+     * @param in   the output of the previous pipeline stage, or null if `tail` is not piped.
+     * @param out  the sink receiving the data and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void tail(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        tail(defaultSession, args, in, out);
+    }
+
+    /**
+     * Prints the last lines or bytes of files, or of the output of the previous pipeline stage.
+     * Files are read backwards from the end, so only the part that is printed is read.
+     * -n N: prints the last N lines, 10 by default.
+     * -c N: prints the last N bytes.
+     * -f: keeps printing what is appended to the file until interrupted, following it when it is
+     *     replaced by a new file of the same name, as log rotation does. Needs exactly one file.
+     * When there are several files, each one is preceded by a header with its name.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options and the files to read.
+     * @param in   the output of the previous pipeline stage, or null if `tail` is not piped.
+     * @param out  the sink receiving the data and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void tail(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        Extent extent = parseExtent("tail", args, true, out);
+        if(extent == null){
+            return;
+        }
+        if(extent.files.isEmpty()){
+            if(in != null){ // Piped input cannot be followed, so -f is ignored like other tails do
+                Tail.copyLast(in, extent.count, extent.lines, out);
+            }
+            else{
+                out.error("tail: missing file operand\n");
+            }
+            return;
+        }
+        if(extent.follow && extent.files.size() > 1){
+            out.error("tail: option -f needs exactly one file\n");
+            return;
+        }
+        for(int i = 0; i < extent.files.size(); i++){
+            String e = extent.files.get(i);
+            FileStat file = stat(session.resolve(e));
+            if(!checkReadable("tail", e, file, out)){
+                continue;
+            }
+            if(extent.files.size() > 1){
+                out.print((i > 0 ? "\n" : "") + "==> " + e + " <==\n");
+            }
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+            } catch (IOException ex) {
+                out.error("tail: " + e + ": An error occurred, can't read the file\n");
+                continue;
+            }
+            long size;
+            try {
+                size = channel.size();
+                long start = extent.lines ? Tail.lastLinesStart(channel, extent.count) : Math.max(0, size - extent.count);
+                readEngine.copy(channel, start, size - start, out);
+            } catch (IOException ex) {
+                channel.close();
+                out.error("tail: " + e + ": An error occurred, can't read the file\n");
+                continue;
+            }
+            if(extent.follow){
+                out.flush();
+                new Tail(file.getPath(), e, channel, size, readEngine).follow(out); // Closes the channel
+            }
+            else{
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The options of `head` and `tail`: how much to print, and the files to read.
+     */
+    private static class Extent {
+        long count = 10;
+        boolean lines = true;
+        boolean follow;
+        List<String> files = new ArrayList<>();
+    }
+
+    /**
+     * Parses the options of `head` or `tail`, printing an error and returning null if they are not valid.
+     */
+    private static Extent parseExtent(String command, String[] args, boolean followAllowed, OutputSink out) throws IOException {
+        Extent extent = new Extent();
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(arg.startsWith("-n") || arg.startsWith("-c")){
+                extent.lines = arg.charAt(1) == 'n';
+                String value = arg.length() > 2 ? arg.substring(2) : (i + 1 < args.length ? args[++i] : "");
+                try {
+                    extent.count = Long.parseLong(value);
+                } catch (NumberFormatException ex) {
+                    extent.count = -1;
+                }
+                if(extent.count < 0){
+                    out.error(command + ": invalid number of " + (extent.lines ? "lines" : "bytes") + ": '" + value + "'\n");
+                    return null;
+                }
+            }
+            else if(arg.equals("-f") && followAllowed){
+                extent.follow = true;
+            }
+            else if(arg.startsWith("-") && arg.length() > 1){
+                out.error(command + ": invalid option -- '" + arg.charAt(1) + "'\n");
+                return null;
+            }
+            else{
+                extent.files.add(arg);
+            }
+        }
+        return extent;
+    }
+
+    /**
+     * Prints an error and returns false if a file operand is missing or a directory.
+     */
+    private static boolean checkReadable(String command, String operand, FileStat file, OutputSink out) throws IOException {
+        if(!file.exists()){
+            out.error(command + ": " + operand + ": No such file or directory\n");
+            return false;
+        }
+        if(file.isDirectory()){
+            out.error(command + ": " + operand + ": Is a directory\n");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the first lines or bytes of a channel into the sink, reading no further than the block holding the last one.
+     */
+    private static void copyFirst(ReadableByteChannel in, long count, boolean lines, OutputSink out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long left = count;
+        while(left > 0){
+            buffer.clear();
+            if(!lines){
+                buffer.limit((int) Math.min(buffer.capacity(), left));
+            }
+            if(in.read(buffer) == -1){
+                break;
+            }
+            buffer.flip();
+            if(lines){
+                for(int i = 0; i < buffer.limit(); i++){
+                    if(buffer.get(i) == '\n' && --left == 0){
+                        buffer.limit(i + 1);
+                        break;
+                    }
+                }
+            }
+            else{
+                left -= buffer.remaining();
+            }
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Sorts the lines of files.
+     *
+     * @param args the options and the files to sort.
+     * @return the sorted lines.
+     */
+    public String sort(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            sort(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Sorts the lines of files, or of the output of the previous pipeline stage, comparing bytes like
+     * `sort` does in the C locale. Runs in the default session.
+     *
+     * @param args the options and the files to sort.
+     * @param in   the output of the previous pipeline stage, or null if `sort` is not piped.
+     * @param out  the sink receiving the sorted lines and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void sort(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        sort(defaultSession, args, in, out);
+    }
+
+    /**
+     * Sorts the lines of files, or of the output of the previous pipeline stage, comparing bytes like
+     * `sort` does in the C locale. Input that fits within the memory budget is sorted in memory in
+     * parallel; larger input is sorted in runs written to temporary files, which are then merged.
+     * -r: sorts in descending order.
+     * -n: compares the keys as numbers.
+     * -u: prints only the first of the lines whose keys are equal.
+     * -k N[,M]: uses fields N to M, separated by blanks, as the key, instead of the whole line.
+     * -S size: the memory budget, such as 512M; a quarter of the heap by default, or the cli.sort.memory property.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options and the files to sort.
+     * @param in   the output of the previous pipeline stage, or null if `sort` is not piped.
+     * @param out  the sink receiving the sorted lines and any error messages.
+     * @throws IOException if reading the piped input or writing to the sink fails.
+     */
+    public void sort(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        boolean reverse = false;
+        boolean numeric = false;
+        boolean unique = false;
+        int firstField = 0;
+        int lastField = 0;
+        long budget;
+        try {
+            budget = Sorter.defaultBudget();
+        } catch (IllegalArgumentException ex) {
+            out.error("sort: invalid buffer size '" + System.getProperty("cli.sort.memory") + "'\n");
+            return;
+        }
+        List<String> files = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(arg.startsWith("-k") || arg.startsWith("-S")){
+                String value = arg.length() > 2 ? arg.substring(2) : (i + 1 < args.length ? args[++i] : "");
+                try {
+                    if(arg.startsWith("-S")){
+                        budget = Sorter.parseBudget(value);
+                    }
+                    else{
+                        String[] fields = value.split(",", 2);
+                        firstField = Integer.parseInt(fields[0]);
+                        lastField = fields.length > 1 ? Integer.parseInt(fields[1]) : 0;
+                        if(firstField < 1 || (fields.length > 1 && lastField < firstField)){
+                            throw new IllegalArgumentException(value);
+                        }
+                    }
+                } catch (IllegalArgumentException ex) {
+                    out.error(arg.startsWith("-S") ? "sort: invalid buffer size '" + value + "'\n"
+                            : "sort: invalid field specification '" + value + "'\n");
+                    return;
+                }
+            }
+            else if(arg.startsWith("-") && arg.length() > 1){
+                for(char flag : arg.substring(1).toCharArray()){
+                    switch(flag){
+                        case 'r' -> reverse = true;
+                        case 'n' -> numeric = true;
+                        case 'u' -> unique = true;
+                        default -> {
+                            out.error("sort: invalid option -- '" + flag + "'\n");
+                            return;
+                        }
+                    }
+                }
+            }
+            else{
+                files.add(arg);
+            }
+        }
+        if(files.isEmpty() && in == null){
+            out.error("sort: missing file operand\n");
+            return;
+        }
+
+        try (Sorter sorter = new Sorter(reverse, numeric, unique, firstField, lastField, budget)) {
+            if(files.isEmpty()){
+                sorter.addAll(in);
+            }
+            for(String e : files){
+                FileStat file = stat(session.resolve(e));
+                if(!checkReadable("sort", e, file, out)){
+                    return;
+                }
+                FileChannel channel;
+                try {
+                    channel = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+                } catch (IOException ex) {
+                    out.error("sort: " + e + ": An error occurred, can't read the file\n");
+                    return;
+                }
+                try (channel) {
+                    sorter.addAll(channel);
+                    out.countRead(channel.position());
+                }
+            }
+            sorter.finish(out);
+        }
+    }
+
+    /**
+     * Searches directory trees for entries passing every test given.
+     *
+     * @param args the starting points followed by the tests.
+     * @return the matching paths, one per line.
+     */
+    public String find(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            find(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Searches directory trees for entries passing every test given, walking subdirectories in parallel
+     * and printing the matches as they are found. Runs in the default session.
+     *
+     * @param args the starting points followed by the tests.
+     * @param in   unused, `find` does not read piped input.
+     * @param out  the sink receiving the matching paths and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void find(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        find(defaultSession, args, in, out);
+    }
+
+    /**
+     * Searches directory trees for entries passing every test given, walking subdirectories in parallel
+     * and printing the matches as they are found, so their order is not sorted.
+     * The starting points come first and default to the current directory.
+     * -name glob: the file name matches the glob.
+     * -type f|d|l: the entry is a regular file, a directory or a symbolic link.
+     * -size [+-]N[ckMG]: the size is N, more than N or less than N units (512-byte blocks without a suffix).
+     * -mtime [+-]N: the last modification was N, more than N or less than N whole days ago.
+     * -maxdepth N: descends at most N levels below the starting points.
+     * -size and -mtime may be given more than once to test a range.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the starting points followed by the tests.
+     * @param in   unused, `find` does not read piped input.
+     * @param out  the sink receiving the matching paths and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void find(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        int first = 0;
+        while(first < args.length && !(args[first].startsWith("-") && args[first].length() > 1)){
+            first++;
+        }
+        String[] roots = first == 0 ? new String[]{"."} : Arrays.copyOfRange(args, 0, first);
+
+        PathMatcher name = null;
+        char type = 0;
+        LongPredicate size = null;
+        LongPredicate days = null;
+        int maxDepth = Integer.MAX_VALUE;
+        for(int i = first; i < args.length; i += 2){
+            String test = args[i];
+            if(!test.equals("-name") && !test.equals("-type") && !test.equals("-size")
+                    && !test.equals("-mtime") && !test.equals("-maxdepth")){
+                out.error("find: unknown predicate '" + test + "'\n");
+                return;
+            }
+            if(i + 1 >= args.length){
+                out.error("find: missing argument to '" + test + "'\n");
+                return;
+            }
+            String value = args[i + 1];
+            try {
+                switch(test){
+                    case "-name" -> name = FileSystems.getDefault().getPathMatcher("glob:" + value);
+                    case "-type" -> {
+                        if(!value.equals("f") && !value.equals("d") && !value.equals("l")){
+                            throw new IllegalArgumentException(value);
+                        }
+                        type = value.charAt(0);
+                    }
+                    case "-size" -> size = size == null ? TreeFinder.parseSize(value) : size.and(TreeFinder.parseSize(value));
+                    case "-mtime" -> days = days == null ? TreeFinder.parseDays(value) : days.and(TreeFinder.parseDays(value));
+                    default -> {
+                        maxDepth = Integer.parseInt(value);
+                        if(maxDepth < 0){
+                            throw new IllegalArgumentException(value);
+                        }
+                    }
+                }
+            } catch (IllegalArgumentException ex) {
+                out.error("find: invalid argument '" + value + "' to '" + test + "'\n");
+                return;
+            }
+        }
+
+        for(String e : roots){
+            new TreeFinder(name, type, size, days, maxDepth).find(session.resolve(e), e, out);
+        }
+    }
+
+    /**
+     * Prints the total size of the files in directory trees.
+     *
+     * @param args the options and the directories to sum.
+     * @return the totals, one directory per line.
+     */
+    public String du(String[] args){
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            du(args, null, out);
+        } catch (IOException ignored) { // Writing to memory does not fail
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Prints the total size of the files in directory trees, in kibibytes, for every directory
+     * and the directories below it. Runs in the default session.
+     *
+     * @param args the options and the directories to sum, the current directory if none is given.
+     * @param in   unused, `du` does not read piped input.
+     * @param out  the sink receiving the totals and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void du(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        du(defaultSession, args, in, out);
+    }
+
+    /**
+     * Prints the total size of the files in directory trees, in kibibytes, for every directory
+     * and the directories below it. Subtrees are summed in parallel.
+     * -s: prints only the total of each operand.
+     * -h: prints sizes like 1.5K, 20M or 3.0G.
+     * -d N: prints directories at most N levels below the operands.
+     * --cache: reuses the totals of directories that have not been modified since the last `du --cache`.
+     *          A file rewritten in place does not modify its directory, so its new size can be missed.
+     *
+     * @param session the session whose working directory the command runs in.
+     * @param args the options and the directories to sum, the current directory if none is given.
+     * @param in   unused, `du` does not read piped input.
+     * @param out  the sink receiving the totals and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void du(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+        boolean human = false;
+        boolean useCache = false;
+        int maxDepth = Integer.MAX_VALUE;
+        List<String> operands = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(arg.equals("--cache")){
+                useCache = true;
+            }
+            else if(arg.startsWith("-d")){
+                String value = arg.length() > 2 ? arg.substring(2) : (i + 1 < args.length ? args[++i] : "");
+                try {
+                    maxDepth = Integer.parseInt(value);
+                } catch (NumberFormatException ex) {
+                    maxDepth = -1;
+                }
+                if(maxDepth < 0){
+                    out.error("du: invalid maximum depth '" + value + "'\n");
+                    return;
+                }
+            }
+            else if(arg.startsWith("-") && arg.length() > 1){
+                for(char flag : arg.substring(1).toCharArray()){
+                    switch(flag){
+                        case 's' -> maxDepth = 0;
+                        case 'h' -> human = true;
+                        default -> {
+                            out.error("du: invalid option -- '" + flag + "'\n");
+                            return;
+                        }
+                    }
+                }
+            }
+            else{
+                operands.add(arg);
+            }
+        }
+        if(operands.isEmpty()){
+            operands.add(".");
+        }
+
+        DiskUsageCache cache = useCache ? new DiskUsageCache(DiskUsageCache.defaultFile()) : null;
+        DiskUsage usage = new DiskUsage(maxDepth, human, cache);
+        for(String e : operands){
+            usage.print(session.resolve(e), e, out);
+        }
+        if(cache != null){
+            try {
+                cache.save();
+            } catch (IOException ex) {
+                out.error("du: cannot write the cache: " + ex.getMessage() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the specified input string to a file. Runs in the default session.
+     *
+     * @param args an array of Strings where:
+     *             - args[0] is the content to write to the file.
+     *             - args[1] is the path of the file to which the content will be written.
+     * @return true if the file is written successfully, false otherwise.
+     */
+    public boolean writeToAFile(String[] args) {
+        return writeToAFile(defaultSession, args);
+    }
+
+    /**
+     * Writes the specified input string to a file.
+     *
+     * @param session the session to run in.
+     * @param args an array of Strings where:
+     *             - args[0] is the content to write to the file.
+     *             - args[1] is the path of the file to which the content will be written.
+     * @return true if the file is written successfully, false otherwise.
+     */
+    public boolean writeToAFile(Session session, String[] args) {
+        // Retrieve the input string from the first argument.
+        String input = args[0];
+
+        // Resolve the destination against the current directory unless it is absolute.
+        Path destPath = session.resolve(args[1]);
+
+        try (OutputSink out = OutputSink.toFile(destPath, false)) {
+            // Write the input string to the specified file, creating it if it does not exist and truncating it if it does.
+            out.print(input);
+            status(session, "File written successfully.\n");
+            return true; // Return true to indicate successful write operation.
+        } catch (IOException e) {
+            // Handle any IOException that may occur during the write operation.
+            status(session, "Failed to write to file.\n");
+            return false; // Return false to indicate failure in the write operation.
+        }
+    }
+
+    /**
+     * Appends the specified input string to a file. Runs in the default session.
+     *
+     * @param args an array of Strings where:
+     *             - args[0] is the content to append to the file.
+     *             - args[1] is the path of the file to which the content will be appended.
+     * @return true if the content is appended successfully, false otherwise.
+     */
+    public boolean appendToAFile(String[] args) {
+        return appendToAFile(defaultSession, args);
+    }
+
+    /**
+     * Appends the specified input string to a file.
+     *
+     * @param session the session to run in.
+     * @param args an array of Strings where:
+     *             - args[0] is the content to append to the file.
+     *             - args[1] is the path of the file to which the content will be appended.
+     * @return true if the content is appended successfully, false otherwise.
+     */
+    public boolean appendToAFile(Session session, String[] args) {
+        // Retrieve the input string from the first argument.
+        String input = args[0];
+
+        // Resolve the destination against the current directory unless it is absolute.
+        Path destPath = session.resolve(args[1]);
+
+        try (OutputSink out = OutputSink.toFile(destPath, true)) {
             // Append the input string to the specified file, creating it if it does not exist.
-            Files.write(destPath, input.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            System.out.println("Content appended to file successfully.");
+            out.print(input);
+            status(session, "Content appended to file successfully.\n");
             return true; // Return true to indicate successful append operation.
         } catch (IOException e) {
             // Handle any IOException that may occur during the append operation.
-            System.out.println("Failed to append to file.");
+            status(session, "Failed to append to file.\n");
             return false; // Return false to indicate failure in the append operation.
         }
     }
 
 
 
+    /**
+     * Prints the calls, errors, bytes read and written and latency percentiles of every command that ran.
+     * --reset: clears them instead.
+     *
+     * @param args no arguments, or --reset.
+     */
+    public String stats(String[] args){
+        StringBuilder output = new StringBuilder();
+        if(args.length == 0){
+            output.append(instrumentation.report());
+        }
+        else if(args.length == 1 && args[0].equals("--reset")){
+            instrumentation.reset();
+        }
+        else{
+            output.append("stats: usage: stats [--reset]\n");
+        }
+        return output.toString();
+    }
+
+    /**
+     * Returns the measurements of the commands this terminal ran, for example to register them with JMX.
+     *
+     * @return the instrumentation.
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Controls the directory cache, which keeps listings and attributes of recently used directories
+     * so `ls` and the existence checks of `cd`, `mkdir` and `rm` do not go back to the filesystem.
+     * on [MB]: turns the cache on, optionally with a memory cap in megabytes (64 by default).
+     * off: turns the cache off and drops everything in it.
+     * stats: prints the hit and miss counters.
+     * clear: drops everything in the cache and resets the counters.
+     *
+     * @param args the subcommand and its argument.
+     */
+    public synchronized String cache(String[] args){
+        StringBuilder output = new StringBuilder();
+        String usage = "cache: usage: cache on [MB] | off | stats | clear\n";
+        if(args.length < 1 || args.length > 2 || (args.length == 2 && !args[0].equals("on"))){
+            output.append(usage);
+            return output.toString();
+        }
+        switch(args[0]){
+            case "on" -> {
+                long size = DEFAULT_CACHE_SIZE;
+                if(args.length == 2){
+                    try {
+                        size = Long.parseLong(args[1]) * 1024 * 1024;
+                    } catch (NumberFormatException ex) {
+                        size = 0;
+                    }
+                    if(size <= 0){
+                        output.append("cache: invalid size: '" + args[1] + "'\n");
+                        return output.toString();
+                    }
+                }
+                closeCache();
+                directoryCache = new DirectoryCache(size);
+            }
+            case "off" -> closeCache();
+            case "stats" -> output.append(directoryCache == null ? "cache: off\n" : directoryCache.stats());
+            case "clear" -> {
+                if(directoryCache != null){
+                    directoryCache.clear();
+                }
+            }
+            default -> output.append(usage);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Turns the directory cache off, releasing its watch service. Owners of short-lived terminals,
+     * such as daemon sessions, call it when they are done with the terminal.
+     */
+    public synchronized void closeCache(){
+        if(directoryCache != null){
+            try {
+                directoryCache.close();
+            } catch (IOException ignored) { // Only stops the watch service
+            }
+            directoryCache = null;
+        }
+    }
+
+    /**
+     * Prints the status of `>` and `>>` run outside of a command line to the output of the session, if it has one.
+     */
+    private static void status(Session session, String message){
+        OutputSink out = session.getOut();
+        if(out == null){
+            return;
+        }
+        try {
+            out.print(message);
+            out.flush();
+        } catch (IOException ignored) { // The status is informational
+        }
+    }
+
+    /**
+     * Reads the attributes of a path once, following links, from the directory cache when its parent is cached.
+     */
+    private FileStat stat(Path path){
+        return FileStat.of(path, directoryCache);
+    }
+
+    /**
+     * Drops a path that this terminal just created, changed or removed, and its parent, from the directory cache.
+     */
+    private void changed(Path path){
+        DirectoryCache cache = directoryCache;
+        if(cache != null){
+            Path absolute = path.toAbsolutePath().normalize();
+            cache.invalidateTree(absolute);
+            if(absolute.getParent() != null){
+                cache.invalidate(absolute.getParent());
+            }
+        }
+    }
+
     /**
      * Prints the list of supported commands and their descriptions.
      */
@@ -401,55 +2112,113 @@ public class Terminal {
         output.append("3.cd       -> changes the current working directory");
         output.append("4.ls       -> lists the contents of the current directory");
         output.append("5.ls -a    -> lists all contents even entries starting with .(hidden files)");
-        output.append("6.ls -r    -> lists the contents of the current directory in reverse order");
+        output.append("6.ls -r    -> lists the contents of the current directory in reverse order (also -l, -t, -S, -1, -U, --top=N)");
         output.append("7.mkdir    -> creates a new directory");
-        output.append("8.rmdir    -> removes an empty directory");
+        output.append("8.rmdir    -> removes an empty directory (-p also removes its empty parents)");
         output.append("9.touch    -> creates a new file");
-        output.append("10.mv      -> command is used to move or rename files and directories from one location to another in a file system.");
-        output.append("11.rm      -> removes a file");
+        output.append("10.mv      -> command is used to move or rename files and directories from one location to another in a file system, also across filesystems and several files into a directory at once.");
+        output.append("11.rm      -> removes a file (-r removes a directory and its contents, -f ignores errors)");
         output.append("12.cat     -> prints the contents of a file");
         output.append("13.>       -> Redirects the output of the first command to be written to a file. If the file does not exist, it will be created. If the file exits, its original content will be replaced.");
         output.append("14.>>      -> Redirects the output of the first command to be written to a file. If the file does not exist, it will be created. If the file exits, it appends to the file.");
-        output.append("15.exit    -> exits the terminal");
+        output.append("15.cache   -> turns the directory cache on or off, or prints its hit and miss counters (cache on [MB] | off | stats | clear)");
+        output.append("16.cp      -> copies files (-r copies directories and their contents, -p keeps permissions and times)");
+        output.append("17.grep    -> prints the lines of files matching a pattern (-r searches directories, -i ignores case, -c counts, -l lists files, -n numbers lines)");
+        output.append("18.wc      -> prints the number of lines, words and bytes of files (-l lines, -w words, -c bytes)");
+        output.append("19.find    -> searches directory trees for files (-name glob, -type f|d|l, -size [+-]N[ckMG], -mtime [+-]N, -maxdepth N)");
+        output.append("20.du      -> prints the disk usage of directories (-s totals only, -h human-readable sizes, -d N depth, --cache reuses unchanged totals)");
+        output.append("21.head    -> prints the first lines of files (-n N lines, -c N bytes)");
+        output.append("22.tail    -> prints the last lines of files (-n N lines, -c N bytes, -f follows appended data)");
+        output.append("23.sort    -> sorts the lines of files (-r reverse, -n numeric, -u unique, -k N[,M] key fields, -S size memory budget)");
+        output.append("24.stats   -> prints the calls, errors, bytes and latency percentiles of every command (--reset clears them)");
+        output.append("25.exit    -> exits the terminal");
 
        return output.toString();
     }
     /**
-     * Exits the terminal program.
+     * Ends the session, flushing any output still buffered; scripts and the interface stop before their next line.
      */
-    private void exit(){
-        System.out.println("exiting...");
-        System.exit(0);
+    private void exit(Session session, OutputSink out) throws IOException {
+        out.print("exiting...\n");
+        out.flush();
+        session.exit();
     }
 
     /**
-     * Retrieves the current working directory as a string.
+     * Retrieves the current working directory of the default session as a string.
      *
      * @return the absolute path of the current working directory.
      */
     public String getCurrentDir() {
-        return currentDir.toAbsolutePath().toString();
+        return defaultSession.getCurrentDir().toString();
     }
 
-
+    /**
+     * Returns the default session, which the methods without a session run in.
+     *
+     * @return the default session.
+     */
+    public Session getDefaultSession() {
+        return defaultSession;
+    }
 
     /**
      * Prints the prompt of the terminal, which is the current directory
      */
-    private void showPrompt() {
-        System.out.print(getCurrentDir() + " > ");
+    private void showPrompt(Session session, OutputSink out) throws IOException {
+        out.print(session.getCurrentDir() + " > ");
+        out.flush();
+    }
+
+
+    /**
+     * Parses a command line and runs it, including `;`-separated statements, pipelines and redirection. Runs in the default session.
+     *
+     * @param line the command line typed by the user.
+     * @param out  the sink receiving the output, and the redirection status messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void execute(String line, OutputSink out) throws IOException {
+        execute(defaultSession, line, out);
     }
 
+    /**
+     * Parses a command line and runs it, including `;`-separated statements, pipelines and redirection.
+     *
+     * @param session the session running the command line.
+     * @param line the command line typed by the user.
+     * @param out  the sink receiving the output, and the redirection status messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void execute(Session session, String line, OutputSink out) throws IOException {
+        if(line.indexOf(';') < 0){ // Single statement, nothing to split
+            executeStatement(session, line, out);
+            return;
+        }
+        for(String statement : Parser.splitStatements(line)){
+            if(session.isExited()){
+                return;
+            }
+            executeStatement(session, statement, out);
+        }
+    }
 
     /**
-     * Simple function takes the command and choose the proper function
+     * Parses and runs a single statement, which may be a pipeline with redirection.
      */
-    private void execute(String command , String[] args){
-        String output = "";
+    private void executeStatement(Session session, String line, OutputSink out) throws IOException {
+        Parser parser = session.getParser();
+        if(!parser.parse(line)){
+            if(parser.getError() != null){
+                out.print(parser.getError() + "\n");
+            }
+            return;
+        }
+        int last = parser.getStageCount() - 1;
+        String[] args = parser.getArguments(last);
         boolean writeToAFile = false;
         boolean appendToAFile = false;
         String targetFile = "";
-        boolean isPipe = false;
         if(args.length >= 2 && (args[args.length-2].equals(">"))){
             writeToAFile = true;
             targetFile = args[args.length-1];
@@ -461,70 +2230,167 @@ public class Terminal {
             appendToAFile = true;
         }
 
-
-        if(command.equals("help")){
-            output = help();
-        }
-        else if(command.equals("pwd")){
-            output = pwd();
-        }
-        else if(command.equals("cd")){
-            output = cd(args);
-        }
-        else if(command.equals("ls")){
-            output =ls(args);
-        }
-        else if(command.equals("mkdir")){
-            output = mkdir(args);
-        }
-        else if(command.equals("rmdir")){
-            output = rmdir(args);
-        }
-        else if(command.equals("touch")){
-            output = touch(args);
-        }
-        else if(command.equals("mv")){
-            output = mv(args);
-        }
-        else if(command.equals("rm")){
-            output = rm(args);
-        }
-        else if(command.equals("cat")){
-            output = cat(args);
+        Pipeline pipeline = new Pipeline(session);
+        for(int i = 0; i < last; i++){
+            pipeline.add(lookup(parser.getCommand(i)), parser.getArguments(i));
         }
-        else if(command.equals("exit")){
-            exit();
+        pipeline.add(lookup(parser.getCommand(last)), args);
+
+        if(writeToAFile || appendToAFile){ // Open the target once and stream the output into it
+            Path destPath = session.resolve(targetFile);
+            try (OutputSink file = OutputSink.toFile(destPath, appendToAFile)) {
+                pipeline.run(file);
+            } catch (IOException e) {
+                changed(destPath);
+                out.print(writeToAFile ? "Failed to write to file.\n" : "Failed to append to file.\n");
+                return;
+            }
+            changed(destPath);
+            out.print(writeToAFile ? "File written successfully.\n" : "Content appended to file successfully.\n");
         }
         else{
-            output = "'" + command + "' is not recognized as an internal or external command\n";
+            pipeline.run(out);
         }
+    }
 
-        if(writeToAFile){
-            writeToAFile(new String[]{output , targetFile});
-        }
-        else if(appendToAFile){
-            appendToAFile(new String[]{output , targetFile});
+    /**
+     * Finds the command with the given name, or one reporting that the name is not recognized.
+     */
+    private Command lookup(String command) {
+        Command cmd = commands.lookup(command);
+        if(cmd == null){
+            return (args, in, out) -> out.print("'" + command + "' is not recognized as an internal or external command\n");
         }
-        else{
-            System.out.print(output);
+        return cmd;
+    }
+
+    /**
+     * Registers every builtin command with the registry.
+     */
+    private void registerBuiltins() {
+        commands.register("help", (args, in, out) -> out.print(help()));
+        builtin("pwd", (session, args, in, out) -> out.print(pwd(session) + "\n"));
+        builtin("cd", (session, args, in, out) -> printErrors(out, cd(session, args)));
+        builtin("ls", (session, args, in, out) -> ls(session, args, out));
+        builtin("mkdir", (session, args, in, out) -> printErrors(out, mkdir(session, args)));
+        builtin("rmdir", (session, args, in, out) -> printErrors(out, rmdir(session, args)));
+        builtin("touch", (session, args, in, out) -> printErrors(out, touch(session, args)));
+        builtin("mv", (session, args, in, out) -> printErrors(out, mv(session, args)));
+        builtin("rm", (session, args, in, out) -> rm(session, args, out));
+        builtin("cp", (session, args, in, out) -> printErrors(out, cp(session, args)));
+        builtin("cat", this::cat);
+        builtin("grep", this::grep);
+        builtin("wc", this::wc);
+        builtin("find", this::find);
+        builtin("du", this::du);
+        builtin("head", this::head);
+        builtin("tail", this::tail);
+        builtin("sort", this::sort);
+        commands.register("cache", (args, in, out) -> out.print(cache(args)));
+        commands.register("stats", (args, in, out) -> out.print(stats(args)));
+        builtin("exit", (session, args, in, out) -> exit(session, out));
+    }
+
+    /**
+     * Prints the messages of a builtin that returns only errors, counting them as errors if there are any.
+     */
+    private static void printErrors(OutputSink out, String errors) throws IOException {
+        if(!errors.isEmpty()){
+            out.error(errors);
         }
+    }
 
+    /**
+     * Registers a builtin that depends on the session running it. Run without a session, it runs in the default one.
+     */
+    private void builtin(String name, SessionCommand command) {
+        commands.register(name, new SessionCommand() {
+            @Override
+            public void execute(Session session, String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+                command.execute(session, args, in, out);
+            }
+
+            @Override
+            public void execute(String[] args, ReadableByteChannel in, OutputSink out) throws IOException {
+                command.execute(defaultSession, args, in, out);
+            }
+        });
+    }
+
+    /**
+     * Returns the registry holding the commands this terminal can run,
+     * so callers can register new commands or wrap the existing ones.
+     *
+     * @return the command registry.
+     */
+    public CommandRegistry getCommands() {
+        return commands;
+    }
+
+
+    /**
+     * Runs every line of a script without showing a prompt, until the script ends or runs `exit`. Runs in the default session.
+     *
+     * @param script the script to run; it is closed when the script ends.
+     * @throws IOException if the script cannot be read.
+     */
+    public void runScript(Reader script) throws IOException {
+        runScript(defaultSession, script);
+    }
 
+    /**
+     * Runs every line of a script without showing a prompt, until the script ends or runs `exit`.
+     * Output is collected in the sink of the session and only flushed when its buffer fills up or the
+     * script ends, so replaying large scripts does not pay for a console flush per command.
+     * Blank lines and lines starting with # are skipped.
+     *
+     * @param session the session to run in.
+     * @param script the script to run; it is closed when the script ends.
+     * @throws IOException if the script cannot be read.
+     */
+    public void runScript(Session session, Reader script) throws IOException {
+        OutputSink out = session.getOut();
+        try (BufferedReader reader = new BufferedReader(script, SCRIPT_BUFFER_SIZE)) {
+            String line;
+            while(!session.isExited() && (line = reader.readLine()) != null){
+                if(line.isBlank() || line.stripLeading().startsWith("#")){
+                    continue;
+                }
+                execute(session, line, out);
+            }
+        }
+        finally {
+            out.flush();
+        }
     }
 
 
     /**
-     * Runs the terminal interface until the user exits
+     * Runs the terminal interface until the user exits. Runs in the default session.
      */
     public void runInterface() {
+        runInterface(defaultSession);
+    }
+
+    /**
+     * Runs the terminal interface until the user exits or standard input ends, reading command
+     * lines from standard input and printing to the sink of the session.
+     *
+     * @param session the session to run in.
+     */
+    public void runInterface(Session session) {
+        OutputSink out = session.getOut();
         Scanner scanner = new Scanner(System.in);
-        while (true) {
-            showPrompt();
-            String command = scanner.nextLine();
-            if (parser.parse(command)) {
-                String parsedCommand = parser.getCommand();
-                String[] parsedArgs = parser.getArguments();
-                execute(parsedCommand , parsedArgs);
+        while (!session.isExited()) {
+            try {
+                showPrompt(session, out);
+                if(!scanner.hasNextLine()){
+                    return;
+                }
+                execute(session, scanner.nextLine(), out);
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("An error occurred while writing the output.");
             }
         }
     }
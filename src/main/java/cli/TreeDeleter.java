@@ -0,0 +1,172 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TreeDeleter class removes directory trees for `rm -r`, and the sources `mv` copied to another filesystem.
+ * Each directory is a fork-join task: it deletes its files, forks a task per subdirectory so
+ * sibling subtrees are removed in parallel, and removes itself as soon as its children are gone.
+ * Symbolic links are removed, never followed.
+ * <p>
+ * Without force the first error stops the remaining work. With force every error is collected
+ * and the deletion carries on with everything else.
+ */
+public class TreeDeleter {
+    private final String command;
+    private final boolean force;
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a TreeDeleter.
+     *
+     * @param command the command the error messages are reported for.
+     * @param force   true to keep going past errors, false to stop at the first one.
+     */
+    public TreeDeleter(String command, boolean force) {
+        this.command = command;
+        this.force = force;
+    }
+
+    /**
+     * Starts removing a tree on the shared bulk pool.
+     *
+     * @param root the directory to remove.
+     * @return the running task, which completes when the tree is gone or the deletion stopped.
+     */
+    public ForkJoinTask<Void> start(Path root) {
+        return BulkExecutor.pool().submit(new DeleteTask(root));
+    }
+
+    /**
+     * Removes a tree and waits until it is done.
+     *
+     * @param root the directory to remove.
+     */
+    public void delete(Path root) {
+        start(root).join();
+    }
+
+    /**
+     * Removes a single file or link that is not a directory, counting it like the files inside trees.
+     *
+     * @param file the file to remove.
+     */
+    public void deleteFile(Path file) {
+        try {
+            Files.delete(file);
+            files.increment();
+        }
+        catch (IOException ex) {
+            fail(file, ex);
+        }
+    }
+
+    /**
+     * Returns the number of files (and links) removed so far.
+     *
+     * @return the file count.
+     */
+    public long getFiles() {
+        return files.sum();
+    }
+
+    /**
+     * Returns the number of directories removed so far.
+     *
+     * @return the directory count.
+     */
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    /**
+     * Returns the errors collected so far, in the order they happened.
+     *
+     * @return the error messages, one per failed path.
+     */
+    public List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Records a failure and stops the deletion unless it is forced.
+     */
+    private void fail(Path path, IOException ex) {
+        String reason = ex instanceof NoSuchFileException ? "No such file or directory" : ex.getClass().getSimpleName();
+        errors.add(command + ": cannot remove '" + path + "': " + reason);
+        if (!force) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Removes one directory and everything below it.
+     */
+    private class DeleteTask extends RecursiveAction {
+        private final Path dir;
+
+        DeleteTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped) {
+                return;
+            }
+            List<DeleteTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (stopped) {
+                        return;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (NoSuchFileException ex) { // Removed by someone else meanwhile
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(new DeleteTask(entry));
+                    }
+                    else {
+                        deleteFile(entry);
+                    }
+                }
+            }
+            catch (IOException ex) {
+                fail(dir, ex);
+                return;
+            }
+
+            invokeAll(subdirectories); // Sibling subtrees are removed in parallel
+            if (stopped) {
+                return;
+            }
+            try {
+                Files.delete(dir);
+                directories.increment();
+            }
+            catch (IOException ex) { // Usually a child that could not be removed
+                fail(dir, ex);
+            }
+        }
+    }
+}
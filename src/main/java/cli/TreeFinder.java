@@ -0,0 +1,252 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * The TreeFinder class walks directory trees for `find`.
+ * Each directory is a fork-join task that lists its entries and forks a task per subdirectory,
+ * so idle threads steal whole subtrees and a wide tree is walked by every thread of the bulk pool.
+ * Every entry's attributes are read once, without following links, and all the tests run on them.
+ * <p>
+ * Matches are handed to the calling thread through a bounded queue and written out as soon as they
+ * are found, so their order follows the walk rather than the names. A slow sink makes the walkers
+ * wait instead of letting results pile up in memory.
+ */
+public class TreeFinder {
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final PathMatcher name;
+    private final char type;
+    private final LongPredicate size;
+    private final LongPredicate days;
+    private final int maxDepth;
+    private final long now = System.currentTimeMillis();
+    private final BlockingQueue<String> results = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong errors = new AtomicLong(); // Directories the walkers could not read
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a TreeFinder for one walk. Every test given must pass for an entry to be printed.
+     *
+     * @param name     matches the file name, or null to accept any name.
+     * @param type     'f' for regular files, 'd' for directories, 'l' for symbolic links, or 0 for any type.
+     * @param size     tests the size in bytes, or null to accept any size.
+     * @param days     tests the number of whole days since the last modification, or null to accept any age.
+     * @param maxDepth the deepest level to descend to, 0 being the starting point itself.
+     */
+    public TreeFinder(PathMatcher name, char type, LongPredicate size, LongPredicate days, int maxDepth) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+        this.days = days;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Parses a size test: N, +N or -N for exactly, more than or less than N units, rounding sizes up.
+     * The unit is a suffix: c for bytes, k, M or G for kibibytes, mebibytes or gibibytes, and 512-byte blocks without one.
+     *
+     * @param argument the argument of -size.
+     * @return the test on a size in bytes.
+     * @throws IllegalArgumentException if the argument is not a valid size.
+     */
+    public static LongPredicate parseSize(String argument) {
+        long unit = 512;
+        String number = argument;
+        char suffix = argument.isEmpty() ? 0 : argument.charAt(argument.length() - 1);
+        if (!Character.isDigit(suffix)) {
+            unit = switch (suffix) {
+                case 'c' -> 1;
+                case 'k' -> 1024;
+                case 'M' -> 1024 * 1024;
+                case 'G' -> 1024L * 1024 * 1024;
+                default -> throw new IllegalArgumentException(argument);
+            };
+            number = argument.substring(0, argument.length() - 1);
+        }
+        long units = unit;
+        LongPredicate test = compare(number);
+        return bytes -> test.test((bytes + units - 1) / units);
+    }
+
+    /**
+     * Parses an age test: N, +N or -N for exactly, more than or less than N whole days.
+     *
+     * @param argument the argument of -mtime.
+     * @return the test on an age in days.
+     * @throws IllegalArgumentException if the argument is not a valid number.
+     */
+    public static LongPredicate parseDays(String argument) {
+        return compare(argument);
+    }
+
+    /**
+     * Parses N, +N or -N into a comparison with N.
+     */
+    private static LongPredicate compare(String argument) {
+        if (argument.startsWith("+")) {
+            long n = parseNumber(argument.substring(1));
+            return value -> value > n;
+        }
+        if (argument.startsWith("-")) {
+            long n = parseNumber(argument.substring(1));
+            return value -> value < n;
+        }
+        long n = parseNumber(argument);
+        return value -> value == n;
+    }
+
+    /**
+     * Parses a number that must not be negative.
+     */
+    private static long parseNumber(String number) {
+        long n = Long.parseLong(number);
+        if (n < 0 || number.startsWith("+")) {
+            throw new IllegalArgumentException(number);
+        }
+        return n;
+    }
+
+    /**
+     * Walks a tree and writes every entry passing the tests into the sink, one per line, as they are found.
+     * Entries are printed as the starting point followed by their path below it.
+     *
+     * @param root    the starting point.
+     * @param display the starting point as the user wrote it.
+     * @param out     the sink receiving the paths and any error messages.
+     * @throws IOException if writing to the sink fails.
+     */
+    public void find(Path root, String display, OutputSink out) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (IOException ex) {
+            out.error("find: '" + display + "': No such file or directory\n");
+            return;
+        }
+        if (matches(root, attributes)) {
+            out.print(display + "\n");
+        }
+        if (!attributes.isDirectory() || maxDepth < 1) {
+            return;
+        }
+
+        ForkJoinTask<Void> walk = BulkExecutor.pool().submit(
+                new FindTask(root, display.endsWith("/") ? display : display + "/", 1));
+        try {
+            while (!walk.isDone() || !results.isEmpty()) {
+                String result = results.poll(10, TimeUnit.MILLISECONDS);
+                if (result == null) { // Nothing new for now, so show what was found so far
+                    out.flush();
+                    continue;
+                }
+                out.print(result);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally { // Let the walkers finish quickly if writing failed or the wait was interrupted
+            cancelled = true;
+            results.clear();
+            out.countErrors(errors.getAndSet(0));
+        }
+    }
+
+    /**
+     * Runs every test on an entry.
+     */
+    private boolean matches(Path path, BasicFileAttributes attributes) {
+        if (type == 'f' && !attributes.isRegularFile()
+                || type == 'd' && !attributes.isDirectory()
+                || type == 'l' && !attributes.isSymbolicLink()) {
+            return false;
+        }
+        if (size != null && !size.test(attributes.size())) {
+            return false;
+        }
+        if (days != null && !days.test((now - attributes.lastModifiedTime().toMillis()) / DAY_MILLIS)) {
+            return false;
+        }
+        Path fileName = path.getFileName();
+        return name == null || (fileName != null && name.matches(fileName));
+    }
+
+    /**
+     * Hands a line to the thread writing the results, waiting while the queue is full.
+     */
+    private void emit(String line) {
+        try {
+            while (!cancelled && !results.offer(line, 100, TimeUnit.MILLISECONDS)) {
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists one directory, prints its matching entries and walks its subdirectories.
+     */
+    private class FindTask extends RecursiveAction {
+        private final Path dir;
+        private final String prefix;
+        private final int depth;
+
+        FindTask(Path dir, String prefix, int depth) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            List<FindTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (cancelled) {
+                        return;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (NoSuchFileException ex) { // Removed while the walk was running
+                        continue;
+                    }
+                    String display = prefix + entry.getFileName();
+                    if (matches(entry, attributes)) {
+                        emit(display + "\n");
+                    }
+                    if (attributes.isDirectory() && depth < maxDepth) {
+                        subdirectories.add(new FindTask(entry, display + "/", depth + 1));
+                    }
+                }
+            }
+            catch (IOException ex) {
+                errors.incrementAndGet();
+                emit("find: '" + prefix.substring(0, prefix.length() - 1) + "': " + ex.getClass().getSimpleName() + "\n");
+                return;
+            }
+            invokeAll(subdirectories); // Idle threads steal the subtrees
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cli;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorCounter class counts newlines and word starts with SIMD compares from the
+ * {@code jdk.incubator.vector} module, one full vector of bytes per step.
+ * It is only loaded by {@link WordCounter} when the module is present at runtime
+ * ({@code --add-modules jdk.incubator.vector}); otherwise the scalar loop is used.
+ */
+final class VectorCounter {
+    // Word starts are found with bit operations on the lane mask, which must fit in a long
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= 64
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_512;
+    private static final int LANES = SPECIES.length();
+    private static final long LANE_BITS = LANES == 64 ? -1L : (1L << LANES) - 1;
+
+    private VectorCounter() {
+    }
+
+    /**
+     * Adds the newlines, and the words when asked, of a block of bytes to a tally.
+     * The bytes past the last full vector are counted by the scalar loop.
+     *
+     * @param tally  the counts so far, continued by this block.
+     * @param bytes  the block.
+     * @param length the number of bytes of the block to count.
+     * @param words  true to count words as well as lines.
+     * @return the index of the first byte not counted.
+     */
+    static int add(WordCounter.Tally tally, byte[] bytes, int length, boolean words) {
+        int bound = SPECIES.loopBound(length);
+        long lines = 0;
+        long starts = 0;
+        long previousSpace = tally.inWord ? 0 : 1;
+        for (int i = 0; i < bound; i += LANES) {
+            ByteVector vector = ByteVector.fromArray(SPECIES, bytes, i);
+            lines += vector.eq((byte) '\n').trueCount();
+            if (words) {
+                // Whitespace is ' ' or one of \t \n \v \f \r, which are the bytes 9 to 13
+                VectorMask<Byte> space = vector.eq((byte) ' ')
+                        .or(vector.sub((byte) 9).compare(VectorOperators.UNSIGNED_LT, (byte) 5));
+                long spaceBits = space.toLong();
+                long wordBits = ~spaceBits & LANE_BITS;
+                starts += Long.bitCount(wordBits & ((spaceBits << 1) | previousSpace)); // A word byte after a space
+                previousSpace = (spaceBits >>> (LANES - 1)) & 1;
+            }
+        }
+        tally.lines += lines;
+        tally.words += starts;
+        if (bound > 0 && words) {
+            tally.inWord = previousSpace == 0;
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,259 @@
+package cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.stream.IntStream;
+
+/**
+ * The WordCounter class counts the lines, words and bytes of files and piped input for `wc`.
+ * Bytes are counted one block at a time. When the {@code jdk.incubator.vector} module is
+ * available, each block is scanned with SIMD compares by {@link VectorCounter}; otherwise, or
+ * when the {@code cli.wc.scalar} system property is set, a plain loop is used.
+ * <p>
+ * Large files are split into chunks counted in parallel on the bulk pool. Chunks at or above
+ * the mapping threshold of the {@link ReadEngine} are memory-mapped and copied block by block
+ * into a small array that stays in the CPU cache; the Vector API of Java 21 can only load
+ * from mapped memory through a preview API, so the vectors are loaded from that array.
+ */
+public class WordCounter {
+    public static final boolean VECTORIZED = !Boolean.getBoolean("cli.wc.scalar")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final long CHUNK_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * The counts of a file, or of one chunk of it.
+     * A chunk is counted as if a space came before it; {@link #merge(Tally)} corrects words split between chunks.
+     */
+    public static final class Tally {
+        long lines;
+        long words;
+        long bytes;
+        boolean inWord; // The last byte counted is part of a word
+        boolean startsInWord; // The first byte counted is part of a word
+
+        /**
+         * Constructs an empty Tally.
+         */
+        public Tally() {
+        }
+
+        /**
+         * Constructs a Tally for a file whose size is known without reading it.
+         *
+         * @param bytes the size of the file.
+         */
+        public Tally(long bytes) {
+            this(0, 0, bytes);
+        }
+
+        /**
+         * Constructs a Tally with known counts, for example a total.
+         *
+         * @param lines the number of lines.
+         * @param words the number of words.
+         * @param bytes the number of bytes.
+         */
+        public Tally(long lines, long words, long bytes) {
+            this.lines = lines;
+            this.words = words;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of newlines.
+         *
+         * @return the line count.
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Returns the number of words, runs of bytes separated by whitespace.
+         *
+         * @return the word count.
+         */
+        public long getWords() {
+            return words;
+        }
+
+        /**
+         * Returns the number of bytes.
+         *
+         * @return the byte count.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Adds the counts of the bytes that follow the ones counted here.
+         *
+         * @param next the counts of the following bytes.
+         */
+        public void merge(Tally next) {
+            if (next.bytes == 0) {
+                return;
+            }
+            if (bytes == 0) {
+                startsInWord = next.startsInWord;
+            }
+            else if (inWord && next.startsInWord) { // One word split over both
+                words--;
+            }
+            lines += next.lines;
+            words += next.words;
+            bytes += next.bytes;
+            inWord = next.inWord;
+        }
+    }
+
+    private final boolean words;
+    private final ReadEngine readEngine;
+
+    /**
+     * Constructs a WordCounter.
+     *
+     * @param words      true to count words as well as lines and bytes.
+     * @param readEngine decides which chunks are memory-mapped.
+     */
+    public WordCounter(boolean words, ReadEngine readEngine) {
+        this.words = words;
+        this.readEngine = readEngine;
+    }
+
+    /**
+     * Counts a file, in parallel chunks when it is large.
+     *
+     * @param file the file to count.
+     * @return the counts.
+     * @throws IOException if the file cannot be read.
+     */
+    public Tally count(FileChannel file) throws IOException {
+        long size = file.size();
+        int chunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        if (chunks == 1) {
+            return count(file, 0, size);
+        }
+        Tally[] tallies = new Tally[chunks];
+        try {
+            BulkExecutor.pool().submit(() -> IntStream.range(0, chunks).parallel().forEach(i -> {
+                long position = i * CHUNK_SIZE;
+                try {
+                    tallies[i] = count(file, position, Math.min(CHUNK_SIZE, size - position));
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            })).join();
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        Tally total = tallies[0];
+        for (int i = 1; i < chunks; i++) {
+            total.merge(tallies[i]);
+        }
+        return total;
+    }
+
+    /**
+     * Counts piped input until it ends.
+     *
+     * @param in the input to count.
+     * @return the counts.
+     * @throws IOException if the input cannot be read.
+     */
+    public Tally count(ReadableByteChannel in) throws IOException {
+        Tally tally = new Tally();
+        byte[] block = new byte[BLOCK_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        while (in.read(buffer) != -1) {
+            if (!buffer.hasRemaining()) {
+                add(tally, block, buffer.position());
+                buffer.clear();
+            }
+        }
+        add(tally, block, buffer.position());
+        return tally;
+    }
+
+    /**
+     * Counts one region of a file.
+     */
+    private Tally count(FileChannel file, long position, long count) throws IOException {
+        Tally tally = new Tally();
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, Math.max(count, 1))];
+        long end = position + count;
+        if (readEngine.isMapped(count)) {
+            while (position < end) { // One mapped window at a time, copied out block by block
+                long length = Math.min(readEngine.getMapWindow(), end - position);
+                MappedByteBuffer window = file.map(FileChannel.MapMode.READ_ONLY, position, length);
+                while (window.hasRemaining()) {
+                    int n = Math.min(block.length, window.remaining());
+                    window.get(block, 0, n);
+                    add(tally, block, n);
+                }
+                position += length;
+            }
+            return tally;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(block.length, end - position));
+            int read = file.read(buffer, position);
+            if (read == -1) { // The file shrank while being counted
+                break;
+            }
+            add(tally, block, read);
+            position += read;
+        }
+        return tally;
+    }
+
+    /**
+     * Counts one block of bytes, continuing the tally.
+     */
+    private void add(Tally tally, byte[] block, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (tally.bytes == 0) {
+            tally.startsInWord = !isSpace(block[0]);
+        }
+        tally.bytes += length;
+        int i = VECTORIZED ? VectorCounter.add(tally, block, length, words) : 0;
+        long lines = 0;
+        long starts = 0;
+        boolean inWord = tally.inWord;
+        for (; i < length; i++) { // The bytes after the last full vector, or every byte without the Vector API
+            byte b = block[i];
+            if (b == '\n') {
+                lines++;
+            }
+            if (words) {
+                boolean space = isSpace(b);
+                if (!space && !inWord) {
+                    starts++;
+                }
+                inWord = !space;
+            }
+        }
+        tally.lines += lines;
+        tally.words += starts;
+        tally.inWord = inWord;
+    }
+
+    /**
+     * Returns whether a byte is whitespace: a space or one of \t \n \v \f \r.
+     */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || (b >= 9 && b <= 13);
+    }
+}
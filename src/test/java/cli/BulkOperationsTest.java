@@ -0,0 +1,121 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for `mkdir`, `touch`, `rm` and `rmdir` given more arguments than
+ * the parallel threshold. This suite verifies that:
+ * - Every argument is processed.
+ * - Error messages come back in argument order.
+ * - Nested and repeated arguments behave as if they were processed one at a time.
+ */
+class BulkOperationsTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Creates a terminal whose current directory is the test workspace.
+     */
+    private Terminal terminal() {
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+        return t;
+    }
+
+    /**
+     * Returns the names "prefix0" to "prefix(count - 1)".
+     */
+    private String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+
+    /**
+     * Test to verify that many files are created and removed, with errors in argument order.
+     */
+    @Test
+    public void touchAndRmManyFilesTest() {
+        Terminal t = terminal();
+        String[] files = names("file", 200);
+
+        assertEquals("", t.touch(files));
+        for (String file : files) {
+            assertTrue(Files.isRegularFile(workspace.resolve(file)));
+        }
+
+        String[] withMissing = new String[files.length + 2];
+        withMissing[0] = "missingFirst";
+        System.arraycopy(files, 0, withMissing, 1, files.length);
+        withMissing[withMissing.length - 1] = "missingLast";
+        String output = t.rm(withMissing);
+
+        assertEquals("rm: The system cannot find the file specified: 'missingFirst'\n"
+                + "rm: The system cannot find the file specified: 'missingLast'\n", output);
+        for (String file : files) {
+            assertFalse(Files.exists(workspace.resolve(file)));
+        }
+    }
+
+    /**
+     * Test to verify that many directories sharing missing parents are created,
+     * and that a repeated argument reports that it already exists.
+     */
+    @Test
+    public void mkdirSharedParentsTest() {
+        Terminal t = terminal();
+        String[] dirs = names("shared/parent/dir", 100);
+        String[] args = new String[dirs.length + 1];
+        System.arraycopy(dirs, 0, args, 0, dirs.length);
+        args[args.length - 1] = dirs[0];
+
+        String output = t.mkdir(args);
+
+        assertEquals("mkdir: A subdirectory or file already exists: 'dir0'\n", output);
+        for (String dir : dirs) {
+            assertTrue(Files.isDirectory(workspace.resolve(dir)));
+        }
+    }
+
+    /**
+     * Test to verify that nested arguments are handled in argument order:
+     * a parent listed after its child already exists, and a parent listed before it is created.
+     */
+    @Test
+    public void mkdirNestedArgumentsTest() {
+        Terminal t = terminal();
+        String[] args = names("nested/child", 40);
+        args[0] = "nested";
+        args[10] = "later/child";
+        args[20] = "later";
+
+        String output = t.mkdir(args);
+
+        assertEquals("mkdir: A subdirectory or file already exists: 'later'\n", output);
+        assertTrue(Files.isDirectory(workspace.resolve("nested/child39")));
+        assertTrue(Files.isDirectory(workspace.resolve("later/child")));
+    }
+
+    /**
+     * Test to verify that `rmdir` removes directories listed before their subdirectories.
+     */
+    @Test
+    public void rmdirParentsBeforeChildrenTest() {
+        Terminal t = terminal();
+        String[] args = names("tree/leaf", 50);
+        t.mkdir(args);
+        String[] withParent = new String[args.length + 1];
+        withParent[0] = "tree";
+        System.arraycopy(args, 0, withParent, 1, args.length);
+
+        String output = t.rmdir(withParent);
+
+        assertEquals("", output);
+        assertFalse(Files.exists(workspace.resolve("tree")));
+    }
+}
@@ -0,0 +1,83 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CommandRegistry used by the Terminal to dispatch commands.
+ * This suite verifies that the registry:
+ * - Finds registered commands and returns null for unknown names.
+ * - Rejects registering the same name twice.
+ * - Applies wrappers to every registered command.
+ */
+class CommandRegistryTest {
+
+    /**
+     * Runs a command and returns what it wrote.
+     */
+    private String run(Command command, String... args) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            command.execute(args, null, out);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Test to verify that a registered command can be looked up by name,
+     * and that unknown names are not found.
+     */
+    @Test
+    public void lookupTest() throws IOException {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("echo", (args, in, out) -> out.print(String.join(" ", args)));
+
+        assertEquals("a b", run(registry.lookup("echo"), "a", "b"));
+        assertNull(registry.lookup("unknown"));
+    }
+
+    /**
+     * Test to verify that registering a name twice is rejected.
+     */
+    @Test
+    public void duplicateRegistrationTest() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("echo", (args, in, out) -> out.print("first"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("echo", (args, in, out) -> out.print("second")));
+    }
+
+    /**
+     * Test to verify that a wrapper sees every command by name and wraps its output.
+     */
+    @Test
+    public void wrapAllTest() throws IOException {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("one", (args, in, out) -> out.print("1"));
+        registry.register("two", (args, in, out) -> out.print("2"));
+
+        registry.wrapAll((name, command) -> (args, in, out) -> {
+            out.print(name + ":[");
+            command.execute(args, null, out);
+            out.print("]");
+        });
+
+        assertEquals("one:[1]", run(registry.lookup("one")));
+        assertEquals("two:[2]", run(registry.lookup("two")));
+    }
+
+    /**
+     * Test to verify that a new Terminal registers all of its builtins.
+     */
+    @Test
+    public void terminalBuiltinsTest() {
+        Terminal t = new Terminal();
+
+        for (String name : new String[]{"help", "pwd", "cd", "ls", "mkdir", "rmdir", "touch", "mv", "rm", "cp", "cat", "grep", "wc", "find", "du", "head", "tail", "sort", "cache", "stats", "exit"}) {
+            assertNotNull(t.getCommands().lookup(name), name);
+        }
+    }
+}
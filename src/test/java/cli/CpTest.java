@@ -0,0 +1,121 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `cp` command.
+ * Covers single files, copies into directories, recursive copies of trees large enough
+ * to be copied in parallel, preserved attributes and the error messages.
+ */
+class CpTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in the temporary workspace.
+     */
+    @BeforeEach
+    public void createTerminal() {
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify copying a file to a new name and into a directory.
+     */
+    @Test
+    public void copyFileTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "content");
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("", t.cp(new String[]{"a.txt", "b.txt"}));
+        assertEquals("", t.cp(new String[]{"a.txt", "b.txt", "dir"}));
+        assertEquals("content", Files.readString(workspace.resolve("b.txt")));
+        assertEquals("content", Files.readString(workspace.resolve("dir/a.txt")));
+        assertEquals("content", Files.readString(workspace.resolve("dir/b.txt")));
+        assertTrue(Files.exists(workspace.resolve("a.txt")));
+    }
+
+    /**
+     * Test to verify that an existing file is overwritten.
+     */
+    @Test
+    public void overwriteTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "new");
+        Files.writeString(workspace.resolve("b.txt"), "old and longer");
+        assertEquals("", t.cp(new String[]{"a.txt", "b.txt"}));
+        assertEquals("new", Files.readString(workspace.resolve("b.txt")));
+    }
+
+    /**
+     * Test to verify a recursive copy of a tree with many files and nested directories.
+     */
+    @Test
+    public void recursiveCopyTest() throws IOException {
+        Path source = workspace.resolve("source");
+        for (int d = 0; d < 5; d++) {
+            Path dir = Files.createDirectories(source.resolve("level" + d).resolve("nested"));
+            for (int f = 0; f < 40; f++) {
+                Files.writeString(dir.resolve("file" + f), "data " + d + " " + f);
+            }
+        }
+        Files.createDirectory(source.resolve("empty"));
+        assertEquals("", t.cp(new String[]{"-r", "source", "copy"}));
+        for (int d = 0; d < 5; d++) {
+            for (int f = 0; f < 40; f++) {
+                assertEquals("data " + d + " " + f, Files.readString(workspace.resolve("copy/level" + d + "/nested/file" + f)));
+            }
+        }
+        assertTrue(Files.isDirectory(workspace.resolve("copy/empty")));
+
+        Files.createDirectory(workspace.resolve("into"));
+        assertEquals("", t.cp(new String[]{"-R", "source", "into"}));
+        assertEquals("data 0 0", Files.readString(workspace.resolve("into/source/level0/nested/file0")));
+    }
+
+    /**
+     * Test to verify that -p keeps modification times and permissions of files and directories.
+     */
+    @Test
+    public void preserveTest() throws IOException {
+        Path dir = Files.createDirectory(workspace.resolve("dir"));
+        Path file = Files.writeString(dir.resolve("a.txt"), "a");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        FileTime time = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(file, time);
+        Files.setLastModifiedTime(dir, time);
+
+        assertEquals("", t.cp(new String[]{"-rp", "dir", "copy"}));
+        assertEquals(time, Files.getLastModifiedTime(workspace.resolve("copy/a.txt")));
+        assertEquals(time, Files.getLastModifiedTime(workspace.resolve("copy")));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(workspace.resolve("copy/a.txt"))));
+
+        assertEquals("", t.cp(new String[]{"dir/a.txt", "plain.txt"}));
+        assertNotEquals(time, Files.getLastModifiedTime(workspace.resolve("plain.txt")));
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "a");
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("cp: missing file operand\n", t.cp(new String[]{}));
+        assertEquals("cp: missing destination file operand after 'a.txt'\n", t.cp(new String[]{"a.txt"}));
+        assertEquals("cp: cannot stat 'missing': No such file or directory\n", t.cp(new String[]{"missing", "b.txt"}));
+        assertEquals("cp: -r not specified; omitting directory 'dir'\n", t.cp(new String[]{"dir", "copy"}));
+        assertEquals("cp: target 'b.txt' is not a directory\n", t.cp(new String[]{"a.txt", "dir", "b.txt"}));
+        assertEquals("cp: 'a.txt' and 'a.txt' are the same file\n", t.cp(new String[]{"a.txt", "."}));
+        assertEquals("cp: cannot copy a directory, 'dir', into itself, 'inner'\n", t.cp(new String[]{"-r", "dir", "dir/inner"}));
+        assertEquals("cp: invalid option -- 'x'\n", t.cp(new String[]{"-x", "a.txt", "b.txt"}));
+    }
+}
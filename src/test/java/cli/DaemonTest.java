@@ -0,0 +1,239 @@
+package cli;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the daemon mode and its client.
+ * Covers per-session working directories, streamed and piped output, `exit`, clients leaving
+ * during `tail -f`, many concurrent sessions and the handling of the socket file.
+ */
+class DaemonTest {
+    @TempDir
+    Path workspace;
+
+    Daemon daemon;
+    Path socket;
+
+    /**
+     * Starts a daemon on a socket in the workspace.
+     */
+    @BeforeEach
+    public void startDaemon() throws IOException {
+        socket = workspace.resolve("cli.sock");
+        daemon = new Daemon(socket);
+        daemon.start();
+    }
+
+    /**
+     * Stops the daemon.
+     */
+    @AfterEach
+    public void stopDaemon() throws IOException {
+        daemon.close();
+    }
+
+    /**
+     * Test to verify that every session keeps its own working directory.
+     */
+    @Test
+    public void separateSessionsTest() throws IOException {
+        Files.createDirectories(workspace.resolve("a"));
+        Files.createDirectories(workspace.resolve("b"));
+        try (Client first = new Client(socket); Client second = new Client(socket)) {
+            assertEquals("", first.execute("cd " + workspace.resolve("a")));
+            assertEquals("", second.execute("cd " + workspace.resolve("b")));
+            assertEquals(workspace.resolve("a") + "\n", first.execute("pwd"));
+            assertEquals(workspace.resolve("b") + "\n", second.execute("pwd"));
+            first.execute("touch only-in-a.txt");
+            assertEquals("only-in-a.txt \n", first.execute("ls"));
+            assertEquals("\n", second.execute("ls"));
+        }
+    }
+
+    /**
+     * Test to verify that large output, pipelines and several statements come back complete.
+     */
+    @Test
+    public void outputTest() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(workspace.resolve("big.txt"), content);
+        try (Client client = new Client(socket)) {
+            client.execute("cd " + workspace);
+            assertEquals(content + "\n", client.execute("cat big.txt"));
+            assertEquals("100001\n", client.execute("cat big.txt | wc -l")); // `cat` adds a newline of its own
+            assertEquals("line 99999\n" + workspace + "\n", client.execute("tail -n 1 big.txt; pwd"));
+            assertEquals("'nope' is not recognized as an internal or external command\n", client.execute("nope"));
+        }
+    }
+
+    /**
+     * Test to verify that `exit` ends the session but not the daemon.
+     */
+    @Test
+    public void exitTest() throws Exception {
+        try (Client client = new Client(socket)) {
+            assertEquals("exiting...\n", client.execute("exit"));
+            assertThrows(IOException.class, () -> client.execute("pwd"));
+        }
+        try (Client client = new Client(socket)) {
+            assertFalse(client.execute("pwd").isEmpty());
+        }
+        awaitNoSessions();
+    }
+
+    /**
+     * Test to verify that a line running `exit` after other statements ends the session cleanly for the client.
+     */
+    @Test
+    public void exitInsideLineTest() throws Exception {
+        Path empty = Files.createDirectory(workspace.resolve("empty"));
+        try (Client client = new Client(socket)) {
+            client.execute("cd " + empty);
+            assertEquals("\nexiting...\n", client.execute("ls; exit"));
+            assertFalse(client.tryExecute("pwd", Channels.newChannel(new ByteArrayOutputStream())));
+        }
+        awaitNoSessions();
+    }
+
+    /**
+     * Test to verify that a client disconnecting while `tail -f` follows a quiet file ends its session.
+     */
+    @Test
+    public void disconnectDuringFollowTest() throws Exception {
+        Files.writeString(workspace.resolve("quiet.log"), "first\n");
+        Client client = new Client(socket);
+        Thread follower = startFollowing(client);
+        client.close();
+        follower.join(10_000);
+        awaitNoSessions();
+    }
+
+    /**
+     * Test to verify that closing the daemon stops sessions following a quiet file.
+     */
+    @Test
+    public void closeStopsFollowTest() throws Exception {
+        Files.writeString(workspace.resolve("quiet.log"), "first\n");
+        try (Client client = new Client(socket)) {
+            Thread follower = startFollowing(client);
+            daemon.close();
+            follower.join(10_000);
+            assertFalse(follower.isAlive(), "the client still waits for output");
+            awaitNoSessions();
+        }
+    }
+
+    /**
+     * Starts `tail -f` on quiet.log in the workspace and waits until it printed the file's last line.
+     */
+    private Thread startFollowing(Client client) throws Exception {
+        client.execute("cd " + workspace);
+        CountDownLatch printed = new CountDownLatch(1);
+        WritableByteChannel out = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int length = src.remaining();
+                src.position(src.limit());
+                printed.countDown();
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Thread follower = Thread.ofVirtual().start(() -> {
+            try {
+                client.execute("tail -f quiet.log", out);
+            } catch (IOException ignored) { // The connection ends with the test
+            }
+        });
+        assertTrue(printed.await(10, TimeUnit.SECONDS), "tail -f printed nothing");
+        return follower;
+    }
+
+    /**
+     * Test to verify that many concurrent sessions each work in their own directory.
+     */
+    @Test
+    public void concurrentSessionsTest() throws Exception {
+        int sessions = 500;
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            int id = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try (Client client = new Client(socket)) {
+                    Path dir = workspace.resolve("s" + id);
+                    client.execute("mkdir " + dir);
+                    client.execute("cd " + dir);
+                    client.execute("touch file" + id);
+                    String listing = client.execute("ls");
+                    if (!listing.equals("file" + id + " \n")) {
+                        failures.add(id + ": " + listing);
+                    }
+                } catch (IOException ex) {
+                    failures.add(id + ": " + ex);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(sessions, daemon.getTotalSessions());
+        awaitNoSessions();
+    }
+
+    /**
+     * Test to verify that a stale socket file is replaced but a live daemon is not.
+     */
+    @Test
+    public void socketFileTest() throws IOException {
+        assertThrows(IOException.class, () -> new Daemon(socket).start());
+        daemon.close();
+        assertFalse(Files.exists(socket));
+
+        Files.createFile(socket);
+        daemon = new Daemon(socket);
+        daemon.start();
+        try (Client client = new Client(socket)) {
+            assertFalse(client.execute("pwd").isEmpty());
+        }
+    }
+
+    /**
+     * Waits until the daemon has noticed that every client disconnected.
+     */
+    private void awaitNoSessions() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (daemon.getActiveSessions() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, daemon.getActiveSessions() + " sessions still active");
+            Thread.sleep(10);
+        }
+    }
+}
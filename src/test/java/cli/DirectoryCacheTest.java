@@ -0,0 +1,164 @@
+package cli;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the directory cache and the `cache` command.
+ * Covers cached listings, invalidation after the terminal's own changes, eviction under
+ * the memory cap, directories too large to cache and the hit and miss counters.
+ */
+class DirectoryCacheTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a workspace with two files and turns the cache on.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "a");
+        Files.writeString(workspace.resolve("b.txt"), "b");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+        assertEquals("", t.cache(new String[]{"on"}));
+    }
+
+    /**
+     * Turns the cache off, which stops its watch service.
+     */
+    @AfterEach
+    public void closeCache() {
+        t.cache(new String[]{"off"});
+    }
+
+    /**
+     * Test to verify that a repeated listing is answered from the cache with the same output.
+     */
+    @Test
+    public void repeatedListingHitsTest() {
+        assertEquals("a.txt b.txt \n", t.ls(new String[]{}));
+        assertEquals("a.txt b.txt \n", t.ls(new String[]{}));
+        String stats = t.cache(new String[]{"stats"});
+        assertTrue(stats.contains("hits: 1\n"), stats);
+        assertTrue(stats.contains("misses: 3\n"), stats); // Each ls also looks the workspace up in its uncached parent
+    }
+
+    /**
+     * Test to verify that lookups of single entries count as misses until their directory is listed, then as hits.
+     */
+    @Test
+    public void entryLookupsCountedTest() {
+        assertEquals("cd: not a directory: a.txt\n", t.cd(new String[]{"a.txt"}));
+        String stats = t.cache(new String[]{"stats"});
+        assertTrue(stats.contains("hits: 0\n"), stats);
+        assertTrue(stats.contains("misses: 1\n"), stats);
+
+        t.ls(new String[]{});
+        assertEquals("cd: not a directory: a.txt\n", t.cd(new String[]{"a.txt"}));
+        stats = t.cache(new String[]{"stats"});
+        assertTrue(stats.contains("hits: 1\n"), stats);
+        assertTrue(stats.contains("misses: 3\n"), stats);
+        assertTrue(stats.contains("hit rate: 25%\n"), stats);
+    }
+
+    /**
+     * Test to verify that files created and removed by the terminal show up in the next listing.
+     */
+    @Test
+    public void ownChangesInvalidateTest() {
+        assertEquals("a.txt b.txt \n", t.ls(new String[]{}));
+        assertEquals("", t.touch(new String[]{"c.txt"}));
+        assertEquals("a.txt b.txt c.txt \n", t.ls(new String[]{}));
+        assertEquals("", t.rm(new String[]{"a.txt"}));
+        assertEquals("", t.mkdir(new String[]{"dir"}));
+        assertEquals("b.txt c.txt dir \n", t.ls(new String[]{}));
+        assertEquals("", t.rmdir(new String[]{"dir"}));
+        assertEquals("b.txt c.txt \n", t.ls(new String[]{}));
+    }
+
+    /**
+     * Test to verify that existence checks answered from the cache give the usual messages.
+     */
+    @Test
+    public void cachedExistenceChecksTest() {
+        t.ls(new String[]{});
+        assertEquals("cd: not a directory: a.txt\n", t.cd(new String[]{"a.txt"}));
+        assertEquals("cd: no such file or directory: missing\n", t.cd(new String[]{"missing"}));
+        assertEquals("mkdir: A subdirectory or file already exists: 'a.txt'\n", t.mkdir(new String[]{"a.txt"}));
+        assertEquals("rm: The system cannot find the file specified: 'missing'\n", t.rm(new String[]{"missing"}));
+    }
+
+    /**
+     * Test to verify that changes made behind the terminal's back are picked up.
+     */
+    @Test
+    public void externalChangeTest() throws IOException {
+        DirectoryCache cache = new DirectoryCache(1024 * 1024);
+        try {
+            assertEquals(2, cache.entries(workspace).size());
+            Files.createDirectory(workspace.resolve("outside"));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (cache.cachedEntries(workspace) != null && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait(); // Watch events arrive asynchronously
+            }
+            assertTrue(cache.entries(workspace).containsKey("outside"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * Test to verify that the least recently used directories are evicted once the cap is reached.
+     */
+    @Test
+    public void evictionTest() throws IOException {
+        DirectoryCache cache = new DirectoryCache(2048);
+        try {
+            for (int i = 0; i < 10; i++) {
+                Path dir = Files.createDirectory(workspace.resolve("dir" + i));
+                Files.writeString(dir.resolve("file"), "");
+                cache.entries(dir);
+            }
+            assertNull(cache.cachedEntries(workspace.resolve("dir0")));
+            assertNotNull(cache.cachedEntries(workspace.resolve("dir9")));
+            assertFalse(cache.stats().contains("evictions: 0\n"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * Test to verify that a directory larger than the cap is listed but not cached.
+     */
+    @Test
+    public void tooLargeNotCachedTest() throws IOException {
+        DirectoryCache cache = new DirectoryCache(256);
+        try {
+            assertEquals(2, cache.entries(workspace).size());
+            assertNull(cache.cachedEntries(workspace));
+            assertTrue(cache.stats().contains("directories: 0\n"), cache.stats());
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * Test to verify the messages of the `cache` command itself.
+     */
+    @Test
+    public void cacheCommandTest() {
+        assertEquals("cache: usage: cache on [MB] | off | stats | clear\n", t.cache(new String[]{}));
+        assertEquals("cache: invalid size: 'x'\n", t.cache(new String[]{"on", "x"}));
+        assertEquals("", t.cache(new String[]{"off"}));
+        assertEquals("cache: off\n", t.cache(new String[]{"stats"}));
+        assertEquals("a.txt b.txt \n", t.ls(new String[]{}));
+    }
+}
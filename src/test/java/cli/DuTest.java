@@ -0,0 +1,162 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `du` command.
+ * Covers the totals of every directory, -s, -d, -h, a wide tree summed in parallel,
+ * the on-disk cache and the pruning of removed directories from it, and the error messages.
+ */
+class DuTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with a small tree.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.createDirectories(workspace.resolve("data/logs/old"));
+        Files.write(workspace.resolve("data/a.bin"), new byte[3000]);
+        Files.write(workspace.resolve("data/logs/b.log"), new byte[2048]);
+        Files.write(workspace.resolve("data/logs/old/c.log"), new byte[5000]);
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify that every directory is printed after its subdirectories, with its total in kibibytes.
+     */
+    @Test
+    public void totalsTest() {
+        assertEquals("5\tdata/logs/old\n7\tdata/logs\n10\tdata\n", t.du(new String[]{"data"}));
+        assertEquals("10\tdata\n", t.du(new String[]{"-s", "data"}));
+        assertEquals("7\tdata/logs\n10\tdata\n", t.du(new String[]{"-d", "1", "data"}));
+        assertEquals("7\tdata/logs\n10\tdata\n", t.du(new String[]{"-d1", "data"}));
+        assertEquals("3\tdata/a.bin\n", t.du(new String[]{"data/a.bin"}));
+    }
+
+    /**
+     * Test to verify human-readable sizes.
+     */
+    @Test
+    public void humanSizesTest() {
+        assertEquals("9.9K\tdata\n", t.du(new String[]{"-sh", "data"}));
+        assertEquals("512", DiskUsage.formatSize(512, true));
+        assertEquals("1.0K", DiskUsage.formatSize(1024, true));
+        assertEquals("10K", DiskUsage.formatSize(10 * 1024 - 1, true));
+        assertEquals("1.5M", DiskUsage.formatSize(1536 * 1024, true));
+        assertEquals("1.0G", DiskUsage.formatSize(1024L * 1024 * 1024 - 1, true));
+    }
+
+    /**
+     * Test to verify that a wide and deep tree summed by several threads gives the exact total.
+     */
+    @Test
+    public void wideTreeTest() throws IOException {
+        long expected = 0;
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 25; j++) {
+                Path dir = Files.createDirectories(workspace.resolve("wide/d" + i + "/e" + j));
+                Files.write(dir.resolve("f"), new byte[i * 100 + j]);
+                expected += i * 100 + j;
+            }
+        }
+        assertEquals((expected + 1023) / 1024 + "\twide\n", t.du(new String[]{"-s", "wide"}));
+        assertEquals(1 + 40 + 40 * 25, t.du(new String[]{"wide"}).lines().count());
+    }
+
+    /**
+     * Test to verify that the cache reuses unchanged directories and reads modified ones again.
+     */
+    @Test
+    public void cacheTest() throws IOException {
+        Path file = workspace.resolve("cache/du.cache");
+        DiskUsageCache cache = new DiskUsageCache(file);
+        assertEquals("10\tdata\n", sum(new DiskUsage(0, false, cache)));
+        assertEquals(3, cache.getMisses());
+        cache.save();
+
+        cache = new DiskUsageCache(file);
+        assertEquals("10\tdata\n", sum(new DiskUsage(0, false, cache)));
+        assertEquals(3, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        Files.write(workspace.resolve("data/logs/old/d.log"), new byte[4096]);
+        cache = new DiskUsageCache(file);
+        assertEquals("14\tdata\n", sum(new DiskUsage(0, false, cache)));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        String property = System.getProperty("cli.du.cache");
+        System.setProperty("cli.du.cache", workspace.resolve("cache/terminal.cache").toString());
+        try {
+            assertEquals("14\tdata\n", t.du(new String[]{"-s", "--cache", "data"}));
+            assertTrue(Files.exists(workspace.resolve("cache/terminal.cache")));
+            assertEquals("14\tdata\n", t.du(new String[]{"-s", "--cache", "data"}));
+        } finally {
+            if (property == null) {
+                System.clearProperty("cli.du.cache");
+            } else {
+                System.setProperty("cli.du.cache", property);
+            }
+        }
+    }
+
+    /**
+     * Test to verify that saving drops the directories removed from a walked tree, and keeps the trees not walked.
+     */
+    @Test
+    public void cachePrunesRemovedTest() throws IOException {
+        Path file = workspace.resolve("cache/du.cache");
+        Files.createDirectories(workspace.resolve("other/sub"));
+        DiskUsageCache cache = new DiskUsageCache(file);
+        sum(new DiskUsage(0, false, cache));
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(new ByteArrayOutputStream()))) {
+            new DiskUsage(0, false, cache).print(workspace.resolve("other"), "other", out);
+        }
+        cache.save();
+        assertEquals(5, new DiskUsageCache(file).getDirectories());
+
+        Files.delete(workspace.resolve("data/logs/old/c.log"));
+        Files.delete(workspace.resolve("data/logs/old"));
+        cache = new DiskUsageCache(file);
+        assertEquals("5\tdata\n", sum(new DiskUsage(0, false, cache)));
+        cache.save();
+        cache = new DiskUsageCache(file);
+        assertEquals(4, cache.getDirectories()); // data, data/logs, other and other/sub
+        assertNull(cache.get(workspace.resolve("data/logs/old"), 0));
+        assertEquals("5\tdata\n", sum(new DiskUsage(0, false, cache)));
+        assertEquals(2, cache.getHits());
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() {
+        assertEquals("du: cannot access 'missing': No such file or directory\n", t.du(new String[]{"missing"}));
+        assertEquals("du: invalid maximum depth 'x'\n", t.du(new String[]{"-d", "x"}));
+        assertEquals("du: invalid option -- 'q'\n", t.du(new String[]{"-q"}));
+    }
+
+    /**
+     * Sums the data directory with the given settings.
+     */
+    private String sum(DiskUsage usage) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            usage.print(workspace.resolve("data"), "data", out);
+        }
+        return buffer.toString();
+    }
+}
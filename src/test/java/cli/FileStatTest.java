@@ -0,0 +1,71 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FileStat, the single attribute lookup shared by the commands.
+ * Covers files, directories, missing paths, symbolic links and answers taken from the directory cache.
+ */
+class FileStatTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Test to verify that relative arguments are resolved against the base and absolute ones are kept.
+     */
+    @Test
+    public void resolveTest() {
+        assertEquals(workspace.resolve("a.txt"), FileStat.resolve(workspace, "a.txt"));
+        assertEquals(workspace, FileStat.resolve(Path.of("elsewhere").toAbsolutePath(), workspace.toString()));
+    }
+
+    /**
+     * Test to verify the answers for a file, a directory and a missing path.
+     */
+    @Test
+    public void typesTest() throws IOException {
+        Path file = Files.writeString(workspace.resolve("a.txt"), "a");
+        Path dir = Files.createDirectory(workspace.resolve("dir"));
+        FileStat fileStat = FileStat.of(file, null);
+        FileStat dirStat = FileStat.of(dir, null);
+        FileStat missing = FileStat.of(workspace.resolve("missing"), null);
+        assertTrue(fileStat.exists() && fileStat.isRegularFile() && !fileStat.isDirectory());
+        assertTrue(dirStat.exists() && dirStat.isDirectory() && !dirStat.isRegularFile());
+        assertFalse(missing.exists() || missing.isDirectory() || missing.isRegularFile());
+        assertNull(missing.getAttributes());
+        assertEquals(Path.of("a.txt"), fileStat.getFileName());
+    }
+
+    /**
+     * Test to verify that links are followed by of() and described themselves by ofLink().
+     */
+    @Test
+    public void symbolicLinkTest() throws IOException {
+        Path dir = Files.createDirectory(workspace.resolve("dir"));
+        Path link = Files.createSymbolicLink(workspace.resolve("link"), dir);
+        assertTrue(FileStat.of(link, null).isDirectory());
+        assertFalse(FileStat.ofLink(link, null).isDirectory());
+        assertTrue(FileStat.ofLink(link, null).getAttributes().isSymbolicLink());
+    }
+
+    /**
+     * Test to verify that paths inside a cached directory are answered from the cache.
+     */
+    @Test
+    public void cachedLookupTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "a");
+        DirectoryCache cache = new DirectoryCache(1024 * 1024);
+        try {
+            cache.entries(workspace.toAbsolutePath().normalize());
+            assertTrue(FileStat.of(workspace.resolve("a.txt"), cache).isRegularFile());
+            assertFalse(FileStat.of(workspace.resolve("missing"), cache).exists());
+            assertTrue(cache.stats().contains("hits: 2\n"), cache.stats());
+        } finally {
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `find` command.
+ * Results arrive in walk order, so the tests compare them as sets.
+ * Covers each test on its own, combined tests, -maxdepth, wide trees walked in parallel and the error messages.
+ */
+class FindTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with a small tree.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.createDirectories(workspace.resolve("src/main"));
+        Files.writeString(workspace.resolve("src/a.java"), "class A {}");
+        Files.writeString(workspace.resolve("src/main/b.java"), "x".repeat(2000));
+        Files.writeString(workspace.resolve("src/main/notes.txt"), "");
+        Files.writeString(workspace.resolve("readme.txt"), "hello");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify that every entry is printed below the starting point as written.
+     */
+    @Test
+    public void findAllTest() {
+        assertEquals(Set.of("src", "src/a.java", "src/main", "src/main/b.java", "src/main/notes.txt"),
+                lines(t.find(new String[]{"src"})));
+        assertEquals(Set.of("src/", "src/a.java", "src/main", "src/main/b.java", "src/main/notes.txt"),
+                lines(t.find(new String[]{"src/"})));
+        assertEquals(Set.of(".", "./src", "./src/a.java", "./src/main", "./src/main/b.java", "./src/main/notes.txt", "./readme.txt"),
+                lines(t.find(new String[]{})));
+    }
+
+    /**
+     * Test to verify -name and -type, alone and combined.
+     */
+    @Test
+    public void nameAndTypeTest() {
+        assertEquals(Set.of("./src/a.java", "./src/main/b.java"), lines(t.find(new String[]{"-name", "*.java"})));
+        assertEquals(Set.of(".", "./src", "./src/main"), lines(t.find(new String[]{".", "-type", "d"})));
+        assertEquals(Set.of("./src/main"), lines(t.find(new String[]{"-name", "m*", "-type", "d"})));
+        assertEquals(Set.of("src/main/notes.txt"), lines(t.find(new String[]{"src", "-type", "f", "-name", "*.txt"})));
+    }
+
+    /**
+     * Test to verify -size with its units and comparisons, and -mtime.
+     */
+    @Test
+    public void sizeAndTimeTest() throws IOException {
+        assertEquals(Set.of("./src/main/b.java"), lines(t.find(new String[]{"-type", "f", "-size", "+1k"})));
+        assertEquals(Set.of("./src/main/notes.txt"), lines(t.find(new String[]{"-type", "f", "-size", "0"})));
+        assertEquals(Set.of("./readme.txt"), lines(t.find(new String[]{"-size", "5c"})));
+        assertEquals(Set.of("./src/a.java", "./readme.txt"), lines(t.find(new String[]{"-type", "f", "-size", "-11c", "-size", "+0c"})));
+
+        Files.setLastModifiedTime(workspace.resolve("readme.txt"), FileTime.from(Instant.now().minus(Duration.ofDays(10))));
+        assertEquals(Set.of("./readme.txt"), lines(t.find(new String[]{"-mtime", "+7"})));
+        assertEquals(Set.of("./src/a.java", "./src/main/b.java", "./src/main/notes.txt"),
+                lines(t.find(new String[]{"-type", "f", "-mtime", "-1"})));
+    }
+
+    /**
+     * Test to verify that -maxdepth stops the walk.
+     */
+    @Test
+    public void maxDepthTest() {
+        assertEquals(Set.of("."), lines(t.find(new String[]{"-maxdepth", "0"})));
+        assertEquals(Set.of("src", "src/a.java", "src/main"), lines(t.find(new String[]{"src", "-maxdepth", "1"})));
+    }
+
+    /**
+     * Test to verify that a wide and deep tree walked by several threads finds every file exactly once.
+     */
+    @Test
+    public void wideTreeTest() throws IOException {
+        Set<String> expected = new TreeSet<>();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 20; j++) {
+                Path dir = Files.createDirectories(workspace.resolve("wide/d" + i + "/e" + j));
+                Files.writeString(dir.resolve("f.dat"), "data");
+                expected.add("wide/d" + i + "/e" + j + "/f.dat");
+            }
+        }
+        String output = t.find(new String[]{"wide", "-name", "*.dat"});
+        assertEquals(expected.size(), output.lines().count());
+        assertEquals(expected, lines(output));
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() {
+        assertEquals("find: 'missing': No such file or directory\n", t.find(new String[]{"missing"}));
+        assertEquals("find: unknown predicate '-foo'\n", t.find(new String[]{"-foo", "x"}));
+        assertEquals("find: missing argument to '-name'\n", t.find(new String[]{"-name"}));
+        assertEquals("find: invalid argument 'x' to '-type'\n", t.find(new String[]{"-type", "x"}));
+        assertEquals("find: invalid argument '1q' to '-size'\n", t.find(new String[]{"-size", "1q"}));
+        assertEquals("find: invalid argument '-1' to '-maxdepth'\n", t.find(new String[]{"-maxdepth", "-1"}));
+    }
+
+    /**
+     * Returns the lines of the output as a set.
+     */
+    private static Set<String> lines(String output) {
+        return new TreeSet<>(output.lines().toList());
+    }
+}
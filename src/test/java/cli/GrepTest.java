@@ -0,0 +1,171 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `grep` command.
+ * Covers literal and regex patterns, the -i, -c, -l, -n and -r options, -i under a Turkish locale, piped input,
+ * memory-mapped files, small files read into buffers sized to them and the error messages.
+ */
+class GrepTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with two small log files.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.writeString(workspace.resolve("app.log"), "start\nERROR disk full\nok\nerror again\nend");
+        Files.writeString(workspace.resolve("db.log"), "connect\nERROR timeout\n");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify literal searches in one file, with and without case and line numbers.
+     */
+    @Test
+    public void literalSearchTest() {
+        assertEquals("ERROR disk full\n", t.grep(new String[]{"ERROR", "app.log"}));
+        assertEquals("ERROR disk full\nerror again\n", t.grep(new String[]{"-i", "error", "app.log"}));
+        assertEquals("2:ERROR disk full\n4:error again\n", t.grep(new String[]{"-in", "Error", "app.log"}));
+        assertEquals("5:end\n", t.grep(new String[]{"-n", "end", "app.log"}));
+        assertEquals("", t.grep(new String[]{"missing text", "app.log"}));
+    }
+
+    /**
+     * Test to verify that -i folds the pattern the same way under a locale with its own case rules,
+     * where a dotted or dotless i would never match the ASCII bytes of the file.
+     */
+    @Test
+    public void ignoreCaseTurkishLocaleTest() {
+        Locale before = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertEquals("ERROR disk full\n", t.grep(new String[]{"-i", "DISK", "app.log"}));
+            assertEquals("4:error again\n", t.grep(new String[]{"-in", "AGAIN", "app.log"}));
+        } finally {
+            Locale.setDefault(before);
+        }
+    }
+
+    /**
+     * Test to verify that patterns with metacharacters are matched as regular expressions.
+     */
+    @Test
+    public void regexSearchTest() {
+        assertTrue(Grep.isLiteral("disk full"));
+        assertFalse(Grep.isLiteral("^e.*n$"));
+        assertEquals("error again\n", t.grep(new String[]{"^e.*n$", "app.log"}));
+        assertEquals("1:start\n5:end\n", t.grep(new String[]{"-n", "^(start|end)$", "app.log"}));
+        assertEquals("grep: invalid pattern: '(unclosed'\n", t.grep(new String[]{"(unclosed", "app.log"}));
+    }
+
+    /**
+     * Test to verify counts and file names over several files.
+     */
+    @Test
+    public void countAndFilesTest() {
+        assertEquals("app.log:1\ndb.log:1\n", t.grep(new String[]{"-c", "ERROR", "app.log", "db.log"}));
+        assertEquals("2\n", t.grep(new String[]{"-ci", "error", "app.log"}));
+        assertEquals("app.log\n", t.grep(new String[]{"-l", "disk", "app.log", "db.log"}));
+        assertEquals("app.log:ERROR disk full\ndb.log:ERROR timeout\n", t.grep(new String[]{"ERROR", "app.log", "db.log"}));
+    }
+
+    /**
+     * Test to verify a recursive search over many files keeps the output of each file together.
+     */
+    @Test
+    public void recursiveSearchTest() throws IOException {
+        Path logs = Files.createDirectories(workspace.resolve("logs/nested"));
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(logs.resolve("file" + i), "line one\nneedle " + i + "\nline three\nneedle again\n");
+        }
+        String output = t.grep(new String[]{"-rn", "needle", "logs"});
+        for (int i = 0; i < 100; i++) {
+            assertTrue(output.contains("logs/nested/file" + i + ":2:needle " + i + "\nlogs/nested/file" + i + ":4:needle again\n"), output);
+        }
+        assertEquals(200, output.lines().count());
+
+        String names = t.grep(new String[]{"-rl", "disk"});
+        assertEquals("app.log\n", names);
+    }
+
+    /**
+     * Test to verify searching the output of the previous pipeline stage, including lines split across reads.
+     */
+    @Test
+    public void pipedInputTest() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            input.append(i % 1000 == 0 ? "match " : "other ").append(i).append('\n');
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.grep(new String[]{"-c", "match"}, Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes())), out);
+        }
+        assertEquals("100\n", buffer.toString());
+    }
+
+    /**
+     * Test to verify that memory-mapped windows split on line boundaries find every match.
+     */
+    @Test
+    public void mappedSearchTest() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            content.append("line ").append(i).append(i % 7 == 0 ? " target\n" : "\n");
+        }
+        Path file = Files.writeString(workspace.resolve("big.txt"), content);
+        Grep grep = new Grep("target", false, true, false, false, new ReadEngine(1, 4096));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer));
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            grep.search(channel, null, out);
+        }
+        assertEquals((10_000 + 6) / 7 + "\n", buffer.toString());
+    }
+
+    /**
+     * Test to verify that files read into a buffer sized to them are searched to the end,
+     * whether they are empty, hold a single byte or end without a newline.
+     */
+    @Test
+    public void fileSizedBufferTest() throws IOException {
+        Files.writeString(workspace.resolve("empty.txt"), "");
+        Files.writeString(workspace.resolve("one.txt"), "x");
+        assertEquals("", t.grep(new String[]{"x", "empty.txt"}));
+        assertEquals("x\n", t.grep(new String[]{"x", "one.txt"}));
+        assertEquals("empty.txt:0\none.txt:1\n", t.grep(new String[]{"-c", "x", "empty.txt", "one.txt"}));
+
+        Files.writeString(workspace.resolve("lines.txt"), "first x\nsecond\nthird x");
+        assertEquals("1:first x\n3:third x\n", t.grep(new String[]{"-n", "x", "lines.txt"}));
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("grep: usage: grep [-r] [-i] [-c] [-l] [-n] pattern [file...]\n", t.grep(new String[]{}));
+        assertEquals("grep: missing file operand\n", t.grep(new String[]{"x"}));
+        assertEquals("grep: missing: No such file or directory\n", t.grep(new String[]{"x", "missing"}));
+        assertEquals("grep: dir: Is a directory\n", t.grep(new String[]{"x", "dir"}));
+        assertEquals("grep: invalid option -- 'z'\n", t.grep(new String[]{"-z", "x", "app.log"}));
+    }
+}
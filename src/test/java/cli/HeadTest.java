@@ -0,0 +1,82 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `head` command.
+ * Covers -n and -c on files, several files, piped input and the error messages.
+ */
+class HeadTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with a file of numbered lines.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(workspace.resolve("lines.txt"), content);
+        Files.writeString(workspace.resolve("short.txt"), "only\nlast without newline");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify the first lines and bytes of a file.
+     */
+    @Test
+    public void headOfFileTest() {
+        String ten = t.head(new String[]{"lines.txt"});
+        assertEquals(10, ten.lines().count());
+        assertTrue(ten.startsWith("line 1\n") && ten.endsWith("line 10\n"), ten);
+        assertEquals("line 1\nline 2\n", t.head(new String[]{"-n", "2", "lines.txt"}));
+        assertEquals("line 1\n", t.head(new String[]{"-n1", "lines.txt"}));
+        assertEquals("line", t.head(new String[]{"-c", "4", "lines.txt"}));
+        assertEquals("", t.head(new String[]{"-n", "0", "lines.txt"}));
+        assertEquals("only\nlast without newline", t.head(new String[]{"-n", "5", "short.txt"}));
+        assertEquals("==> lines.txt <==\nline 1\n\n==> short.txt <==\nonly\n",
+                t.head(new String[]{"-n", "1", "lines.txt", "short.txt"}));
+    }
+
+    /**
+     * Test to verify that piped input is only read until enough lines have been printed.
+     */
+    @Test
+    public void pipedInputTest() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ByteArrayInputStream input = new ByteArrayInputStream(("a\nb\nc\n" + "x".repeat(1024 * 1024)).getBytes());
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.head(new String[]{"-n", "2"}, Channels.newChannel(input), out);
+        }
+        assertEquals("a\nb\n", buffer.toString());
+        assertTrue(input.available() > 0, "head read the whole input");
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("head: missing file operand\n", t.head(new String[]{}));
+        assertEquals("head: missing: No such file or directory\n", t.head(new String[]{"missing"}));
+        assertEquals("head: dir: Is a directory\n", t.head(new String[]{"dir"}));
+        assertEquals("head: invalid number of lines: 'x'\n", t.head(new String[]{"-n", "x", "lines.txt"}));
+        assertEquals("head: invalid number of bytes: '-1'\n", t.head(new String[]{"-c", "-1", "lines.txt"}));
+        assertEquals("head: invalid option -- 'f'\n", t.head(new String[]{"-f", "lines.txt"}));
+    }
+}
@@ -0,0 +1,80 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the latency histogram.
+ * Covers the bucket bounds, percentiles against exact ones within the bucket error,
+ * concurrent recording and reset.
+ */
+class LatencyHistogramTest {
+    /**
+     * Test to verify that every value falls in a bucket whose bounds contain it, and buckets only grow.
+     */
+    @Test
+    public void bucketsTest() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 1023, 1024, 123_456_789, Long.MAX_VALUE};
+        int previous = -1;
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket >= previous, "bucket of " + value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, "upper bound of " + value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value, "lower bound of " + value);
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Test to verify that percentiles are within an eighth of the exact ones.
+     */
+    @Test
+    public void percentilesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        Random random = new Random(7);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20); // From 1 ns to about half a second
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double p : new double[]{50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long estimate = histogram.getPercentile(p);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 8 + 1, p + ": " + estimate + " vs " + exact);
+        }
+    }
+
+    /**
+     * Test to verify that no recording is lost when threads record at once, and that reset clears everything.
+     */
+    @Test
+    public void concurrentRecordTest() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            int seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int n = 0; n < 50_000; n++) {
+                    histogram.record(random.nextInt(1_000_000));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
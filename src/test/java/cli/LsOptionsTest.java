@@ -0,0 +1,113 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the sorting, formatting and top-k options of `ls`.
+ * The workspace holds three files with different sizes and modification times,
+ * plus a hidden file and a subdirectory.
+ */
+class LsOptionsTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates the fixtures: b.txt is the largest and oldest, c.txt the newest.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "12345");
+        Files.writeString(workspace.resolve("b.txt"), "1234567890");
+        Files.writeString(workspace.resolve("c.txt"), "1");
+        Files.writeString(workspace.resolve(".hidden"), "");
+        Files.createDirectory(workspace.resolve("dir"));
+        Files.setLastModifiedTime(workspace.resolve("b.txt"), FileTime.fromMillis(1_000_000_000_000L));
+        Files.setLastModifiedTime(workspace.resolve("a.txt"), FileTime.fromMillis(1_100_000_000_000L));
+        Files.setLastModifiedTime(workspace.resolve("dir"), FileTime.fromMillis(1_200_000_000_000L));
+        Files.setLastModifiedTime(workspace.resolve("c.txt"), FileTime.fromMillis(1_300_000_000_000L));
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify that names are sorted, and reversed with -r.
+     */
+    @Test
+    public void sortedByNameTest() {
+        assertEquals("a.txt b.txt c.txt dir \n", t.ls(new String[]{}));
+        assertEquals("dir c.txt b.txt a.txt \n", t.ls(new String[]{"-r"}));
+        assertEquals(".hidden a.txt b.txt c.txt dir \n", t.ls(new String[]{"-a"}));
+    }
+
+    /**
+     * Test to verify ordering by modification time and by size, one name per line.
+     */
+    @Test
+    public void timeAndSizeOrderTest() {
+        assertEquals("c.txt\ndir\na.txt\nb.txt\n", t.ls(new String[]{"-1t"}));
+        assertEquals("b.txt\na.txt\nc.txt\n", t.ls(new String[]{"-1", "-S"}).replace("dir\n", ""));
+        assertEquals("b.txt\na.txt\n", t.ls(new String[]{"-1tr", "--top=2"}));
+    }
+
+    /**
+     * Test to verify that the bounded heap returns the same first entries as a full sort.
+     */
+    @Test
+    public void topMatchesFullSortTest() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(workspace.resolve("file" + i), "x".repeat(i));
+        }
+        String[] full = t.ls(new String[]{"-1S"}).split("\n");
+        String[] top = t.ls(new String[]{"-1S", "--top=10"}).split("\n");
+
+        assertArrayEquals(Arrays.copyOf(full, 10), top);
+    }
+
+    /**
+     * Test to verify that -U lists every entry, in directory order.
+     */
+    @Test
+    public void unsortedTest() {
+        Set<String> names = new HashSet<>(Arrays.asList(t.ls(new String[]{"-U1"}).split("\n")));
+
+        assertEquals(Set.of("a.txt", "b.txt", "c.txt", "dir"), names);
+        assertEquals(2, t.ls(new String[]{"-U1", "--top=2"}).split("\n").length);
+    }
+
+    /**
+     * Test to verify the long format columns.
+     */
+    @Test
+    public void longFormatTest() {
+        String[] lines = t.ls(new String[]{"-l"}).split("\n");
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[1].startsWith("-"), lines[1]);
+        assertTrue(lines[1].matches("-\\S{9} +10 \\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2} b\\.txt"), lines[1]);
+        assertTrue(lines[3].startsWith("d"), lines[3]);
+        assertTrue(lines[3].endsWith(" dir"), lines[3]);
+    }
+
+    /**
+     * Test to verify listing another directory, and the errors for missing directories and bad counts.
+     */
+    @Test
+    public void operandTest() throws IOException {
+        Files.writeString(workspace.resolve("dir").resolve("inner.txt"), "");
+
+        assertEquals("inner.txt \n", t.ls(new String[]{"dir"}));
+        assertEquals("ls: cannot access 'missing': No such file or directory\n", t.ls(new String[]{"missing"}));
+        assertEquals("ls: invalid number of entries: '0'\n", t.ls(new String[]{"--top=0"}));
+    }
+}
@@ -89,7 +89,7 @@ class LsTest {
     public void invalidArgumentTest(){
         // Executes `ls` with an unsupported argument.
         String outputMessage = t.ls(new String[]{"-wrongArg"});
-        String expectedMessage = "ls: invalid argument (currently only supports ls, ls -r, ls -a)\n";
+        String expectedMessage = "ls: invalid argument (supports -a, -r, -l, -t, -S, -1, -U and --top=N)\n";
 
         // Checks that the output matches the expected invalid argument message.
         assertTrue(outputMessage.equals(expectedMessage));
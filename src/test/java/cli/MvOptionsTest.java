@@ -0,0 +1,119 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for `mv` with several sources, directory moves and moves across filesystems.
+ * The cross-filesystem test needs /dev/shm on a different filesystem than the workspace
+ * and is skipped otherwise.
+ */
+class MvOptionsTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in the temporary workspace.
+     */
+    @BeforeEach
+    public void createTerminal() {
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify that many sources are all moved into the target directory.
+     */
+    @Test
+    public void multipleSourcesTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        String[] args = new String[101];
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(workspace.resolve("file" + i), "data" + i);
+            args[i] = "file" + i;
+        }
+        args[100] = "dir";
+        assertEquals("", t.mv(args));
+        for (int i = 0; i < 100; i++) {
+            assertFalse(Files.exists(workspace.resolve("file" + i)));
+            assertEquals("data" + i, Files.readString(workspace.resolve("dir/file" + i)));
+        }
+    }
+
+    /**
+     * Test to verify that the sources that can be moved are moved even when others are missing.
+     */
+    @Test
+    public void partialFailureTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        Files.writeString(workspace.resolve("a.txt"), "a");
+        assertEquals("mv: cannot stat 'missing': No such file or directory\n", t.mv(new String[]{"missing", "a.txt", "dir"}));
+        assertTrue(Files.exists(workspace.resolve("dir/a.txt")));
+    }
+
+    /**
+     * Test to verify renaming a directory with its contents, and the errors for impossible moves.
+     */
+    @Test
+    public void directoryMoveTest() throws IOException {
+        Files.createDirectories(workspace.resolve("tree/nested"));
+        Files.writeString(workspace.resolve("tree/nested/a.txt"), "a");
+        assertEquals("", t.mv(new String[]{"tree", "renamed"}));
+        assertEquals("a", Files.readString(workspace.resolve("renamed/nested/a.txt")));
+        assertFalse(Files.exists(workspace.resolve("tree")));
+
+        assertEquals("mv: cannot move 'renamed' to a subdirectory of itself, 'inner'\n",
+                t.mv(new String[]{"renamed", "renamed/inner"}));
+        assertEquals("mv: 'renamed' and 'renamed' are the same file\n", t.mv(new String[]{"renamed", "."}));
+    }
+
+    /**
+     * Test to verify that a tree moved to another filesystem is copied, verified and then removed.
+     */
+    @Test
+    public void crossFilesystemMoveTest() throws IOException {
+        Path shm = Path.of("/dev/shm");
+        assumeTrue(Files.isDirectory(shm) && Files.isWritable(shm));
+        FileStore here = Files.getFileStore(workspace);
+        assumeTrue(!here.equals(Files.getFileStore(shm)));
+
+        Path target = Files.createTempDirectory(shm, "mv-test");
+        try {
+            Path tree = Files.createDirectories(workspace.resolve("tree/nested"));
+            for (int i = 0; i < 50; i++) {
+                Files.writeString(tree.resolve("file" + i), "data" + i);
+            }
+            Files.writeString(workspace.resolve("single.txt"), "single");
+            assertEquals("", t.mv(new String[]{"tree", "single.txt", target.toString()}));
+            assertFalse(Files.exists(workspace.resolve("tree")));
+            assertFalse(Files.exists(workspace.resolve("single.txt")));
+            assertEquals("data49", Files.readString(target.resolve("tree/nested/file49")));
+            assertEquals("single", Files.readString(target.resolve("single.txt")));
+        } finally {
+            new TreeDeleter("rm", true).delete(target);
+        }
+    }
+
+    /**
+     * Test to verify that verification finds a copy that is missing entries or has different sizes.
+     */
+    @Test
+    public void verifyTest() throws IOException {
+        Files.createDirectories(workspace.resolve("a/nested"));
+        Files.writeString(workspace.resolve("a/nested/f"), "1234");
+        Files.createDirectories(workspace.resolve("b/nested"));
+        assertFalse(Copier.verify(workspace.resolve("a"), workspace.resolve("b")));
+        Files.writeString(workspace.resolve("b/nested/f"), "12");
+        assertFalse(Copier.verify(workspace.resolve("a"), workspace.resolve("b")));
+        Files.writeString(workspace.resolve("b/nested/f"), "4321");
+        assertTrue(Copier.verify(workspace.resolve("a"), workspace.resolve("b")));
+    }
+}
@@ -72,14 +72,14 @@ class MvTest {
     }
 
     /**
-     * Test to verify `mv` behavior with excessive arguments.
-     * Expects an error message indicating too many arguments.
+     * Test to verify `mv` behavior with several sources and a destination that is not a directory.
+     * Expects an error message indicating that the target must be a directory.
      */
     @Test
     public void tooManyArgumentsTest(){
-        // Executes `mv` with three arguments, exceeding the allowed number.
+        // Executes `mv` with two sources, which needs an existing directory as the destination.
         String outputMessage = t.mv(new String[]{"arg1", "arg2", "arg3"});
-        String expectedMessage = "mv: too many arguments\n";
+        String expectedMessage = "mv: target 'arg3' is not a directory\n";
 
         // Checks that the output matches the expected error message.
         assertTrue(outputMessage.equals(expectedMessage));
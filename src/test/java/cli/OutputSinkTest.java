@@ -0,0 +1,82 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the OutputSink used by `>` and `>>` redirection.
+ * This suite verifies that the sink:
+ * - Truncates the target file when writing.
+ * - Appends to the target file when appending.
+ * - Streams file regions larger than its internal buffer.
+ */
+class OutputSinkTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Test to verify that a sink opened for writing replaces the existing content.
+     */
+    @Test
+    public void writeTruncatesTest() throws IOException {
+        Path target = workspace.resolve("writeTruncates.txt");
+        Files.writeString(target, "the text before rewriting");
+
+        // Writes new content through the sink.
+        try (OutputSink out = OutputSink.toFile(target, false)) {
+            out.print("new content\n");
+        }
+
+        assertEquals("new content\n", Files.readString(target));
+    }
+
+    /**
+     * Test to verify that a sink opened for appending keeps the existing content.
+     */
+    @Test
+    public void appendKeepsContentTest() throws IOException {
+        Path target = workspace.resolve("appendKeeps.txt");
+        Files.writeString(target, "first line\n");
+
+        // Appends content through the sink.
+        try (OutputSink out = OutputSink.toFile(target, true)) {
+            out.print("second line\n");
+        }
+
+        assertEquals("first line\nsecond line\n", Files.readString(target));
+    }
+
+    /**
+     * Test to verify that file regions larger than the internal buffer are copied intact,
+     * and that text printed before and after them keeps its order.
+     */
+    @Test
+    public void transferLargeFileTest() throws IOException {
+        Path source = workspace.resolve("source.bin");
+        Path target = workspace.resolve("target.bin");
+        byte[] data = new byte[300 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        Files.write(source, data);
+
+        // Copies the whole source between two printed markers.
+        try (OutputSink out = OutputSink.toFile(target, false);
+             FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            out.print("<");
+            out.transferFrom(in, 0, in.size());
+            out.print(">");
+        }
+
+        byte[] written = Files.readAllBytes(target);
+        assertEquals(data.length + 2, written.length);
+        assertEquals('<', written[0]);
+        assertEquals('>', written[written.length - 1]);
+        assertEquals(new String(data), new String(written, 1, data.length));
+    }
+}
@@ -0,0 +1,122 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Parser that splits command lines into words.
+ * This suite verifies that the parser:
+ * - Splits on any run of whitespace and ignores leading and trailing whitespace.
+ * - Keeps quoted text together, including empty quoted words.
+ * - Handles backslash escapes while leaving Windows paths untouched.
+ * - Splits pipelines into stages on unquoted `|`, and statements on unquoted `;`.
+ * - Rejects blank lines, unterminated quotes and empty pipeline stages.
+ */
+class ParserTest {
+    Parser parser = new Parser();
+
+    /**
+     * Test to verify splitting on whitespace of any length.
+     */
+    @Test
+    public void whitespaceTest() {
+        assertTrue(parser.parse("  mkdir   a\tb  "));
+
+        assertEquals("mkdir", parser.getCommand());
+        assertArrayEquals(new String[]{"a", "b"}, parser.getArguments());
+    }
+
+    /**
+     * Test to verify that single and double quotes keep whitespace inside a word.
+     */
+    @Test
+    public void quotesTest() {
+        assertTrue(parser.parse("touch 'my file.txt' \"other file.txt\" a\"b c\"d ''"));
+
+        assertEquals("touch", parser.getCommand());
+        assertArrayEquals(new String[]{"my file.txt", "other file.txt", "ab cd", ""}, parser.getArguments());
+    }
+
+    /**
+     * Test to verify backslash escapes outside quotes, inside double quotes and inside single quotes.
+     */
+    @Test
+    public void escapesTest() {
+        assertTrue(parser.parse("cat my\\ file \"say \\\"hi\\\"\" 'a\\ b' src\\test\\file.txt"));
+
+        assertArrayEquals(new String[]{"my file", "say \"hi\"", "a\\ b", "src\\test\\file.txt"}, parser.getArguments());
+    }
+
+    /**
+     * Test to verify that blank lines hold no command and report no error.
+     */
+    @Test
+    public void blankLineTest() {
+        assertFalse(parser.parse("   "));
+
+        assertEquals("", parser.getCommand());
+        assertEquals(0, parser.getArguments().length);
+        assertNull(parser.getError());
+    }
+
+    /**
+     * Test to verify that an unterminated quote is reported as an error.
+     */
+    @Test
+    public void unterminatedQuoteTest() {
+        assertFalse(parser.parse("cat \"unterminated"));
+
+        assertEquals("parse error: unterminated double quote", parser.getError());
+    }
+
+    /**
+     * Test to verify that parsing a new line does not change arguments returned for an earlier one.
+     */
+    @Test
+    public void argumentsAreNotReusedTest() {
+        parser.parse("ls -a");
+        String[] first = parser.getArguments();
+        parser.parse("cat x");
+
+        assertArrayEquals(new String[]{"-a"}, first);
+        assertArrayEquals(new String[]{"x"}, parser.getArguments());
+    }
+
+    /**
+     * Test to verify that unquoted pipes split the line into stages while quoted and escaped ones do not.
+     */
+    @Test
+    public void pipelineStagesTest() {
+        assertTrue(parser.parse("cat big.log|cat '|' \\| | cat"));
+
+        assertEquals(3, parser.getStageCount());
+        assertEquals("cat", parser.getCommand(0));
+        assertArrayEquals(new String[]{"big.log"}, parser.getArguments(0));
+        assertArrayEquals(new String[]{"|", "|"}, parser.getArguments(1));
+        assertEquals(0, parser.getArguments(2).length);
+    }
+
+    /**
+     * Test to verify that an empty pipeline stage is reported as an error.
+     */
+    @Test
+    public void emptyStageTest() {
+        assertFalse(parser.parse("cat x |"));
+        assertEquals("parse error near '|'", parser.getError());
+
+        assertFalse(parser.parse("| cat x"));
+        assertEquals("parse error near '|'", parser.getError());
+    }
+
+    /**
+     * Test to verify that statements are split on unquoted semicolons only.
+     */
+    @Test
+    public void splitStatementsTest() {
+        List<String> statements = Parser.splitStatements("mkdir a; touch 'b;c' \"d;e\" f\\;g;;pwd");
+
+        assertEquals(List.of("mkdir a", " touch 'b;c' \"d;e\" f\\;g", "", "pwd"), statements);
+        assertTrue(parser.parse(statements.get(1)));
+        assertArrayEquals(new String[]{"b;c", "d;e", "f;g"}, parser.getArguments());
+    }
+}
@@ -0,0 +1,107 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for pipelines of commands joined with `|`.
+ * This suite verifies that:
+ * - Output of one stage becomes the input of the next through the Terminal.
+ * - Files larger than the pipe buffer reach the next stage whole.
+ * - A stage that stops reading early stops an endless producer instead of hanging.
+ * - Redirection applies to the output of the last stage.
+ */
+class PipelineTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Runs a command line on a terminal placed in the test workspace and returns its output.
+     */
+    private String execute(Terminal t, String line) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.execute(line, out);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Test to verify that `cat` without arguments copies the output of the previous stage.
+     */
+    @Test
+    public void catThroughPipeTest() throws IOException {
+        Files.writeString(workspace.resolve("pipeTest.txt"), "piped content");
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+
+        String output = execute(t, "cat pipeTest.txt | cat | cat");
+
+        assertEquals("piped content\n", output);
+    }
+
+    /**
+     * Test to verify that a file much larger than the pipe buffer passes through whole,
+     * even though the producing stage runs on a virtual thread and the pipe fills up.
+     */
+    @Test
+    public void largeFileThroughPipeTest() throws IOException {
+        Files.writeString(workspace.resolve("large.txt"), "0123456789\n".repeat(200_000));
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+
+        execute(t, "cat large.txt | cat | cat > pipeOutput.txt");
+
+        assertEquals(2_200_001, Files.size(workspace.resolve("pipeOutput.txt"))); // `cat` ends each file with a newline of its own
+    }
+
+    /**
+     * Test to verify that redirection writes the output of the last stage to the file.
+     */
+    @Test
+    public void redirectLastStageTest() throws IOException {
+        Files.writeString(workspace.resolve("pipeTest.txt"), "piped content");
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+
+        String output = execute(t, "cat pipeTest.txt | cat > pipeOutput.txt");
+
+        assertEquals("File written successfully.\n", output);
+        assertEquals("piped content\n", Files.readString(workspace.resolve("pipeOutput.txt")));
+    }
+
+    /**
+     * Test to verify that a consumer reading only the first bytes ends the pipeline
+     * even though the producer would never stop on its own.
+     */
+    @Test
+    @Timeout(10)
+    public void earlyExitStopsProducerTest() throws IOException {
+        Command endless = (args, in, out) -> {
+            while (true) {
+                out.print("y\n");
+            }
+        };
+        Command firstBytes = (args, in, out) -> {
+            ByteBuffer buffer = ByteBuffer.allocate(6);
+            while (buffer.hasRemaining() && in.read(buffer) != -1) {
+            }
+            buffer.flip();
+            out.write(buffer);
+        };
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            new Pipeline().add(endless, new String[0]).add(firstBytes, new String[0]).run(out);
+        }
+
+        assertEquals("y\ny\ny\n", buffer.toString());
+    }
+}
@@ -0,0 +1,87 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ReadEngine used by `cat`.
+ * This suite verifies that both the streamed and the memory-mapped paths:
+ * - Copy the whole file byte for byte.
+ * - Copy a region in the middle of the file, across mapping windows.
+ */
+class ReadEngineTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Creates a test file whose bytes follow a repeating pattern.
+     */
+    private Path createFile(int size) throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return Files.write(workspace.resolve("data.bin"), data);
+    }
+
+    /**
+     * Copies a region of the file with the given engine and returns the copied bytes.
+     */
+    private byte[] copy(ReadEngine engine, Path file, long position, long count) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer));
+             FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            engine.copy(in, position, count, out);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Test to verify that the streamed path copies the whole file.
+     */
+    @Test
+    public void streamedCopyTest() throws IOException {
+        Path file = createFile(100_000);
+        ReadEngine engine = new ReadEngine(Long.MAX_VALUE, 4096);
+
+        assertFalse(engine.isMapped(100_000));
+        assertArrayEquals(Files.readAllBytes(file), copy(engine, file, 0, 100_000));
+    }
+
+    /**
+     * Test to verify that the mapped path copies the whole file when it spans many windows.
+     */
+    @Test
+    public void mappedCopyTest() throws IOException {
+        Path file = createFile(100_000);
+        ReadEngine engine = new ReadEngine(1, 4096);
+
+        assertTrue(engine.isMapped(100_000));
+        assertArrayEquals(Files.readAllBytes(file), copy(engine, file, 0, 100_000));
+    }
+
+    /**
+     * Test to verify that a region in the middle of the file is copied exactly,
+     * and that a count running past the end of the file is clamped.
+     */
+    @Test
+    public void mappedRegionTest() throws IOException {
+        Path file = createFile(100_000);
+        ReadEngine engine = new ReadEngine(1, 4096);
+        byte[] all = Files.readAllBytes(file);
+
+        byte[] region = copy(engine, file, 5_000, 20_000);
+        byte[] tail = copy(engine, file, 90_000, 50_000);
+
+        assertArrayEquals(Arrays.copyOfRange(all, 5_000, 25_000), region);
+        assertArrayEquals(Arrays.copyOfRange(all, 90_000, 100_000), tail);
+    }
+}
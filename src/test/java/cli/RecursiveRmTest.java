@@ -0,0 +1,132 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for `rm -r`, `rm -rf` and `rmdir -p`.
+ * This suite verifies that:
+ * - A whole tree, including nested subdirectories, is removed.
+ * - Missing paths are reported by `rm -r` and ignored by `rm -rf`.
+ * - `rm -rv` reports the number of removed entries.
+ * - `.`, `..` and the root are never removed.
+ * - `rmdir -p` removes the parents named in the argument.
+ */
+class RecursiveRmTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Creates a terminal whose current directory is the test workspace.
+     */
+    private Terminal terminal() {
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+        return t;
+    }
+
+    /**
+     * Creates a tree with 3 levels of 4 subdirectories, each holding 5 files.
+     *
+     * @return the number of files created.
+     */
+    private int createTree(Path dir, int depth) throws IOException {
+        Files.createDirectories(dir);
+        int count = 0;
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(dir.resolve("file" + i + ".txt"), "content");
+            count++;
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 4; i++) {
+                count += createTree(dir.resolve("sub" + i), depth - 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Test to verify that `rm -r` removes a whole tree and prints nothing.
+     */
+    @Test
+    public void removeTreeTest() throws IOException {
+        createTree(workspace.resolve("tree"), 3);
+        Terminal t = terminal();
+
+        String output = t.rm(new String[]{"-r", "tree"});
+
+        assertEquals("", output);
+        assertFalse(Files.exists(workspace.resolve("tree")));
+    }
+
+    /**
+     * Test to verify that `rm -rv` reports every removed file and directory.
+     */
+    @Test
+    public void verboseReportTest() throws IOException {
+        int files = createTree(workspace.resolve("tree"), 2);
+        Files.writeString(workspace.resolve("single.txt"), "content");
+        Terminal t = terminal();
+
+        String output = t.rm(new String[]{"-rv", "tree", "single.txt"});
+
+        assertTrue(output.startsWith("rm: removed " + (files + 1) + " files and 21 directories in "), output);
+        assertTrue(output.endsWith(" entries/s)\n"), output);
+    }
+
+    /**
+     * Test to verify that `rm -r` reports a missing path while `rm -rf` ignores it.
+     */
+    @Test
+    public void missingPathTest() {
+        Terminal t = terminal();
+
+        assertEquals("rm: The system cannot find the file specified: 'missing'\n", t.rm(new String[]{"-r", "missing"}));
+        assertEquals("", t.rm(new String[]{"-rf", "missing"}));
+        assertEquals("", t.rm(new String[]{"-f", "missing"}));
+    }
+
+    /**
+     * Test to verify that `.` and `..` are refused.
+     */
+    @Test
+    public void refuseDotTest() {
+        Terminal t = terminal();
+
+        assertEquals("rm: refusing to remove '.'\nrm: refusing to remove '..'\n", t.rm(new String[]{"-rf", ".", ".."}));
+        assertTrue(Files.isDirectory(workspace));
+    }
+
+    /**
+     * Test to verify that an unknown option is rejected before anything is removed.
+     */
+    @Test
+    public void invalidOptionTest() throws IOException {
+        Files.writeString(workspace.resolve("kept.txt"), "content");
+        Terminal t = terminal();
+
+        assertEquals("rm: invalid option -- 'x'\n", t.rm(new String[]{"-rx", "kept.txt"}));
+        assertTrue(Files.exists(workspace.resolve("kept.txt")));
+    }
+
+    /**
+     * Test to verify that `rmdir -p` removes the directory and each parent named in the argument.
+     */
+    @Test
+    public void rmdirParentsTest() throws IOException {
+        Files.createDirectories(workspace.resolve("a/b/c"));
+        Files.createDirectories(workspace.resolve("x/y"));
+        Files.writeString(workspace.resolve("x/kept.txt"), "content");
+        Terminal t = terminal();
+
+        String output = t.rmdir(new String[]{"-p", "a/b/c", "x/y"});
+
+        assertEquals("rmdir: 'x' is not empty.\n", output);
+        assertFalse(Files.exists(workspace.resolve("a")));
+        assertFalse(Files.exists(workspace.resolve("x/y")));
+        assertTrue(Files.exists(workspace.resolve("x/kept.txt")));
+    }
+}
@@ -0,0 +1,49 @@
+package cli;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for running the Terminal non-interactively with `-f` and `-c`.
+ * This suite verifies that scripts:
+ * - Run every statement in order without printing a prompt.
+ * - Skip blank lines and comments.
+ * - Support several `;`-separated statements on one line.
+ */
+class ScriptTest {
+    @TempDir
+    Path workspace;
+
+    PrintStream console = System.out;
+
+    /**
+     * Restores the console after each test captured it.
+     */
+    @AfterEach
+    public void restoreConsole() {
+        System.setOut(console);
+    }
+
+    /**
+     * Test to verify that a script runs every command in order and only prints command output.
+     */
+    @Test
+    public void runScriptTest() throws IOException {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+
+        t.runScript(new StringReader("# create the fixtures\n\nmkdir scriptDir; touch scriptDir/a.txt\ncd scriptDir\npwd\nls\n"));
+
+        assertEquals(workspace.resolve("scriptDir") + "\na.txt \n", captured.toString());
+        assertTrue(Files.isRegularFile(workspace.resolve("scriptDir").resolve("a.txt")));
+    }
+}
@@ -0,0 +1,178 @@
+package cli;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for sessions sharing one terminal.
+ * Covers per-session working directories, the default session, commands run without a session, `exit` ending only its session,
+ * the status of `>` and `>>` going to the session's sink, and many sessions running at once.
+ */
+class SessionTest {
+    @TempDir
+    Path workspace;
+
+    /**
+     * Runs a command line in a session and returns its output.
+     */
+    private static String run(Terminal t, Session session, String line) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.execute(session, line, out);
+        }
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test to verify that `cd` in one session changes neither the other sessions nor the default one.
+     */
+    @Test
+    public void separateDirectoriesTest() throws IOException {
+        Terminal t = new Terminal();
+        String before = t.getCurrentDir();
+        Session first = new Session(workspace, Map.of(), null);
+        Session second = new Session(workspace, Map.of(), null);
+        Files.createDirectories(workspace.resolve("a"));
+
+        assertEquals("", run(t, first, "cd a"));
+        assertEquals(workspace.resolve("a") + "\n", run(t, first, "pwd"));
+        assertEquals(workspace + "\n", run(t, second, "pwd"));
+        assertEquals(before, t.getCurrentDir());
+
+        run(t, first, "touch inside.txt; mkdir sub");
+        assertTrue(Files.exists(workspace.resolve("a").resolve("inside.txt")));
+        assertEquals("a \n", run(t, second, "ls"));
+        assertEquals(workspace.resolve("a").resolve("sub").toString(), t.pwd(new Session(workspace.resolve("a/./sub"), Map.of(), null)));
+    }
+
+    /**
+     * Test to verify that `exit` ends its own session, stops the rest of its line and leaves other sessions running.
+     */
+    @Test
+    public void exitTest() throws IOException {
+        Terminal t = new Terminal();
+        Session first = new Session(workspace, Map.of(), null);
+        Session second = new Session(workspace, Map.of(), null);
+
+        assertEquals("exiting...\n", run(t, first, "exit; touch after.txt"));
+        assertTrue(first.isExited());
+        assertFalse(Files.exists(workspace.resolve("after.txt")));
+        assertFalse(second.isExited());
+        assertEquals(workspace + "\n", run(t, second, "pwd"));
+    }
+
+    /**
+     * Test to verify that a builtin run without a session, as a wrapper calling the plain
+     * {@link Command} contract would, runs in the terminal's default session instead of failing,
+     * and that a pipeline built without a session runs in one starting in the process's directory.
+     */
+    @Test
+    public void withoutSessionTest() throws IOException {
+        Terminal t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.getCommands().lookup("pwd").execute(new String[0], null, out);
+            new Pipeline().add(t.getCommands().lookup("pwd"), new String[0]).run(out);
+        }
+
+        Path processDir = Path.of(System.getProperty("user.dir")).toAbsolutePath().normalize();
+        assertEquals(workspace + "\n" + processDir + "\n", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test to verify that a script stops at `exit` and its output goes to the sink of its session.
+     */
+    @Test
+    public void scriptTest() throws IOException {
+        Terminal t = new Terminal();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Session session = new Session(workspace, Map.of(), OutputSink.toChannel(Channels.newChannel(buffer)));
+
+        t.runScript(session, new StringReader("pwd\nexit\npwd\n"));
+
+        assertEquals(workspace + "\nexiting...\n", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test to verify that writing and appending outside of a command line report to the session's sink.
+     */
+    @Test
+    public void redirectionStatusTest() throws IOException {
+        Terminal t = new Terminal();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Session session = new Session(workspace, Map.of(), OutputSink.toChannel(Channels.newChannel(buffer)));
+
+        assertTrue(t.writeToAFile(session, new String[]{"one\n", "out.txt"}));
+        assertTrue(t.appendToAFile(session, new String[]{"two\n", "out.txt"}));
+        assertTrue(t.writeToAFile(new Session(workspace, Map.of(), null), new String[]{"three\n", "quiet.txt"}));
+
+        assertEquals("one\ntwo\n", Files.readString(workspace.resolve("out.txt")));
+        assertEquals("three\n", Files.readString(workspace.resolve("quiet.txt")));
+        assertEquals("File written successfully.\nContent appended to file successfully.\n", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test to verify that hundreds of sessions running at once on one terminal each see only their own directory.
+     */
+    @Test
+    public void concurrentSessionsTest() throws Exception {
+        Terminal t = new Terminal();
+        int sessions = 256;
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            String name = "s" + i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                Session session = new Session(workspace, Map.of(), null);
+                try {
+                    start.await();
+                    run(t, session, "mkdir " + name + "; cd " + name);
+                    for (int round = 0; round < 10; round++) {
+                        run(t, session, "mkdir d" + round + "; cd d" + round + "; touch f.txt; cd ..");
+                        String expected = workspace.resolve(name) + "\n";
+                        String pwd = run(t, session, "pwd");
+                        if (!pwd.equals(expected)) {
+                            failures.add(name + ": pwd printed " + pwd);
+                        }
+                    }
+                    String count = run(t, session, "ls -1 | wc -l");
+                    if (!count.equals("10\n")) {
+                        failures.add(name + ": ls listed " + count);
+                    }
+                    String files = run(t, session, "find . -type f | wc -l");
+                    if (!files.equals("10\n")) {
+                        failures.add(name + ": find listed " + files);
+                    }
+                }
+                catch (Exception ex) {
+                    failures.add(name + ": " + ex);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> String.join("\n", failures));
+        try (var entries = Files.list(workspace)) {
+            assertEquals(sessions, entries.count());
+        }
+    }
+}
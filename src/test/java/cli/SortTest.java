@@ -0,0 +1,109 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `sort` command.
+ * Covers the options on small files, piped input, input spilled to disk in many runs
+ * and merged in several passes, and the error messages.
+ */
+class SortTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with a small access log.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        Files.writeString(workspace.resolve("access.log"), "carol 30 /b\nalice 200 /a\nbob 4 /c\nalice 5 /d\n");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify the order of lines with each option.
+     */
+    @Test
+    public void optionsTest() {
+        assertEquals("alice 200 /a\nalice 5 /d\nbob 4 /c\ncarol 30 /b\n", t.sort(new String[]{"access.log"}));
+        assertEquals("carol 30 /b\nbob 4 /c\nalice 5 /d\nalice 200 /a\n", t.sort(new String[]{"-r", "access.log"}));
+        assertEquals("alice 200 /a\ncarol 30 /b\nbob 4 /c\nalice 5 /d\n", t.sort(new String[]{"-k", "2", "access.log"}));
+        assertEquals("bob 4 /c\nalice 5 /d\ncarol 30 /b\nalice 200 /a\n", t.sort(new String[]{"-n", "-k2,2", "access.log"}));
+        assertEquals("alice 200 /a\ncarol 30 /b\nalice 5 /d\nbob 4 /c\n", t.sort(new String[]{"-nr", "-k", "2", "access.log"}));
+        assertEquals("alice 200 /a\nbob 4 /c\ncarol 30 /b\n", t.sort(new String[]{"-u", "-k1,1", "access.log"}));
+        assertEquals("-3\n-1.5\n2\n10\n", sortPiped(new String[]{"-n"}, "10\n-1.5\n2\n-3"));
+    }
+
+    /**
+     * Test to verify that input larger than the memory budget is spilled to disk and merged into the same order.
+     */
+    @Test
+    public void externalSortTest() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            lines.add(random.nextInt(1_000_000) + " user" + random.nextInt(500) + " GET /page/" + random.nextInt(100));
+        }
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(null);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int runs;
+        try (Sorter sorter = new Sorter(false, false, false, 0, 0, 16 * 1024);
+             OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            sorter.addAll(Channels.newChannel(new ByteArrayInputStream((String.join("\n", lines) + "\n").getBytes())));
+            sorter.finish(out);
+            runs = sorter.getRuns();
+        }
+        assertTrue(runs > 64, "expected a multi-pass merge but got " + runs + " runs");
+        assertEquals(String.join("\n", expected) + "\n", buffer.toString());
+
+        Files.write(workspace.resolve("big.log"), lines);
+        List<String> numeric = new ArrayList<>(new TreeSet<>(lines.stream().map(l -> l.split(" ")[0]).toList()));
+        numeric.sort((a, b) -> Integer.compare(Integer.parseInt(a), Integer.parseInt(b)));
+        String output = t.sort(new String[]{"-S", "64K", "-nu", "-k1,1", "big.log"});
+        assertEquals(numeric, output.lines().map(l -> l.split(" ")[0]).toList());
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("sort: missing file operand\n", t.sort(new String[]{}));
+        assertEquals("sort: missing: No such file or directory\n", t.sort(new String[]{"missing"}));
+        assertEquals("sort: dir: Is a directory\n", t.sort(new String[]{"dir"}));
+        assertEquals("sort: invalid option -- 'z'\n", t.sort(new String[]{"-z", "access.log"}));
+        assertEquals("sort: invalid field specification '0'\n", t.sort(new String[]{"-k", "0", "access.log"}));
+        assertEquals("sort: invalid buffer size '12X'\n", t.sort(new String[]{"-S", "12X", "access.log"}));
+    }
+
+    /**
+     * Sorts text as if it were piped from a previous stage.
+     */
+    private String sortPiped(String[] args, String input) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.sort(args, Channels.newChannel(new ByteArrayInputStream(input.getBytes())), out);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+        return buffer.toString();
+    }
+}
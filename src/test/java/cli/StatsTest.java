@@ -0,0 +1,205 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the command instrumentation and the `stats` command.
+ * Covers call and byte counts, errors thrown and reported, the summary and --reset, sessions recording at once,
+ * and the JMX MBeans.
+ */
+class StatsTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in the temporary workspace.
+     */
+    @BeforeEach
+    public void createTerminal() {
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Runs a command line in the default session and returns its output.
+     */
+    private String run(String line) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.execute(line, out);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Test to verify that calls, the bytes written, and the bytes read from files and through a pipe are counted per command.
+     */
+    @Test
+    public void countsTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "one\ntwo\n");
+        run("cat a.txt");
+        run("cat a.txt | wc -l");
+        run("pwd; pwd");
+
+        CommandMetrics cat = t.getInstrumentation().get("cat");
+        assertEquals(2, cat.getCalls());
+        assertEquals(0, cat.getErrors());
+        assertEquals(18, cat.getBytesWritten()); // `cat` adds a newline of its own
+        assertEquals(16, cat.getBytesRead()); // a.txt, twice
+        CommandMetrics wc = t.getInstrumentation().get("wc");
+        assertEquals(1, wc.getCalls());
+        assertEquals(9, wc.getBytesRead());
+        assertEquals(2, wc.getBytesWritten());
+        assertEquals(2, t.getInstrumentation().get("pwd").getCalls());
+        assertEquals(0, t.getInstrumentation().get("ls").getCalls());
+        assertTrue(cat.getLatencyMax() > 0);
+        assertTrue(cat.getLatencyP50() <= cat.getLatencyP99());
+    }
+
+    /**
+     * Test to verify that the bytes read from files are counted by every command reading them.
+     */
+    @Test
+    public void fileReadsTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "one\ntwo\n");
+        Files.createDirectories(workspace.resolve("d"));
+        Files.writeString(workspace.resolve("d").resolve("b.txt"), "three\n");
+        run("wc -l a.txt; grep one a.txt; grep -r t d a.txt; sort a.txt; head -n 1 a.txt; tail -c 4 a.txt");
+
+        assertEquals(8, t.getInstrumentation().get("wc").getBytesRead());
+        assertEquals(8 + 6 + 8, t.getInstrumentation().get("grep").getBytesRead());
+        assertEquals(8, t.getInstrumentation().get("sort").getBytesRead());
+        assertEquals(8, t.getInstrumentation().get("head").getBytesRead()); // Reads ahead of the first line
+        assertEquals(4, t.getInstrumentation().get("tail").getBytesRead());
+    }
+
+    /**
+     * Test to verify that commands reporting a failure with a message count as errors, and successful runs do not.
+     */
+    @Test
+    public void reportedErrorsTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "one\n");
+        run("cat missing.txt; cat a.txt; mkdir d; mkdir d; cd nowhere; ls -x; grep -r one nowhere a.txt; find nowhere; wc -l missing.txt; pwd");
+
+        assertEquals(1, t.getInstrumentation().get("cat").getErrors());
+        assertEquals(2, t.getInstrumentation().get("cat").getCalls());
+        assertEquals(1, t.getInstrumentation().get("mkdir").getErrors());
+        assertEquals(1, t.getInstrumentation().get("cd").getErrors());
+        assertEquals(1, t.getInstrumentation().get("ls").getErrors());
+        assertEquals(1, t.getInstrumentation().get("grep").getErrors());
+        assertEquals(1, t.getInstrumentation().get("find").getErrors());
+        assertEquals(1, t.getInstrumentation().get("wc").getErrors());
+        assertEquals(0, t.getInstrumentation().get("pwd").getErrors());
+        assertTrue(run("stats").lines().anyMatch(line -> line.matches("cat +2 +1 .*")));
+    }
+
+    /**
+     * Test to verify that a command ending with an exception counts as an error, and the exception still reaches the caller.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Terminal terminal = new Terminal();
+        terminal.getCommands().register("boom", (args, in, out) -> {
+            throw new IOException("boom");
+        });
+        terminal.getCommands().wrapAll((name, command) -> name.equals("boom") ? terminal.getInstrumentation().wrap(name, command) : command);
+
+        assertThrows(IOException.class, () -> terminal.execute("boom", OutputSink.toChannel(Channels.newChannel(new ByteArrayOutputStream()))));
+
+        assertEquals(1, terminal.getInstrumentation().get("boom").getCalls());
+        assertEquals(1, terminal.getInstrumentation().get("boom").getErrors());
+    }
+
+    /**
+     * Test to verify the summary of `stats` and that `stats --reset` clears it.
+     */
+    @Test
+    public void statsCommandTest() throws IOException {
+        assertEquals("stats: no commands have run\n", run("stats"));
+        run("mkdir d; ls");
+
+        String summary = run("stats");
+        String[] lines = summary.split("\n");
+        assertTrue(lines[0].startsWith("command"), summary);
+        assertTrue(lines[0].contains("p99 us"), summary);
+        // Rows are sorted by name; the first `stats` counts once it has finished
+        assertEquals(List.of("ls", "mkdir", "stats"), List.of(lines[1].split(" +")[0], lines[2].split(" +")[0], lines[3].split(" +")[0]));
+        assertEquals("1", lines[2].split(" +")[1]);
+
+        assertEquals("", run("stats --reset"));
+        lines = run("stats").split("\n"); // Only `stats --reset` itself has finished since
+        assertEquals(2, lines.length);
+        assertEquals(List.of("stats", "1"), List.of(lines[1].split(" +")).subList(0, 2));
+        assertEquals(0, t.getInstrumentation().get("ls").getCalls());
+        assertEquals("stats: usage: stats [--reset]\n", run("stats -x"));
+    }
+
+    /**
+     * Test to verify that no call is lost when many sessions run commands at once.
+     */
+    @Test
+    public void concurrentSessionsTest() throws Exception {
+        int sessions = 64;
+        int rounds = 200;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                Session session = new Session(workspace, Map.of(), null);
+                OutputSink out = OutputSink.toChannel(Channels.newChannel(new ByteArrayOutputStream()));
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        t.execute(session, "pwd", out);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        CommandMetrics pwd = t.getInstrumentation().get("pwd");
+        assertEquals((long) sessions * rounds, pwd.getCalls());
+        assertEquals((long) sessions * rounds, pwd.getLatency().getCount());
+        assertEquals((long) sessions * rounds * (workspace.toString().length() + 1), pwd.getBytesWritten());
+    }
+
+    /**
+     * Test to verify that the metrics are published as MBeans until they are unregistered.
+     */
+    @Test
+    public void mbeansTest() throws Exception {
+        run("pwd");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("cli:type=CommandMetrics,terminal=\"stats-test\",command=\"pwd\"");
+
+        t.getInstrumentation().registerMBeans("stats-test");
+        try {
+            assertEquals(1L, server.getAttribute(name, "Calls"));
+            assertEquals((long) workspace.toString().length() + 1, server.getAttribute(name, "BytesWritten"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Calls"));
+            assertThrows(IllegalStateException.class, () -> new Terminal().getInstrumentation().registerMBeans("stats-test"));
+        }
+        finally {
+            t.getInstrumentation().unregisterMBeans();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
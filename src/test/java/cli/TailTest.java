@@ -0,0 +1,144 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `tail` command.
+ * Covers -n and -c on files, lines longer than the read block, piped input,
+ * following appended data, rotation and truncation, and the error messages.
+ */
+class TailTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in a workspace with a file of numbered lines.
+     */
+    @BeforeEach
+    public void createFixtures() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(workspace.resolve("lines.txt"), content);
+        Files.writeString(workspace.resolve("short.txt"), "only\nlast without newline");
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify the last lines and bytes of a file.
+     */
+    @Test
+    public void tailOfFileTest() {
+        String ten = t.tail(new String[]{"lines.txt"});
+        assertEquals(10, ten.lines().count());
+        assertTrue(ten.startsWith("line 11\n") && ten.endsWith("line 20\n"), ten);
+        assertEquals("line 20\n", t.tail(new String[]{"-n", "1", "lines.txt"}));
+        assertEquals("20\n", t.tail(new String[]{"-c3", "lines.txt"}));
+        assertEquals("", t.tail(new String[]{"-n", "0", "lines.txt"}));
+        assertEquals("last without newline", t.tail(new String[]{"-n", "1", "short.txt"}));
+        assertEquals("only\nlast without newline", t.tail(new String[]{"-n", "50", "short.txt"}));
+        assertEquals("==> lines.txt <==\nline 20\n\n==> short.txt <==\nlast without newline",
+                t.tail(new String[]{"-n", "1", "lines.txt", "short.txt"}));
+    }
+
+    /**
+     * Test to verify files and piped input whose lines span several read blocks against a plain split.
+     */
+    @Test
+    public void longLinesTest() throws IOException {
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            content.append(String.valueOf((char) ('a' + i % 26)).repeat(random.nextInt(100_000))).append('\n');
+        }
+        Path file = Files.writeString(workspace.resolve("long.txt"), content);
+        String[] lines = content.toString().split("\n");
+        for (int n : new int[]{1, 3, 39, 40, 41}) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = Math.max(0, lines.length - n); i < lines.length; i++) {
+                expected.append(lines[i]).append('\n');
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertEquals(content.length() - expected.length(), Tail.lastLinesStart(channel, n), "file, n=" + n);
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+                t.tail(new String[]{"-n", String.valueOf(n)},
+                        Channels.newChannel(new ByteArrayInputStream(content.toString().getBytes())), out);
+            }
+            assertEquals(expected.toString(), buffer.toString(), "piped, n=" + n);
+        }
+    }
+
+    /**
+     * Test to verify that `tail -f` prints appended data, follows a rotated file and stops when interrupted.
+     */
+    @Test
+    public void followTest() throws Exception {
+        Path log = Files.writeString(workspace.resolve("app.log"), "first\nsecond\n");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer));
+        Thread follower = Thread.ofVirtual().start(() -> {
+            try {
+                t.tail(new String[]{"-f", "-n", "1", "app.log"}, null, out);
+            } catch (IOException ignored) {
+            }
+        });
+        awaitOutput(buffer, "second\n");
+
+        Files.writeString(log, "third\n", StandardOpenOption.APPEND);
+        awaitOutput(buffer, "second\nthird\n");
+
+        Files.move(log, workspace.resolve("app.log.1"));
+        Files.writeString(log, "rotated\n");
+        awaitOutput(buffer, "second\nthird\ntail: 'app.log' has been replaced; following new file\nrotated\n");
+
+        Files.writeString(log, "");
+        awaitOutput(buffer, "rotated\ntail: app.log: file truncated\n");
+        Files.writeString(log, "again\n", StandardOpenOption.APPEND);
+        awaitOutput(buffer, "truncated\nagain\n");
+
+        follower.interrupt();
+        follower.join(10_000);
+        assertFalse(follower.isAlive(), "tail -f did not stop when interrupted");
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("tail: missing file operand\n", t.tail(new String[]{}));
+        assertEquals("tail: missing: No such file or directory\n", t.tail(new String[]{"missing"}));
+        assertEquals("tail: dir: Is a directory\n", t.tail(new String[]{"dir"}));
+        assertEquals("tail: invalid number of lines: 'x'\n", t.tail(new String[]{"-n", "x", "lines.txt"}));
+        assertEquals("tail: option -f needs exactly one file\n", t.tail(new String[]{"-f", "lines.txt", "short.txt"}));
+    }
+
+    /**
+     * Waits until the output ends with the expected text, failing after ten seconds.
+     */
+    private static void awaitOutput(ByteArrayOutputStream buffer, String suffix) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!buffer.toString().endsWith(suffix)) {
+            assertTrue(System.currentTimeMillis() < deadline, "expected output ending with '" + suffix + "' but was '" + buffer + "'");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cli;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the `wc` command.
+ * Small files check the output format; random data checks the vectorized, chunked and
+ * mapped counting against a plain byte-by-byte count.
+ */
+class WcTest {
+    @TempDir
+    Path workspace;
+
+    Terminal t;
+
+    /**
+     * Creates a terminal working in the temporary workspace.
+     */
+    @BeforeEach
+    public void createTerminal() {
+        t = new Terminal();
+        t.cd(new String[]{workspace.toString()});
+    }
+
+    /**
+     * Test to verify the counts and the options on small files.
+     */
+    @Test
+    public void smallFilesTest() throws IOException {
+        Files.writeString(workspace.resolve("a.txt"), "one two\nthree\n");
+        Files.writeString(workspace.resolve("b.txt"), "  four\tfive  six");
+        assertEquals("2 3 14 a.txt\n", t.wc(new String[]{"a.txt"}));
+        assertEquals("2 a.txt\n", t.wc(new String[]{"-l", "a.txt"}));
+        assertEquals("3 a.txt\n", t.wc(new String[]{"-w", "a.txt"}));
+        assertEquals("14 a.txt\n", t.wc(new String[]{"-c", "a.txt"}));
+        assertEquals("2 14 a.txt\n", t.wc(new String[]{"-lc", "a.txt"}));
+        assertEquals("2 3 14 a.txt\n0 3 16 b.txt\n2 6 30 total\n", t.wc(new String[]{"a.txt", "b.txt"}));
+    }
+
+    /**
+     * Test to verify counting the output of the previous pipeline stage.
+     */
+    @Test
+    public void pipedInputTest() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputSink out = OutputSink.toChannel(Channels.newChannel(buffer))) {
+            t.wc(new String[]{}, Channels.newChannel(new ByteArrayInputStream("a b\nc\n".getBytes())), out);
+        }
+        assertEquals("2 3 6\n", buffer.toString());
+    }
+
+    /**
+     * Test to verify that large random files, counted in parallel chunks, give the same counts as a plain loop.
+     */
+    @Test
+    public void largeFileTest() throws IOException {
+        byte[] data = randomText(40 * 1024 * 1024 + 12345);
+        Path file = Files.write(workspace.resolve("big.txt"), data);
+        long[] expected = reference(data);
+        assertEquals(expected[0] + " " + expected[1] + " " + expected[2] + " big.txt\n", t.wc(new String[]{"big.txt"}));
+    }
+
+    /**
+     * Test to verify memory-mapped counting and words split between blocks and chunks.
+     */
+    @Test
+    public void mappedAndSplitWordsTest() throws IOException {
+        for (int size : new int[]{1, 63, 64, 65, 1000, 300_000}) {
+            byte[] data = randomText(size);
+            Path file = Files.write(workspace.resolve("data" + size), data);
+            long[] expected = reference(data);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WordCounter.Tally tally = new WordCounter(true, new ReadEngine(1, 4096)).count(channel);
+                assertEquals(expected[0], tally.getLines(), "lines of " + size);
+                assertEquals(expected[1], tally.getWords(), "words of " + size);
+                assertEquals(expected[2], tally.getBytes(), "bytes of " + size);
+            }
+        }
+    }
+
+    /**
+     * Test to verify the error messages of the command.
+     */
+    @Test
+    public void errorsTest() throws IOException {
+        Files.createDirectory(workspace.resolve("dir"));
+        assertEquals("wc: missing file operand\n", t.wc(new String[]{}));
+        assertEquals("wc: missing: No such file or directory\n", t.wc(new String[]{"missing"}));
+        assertEquals("wc: dir: Is a directory\n", t.wc(new String[]{"dir"}));
+        assertEquals("wc: invalid option -- 'x'\n", t.wc(new String[]{"-x", "a.txt"}));
+    }
+
+    /**
+     * Returns random bytes with plenty of spaces, tabs and newlines.
+     */
+    private static byte[] randomText(int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        byte[] alphabet = "abcdefgh \t\n\r\u000b\fxyz  \n".getBytes();
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(20) == 0 ? (byte) random.nextInt(256) : alphabet[random.nextInt(alphabet.length)];
+        }
+        return data;
+    }
+
+    /**
+     * Counts lines, words and bytes one byte at a time.
+     */
+    private static long[] reference(byte[] data) {
+        long lines = 0;
+        long words = 0;
+        boolean inWord = false;
+        for (byte b : data) {
+            if (b == '\n') {
+                lines++;
+            }
+            boolean space = b == ' ' || (b >= 9 && b <= 13);
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return new long[]{lines, words, data.length};
+    }
+}